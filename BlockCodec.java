@@ -0,0 +1,97 @@
+package assignment1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the blocks of boat records in a database file. Each block
+ * is compressed on its own, so blocks can be decompressed in any order,
+ * one at a time for random access or several at once on all cores.
+ * Implementations must be safe to use from several threads at once.
+ */
+public interface BlockCodec {
+    /**
+     * Get the ID stored in the header of database files compressed with
+     * this codec.
+     *
+     * @return Codec ID; 0 is reserved for uncompressed files
+     */
+    byte getId();
+
+    /**
+     * Compress a block.
+     *
+     * @param data The block
+     * @return The compressed block
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * Decompress a block.
+     *
+     * @param data The compressed block
+     * @param out  Array to decompress into, exactly as long as the block
+     * @throws IOException If the data is not a block of that length
+     *                     compressed with this codec
+     */
+    void decompress(byte[] data, byte[] out) throws IOException;
+
+    /**
+     * Compress several blocks in parallel.
+     *
+     * @param blocks The blocks
+     * @return The compressed blocks, in the same order
+     */
+    default byte[][] compressAll(byte[][] blocks) {
+        return IntStream.range(0, blocks.length).parallel()
+                        .mapToObj(i -> compress(blocks[i]))
+                        .toArray(byte[][]::new);
+    }
+
+    /**
+     * Decompress several blocks in parallel.
+     *
+     * @param blocks  The compressed blocks
+     * @param lengths Length of each block before it was compressed
+     * @return The decompressed blocks, in the same order
+     * @throws IOException If a block cannot be decompressed
+     */
+    default byte[][] decompressAll(byte[][] blocks, int[] lengths)
+            throws IOException {
+        try {
+            return IntStream.range(0, blocks.length).parallel()
+                            .mapToObj(i -> {
+                                byte[] out = new byte[lengths[i]];
+                                try {
+                                    decompress(blocks[i], out);
+                                } catch (IOException ex) {
+                                    throw new UncheckedIOException(ex);
+                                }
+                                return out;
+                            })
+                            .toArray(byte[][]::new);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Get a codec that can decompress files with the given codec ID.
+     *
+     * @param id Codec ID read from a database file
+     * @return The codec
+     * @throws IOException If no codec has that ID
+     */
+    static BlockCodec forId(byte id) throws IOException {
+        switch (id) {
+            case DeflateCodec.ID:
+                return new DeflateCodec(Deflater.DEFAULT_COMPRESSION);
+            case LzBlockCodec.ID:
+                return new LzBlockCodec();
+            default:
+                throw new IOException("Unknown compression codec " + id);
+        }
+    }
+}
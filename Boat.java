@@ -1,12 +1,15 @@
 package assignment1;
 
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Abstract Boat class representing common attributes
  * and methods for all types of boats.
  */
 public abstract class Boat implements Serializable{
+    /** Serial version matching databases saved by earlier versions */
+    private static final long serialVersionUID = -4467594847805703603L;
     /** Height of the boat */
     private double height;
     /** Length of the boat */
@@ -22,6 +25,25 @@ public abstract class Boat implements Serializable{
     private static double chargeRate = 1.0; 
     /** Static variable for levy rate */
     private static double levyRate = 0.0005;
+    /**
+     * Rate epoch, advanced whenever any charge rate changes so that the
+     * cached charges of every boat become stale at once
+     */
+    private static volatile long rateEpoch = 1;
+    /**
+     * Type rate epoch of each Boat class, advanced whenever a rate of its
+     * type specific charge changes; a class never changed is at epoch 0
+     */
+    private static final ConcurrentHashMap<Class<?>, Long> typeRateEpochs =
+        new ConcurrentHashMap<>();
+    /** Storage keeping fleet totals that include this boat */
+    private transient BoatStorage storage;
+    /** Position of this boat in its owner's boat list, set by the storage */
+    private transient int position;
+    /** Modification stamp, advanced by every setter */
+    private transient long modStamp;
+    /** Charges computed for the current rate epoch and stamp, if any */
+    private transient ChargeCache chargeCache;
 
     /**
      * No-argument constructor to initialize a Boat object
@@ -63,7 +85,9 @@ public abstract class Boat implements Serializable{
      * @param height Height of the boat
      */
     public void setHeight(double height) {
+        beforeChange();
         this.height = height;
+        afterChange();
     }
 
     /**
@@ -81,7 +105,9 @@ public abstract class Boat implements Serializable{
      * @param length Length of the boat
      */
     public void setLength(double length) {
+        beforeChange();
         this.length = length;
+        afterChange();
     }
 
     /**
@@ -99,7 +125,9 @@ public abstract class Boat implements Serializable{
      * @param width Width of the boat
      */
     public void setWidth(double width) {
+        beforeChange();
         this.width = width;
+        afterChange();
     }
 
     /**
@@ -117,7 +145,60 @@ public abstract class Boat implements Serializable{
      * @param boatValue Value of the boat
      */
     public void setBoatValue(double boatValue) {
+        beforeChange();
         this.boatValue = boatValue;
+        afterChange();
+    }
+
+    /**
+     * Link this boat to the storage whose fleet totals include it.
+     * 
+     * @param storage The storage holding this boat
+     */
+    void setStorage(BoatStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Get the position of this boat in its owner's boat list, as
+     * recorded by the storage holding it.
+     * 
+     * @return Position in the owner's boat list
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Record the position of this boat in its owner's boat list.
+     * Boats are only ever added to the end of the list, so it is set
+     * once, when the storage takes the boat in.
+     * 
+     * @param position Position in the owner's boat list
+     */
+    void setPosition(int position) {
+        this.position = position;
+    }
+
+    /**
+     * Let the storage take this boat's current values out of its
+     * fleet totals. Setters call this before changing a field.
+     */
+    protected void beforeChange() {
+        if (storage != null) {
+            storage.boatChanging(this);
+        }
+    }
+
+    /**
+     * Let the storage add this boat's new values to its fleet totals.
+     * Setters call this after changing a field.
+     */
+    protected void afterChange() {
+        modStamp++;
+        if (storage != null) {
+            storage.boatChanged(this);
+        }
     }
 
     /**
@@ -136,6 +217,7 @@ public abstract class Boat implements Serializable{
      */
     public static void setChargeRate(double chargeRate) {
         Boat.chargeRate = chargeRate;
+        ratesChanged();
     }
 
     /**
@@ -154,14 +236,98 @@ public abstract class Boat implements Serializable{
      */
     public static void setLevyRate(double levyRate) {
         Boat.levyRate = levyRate;
+        ratesChanged();
+    }
+
+    /**
+     * Get the current type rate epoch of a Boat class. It changes
+     * whenever a rate of the type specific charge of that class changes,
+     * but not when the charge rate or levy rate changes.
+     * 
+     * @param type The Boat class
+     * @return Current type rate epoch of the class
+     */
+    static long getTypeRateEpoch(Class<?> type) {
+        return typeRateEpochs.getOrDefault(type, 0L);
+    }
+
+    /**
+     * Invalidate the cached charges of all boats.
+     * Every rate setter calls this after changing a rate.
+     */
+    protected static void ratesChanged() {
+        rateEpoch++;
+    }
+
+    /**
+     * Invalidate the cached charges of all boats and the type charge
+     * totals of one Boat class. A subclass calls this instead of
+     * ratesChanged after changing a rate its calculateTypeCharge uses.
+     * 
+     * @param type The Boat class whose type specific charges changed
+     */
+    protected static void typeRatesChanged(Class<? extends Boat> type) {
+        typeRateEpochs.merge(type, 1L, Long::sum);
+        ratesChanged();
+    }
+
+    /**
+     * Abstract method to calculate the charge specific to the type of
+     * boat, such as the sail drying charge of a sail boat. It may use
+     * the fields of the boat and the rates of its class, whose setters
+     * call typeRatesChanged, but not the charge rate or levy rate.
+     * 
+     * @return Type specific charge
+     */
+    protected abstract double calculateTypeCharge();
+
+    /**
+     * Get the charges of this boat, recalculating them only if a rate or
+     * a field of the boat has changed since they were last calculated.
+     * 
+     * @return Charges for the current rates and fields
+     */
+    private ChargeCache charges() {
+        ChargeCache cache = chargeCache;
+        long epoch = rateEpoch;
+        if (cache == null || cache.epoch != epoch
+                || cache.stamp != modStamp) {
+            cache = new ChargeCache(epoch, modStamp,
+                                    volume() * chargeRate,
+                                    boatValue * levyRate,
+                                    calculateTypeCharge());
+            chargeCache = cache;
+        }
+        return cache;
     }
 
     /**
-     * Abstract method to calculate total monthly charge.
+     * Calculate total monthly charge: storage charge, insurance levy
+     * and the type specific charge.
      * 
      * @return Total monthly charge
      */
-    public abstract double totalMonthlyCharge();
+    public double totalMonthlyCharge() {
+        return charges().total;
+    }
+
+    /**
+     * Get the charge specific to the type of boat.
+     * 
+     * @return Type specific charge
+     */
+    public double typeCharge() {
+        return charges().typeCharge;
+    }
+
+    /**
+     * Calculate the volume of the boat.
+     * 
+     * @return Volume of the boat (height * length * width)
+     */
+    public double volume() {
+        return height * length * width;
+    }
 
     /**
      * Calculate storage charge based on volume.
@@ -169,8 +335,7 @@ public abstract class Boat implements Serializable{
      * @return Storage charge
      */
     public double storageCharge() {
-        double volume = height * length * width;
-        return volume * chargeRate;
+        return charges().storageCharge;
     }
 
     /**
@@ -179,6 +344,45 @@ public abstract class Boat implements Serializable{
      * @return Insurance charge
      */
     public double insuranceLevy() {
-        return boatValue * levyRate;
+        return charges().insuranceLevy;
+    }
+
+    /**
+     * Charges of a boat calculated for one rate epoch and modification
+     * stamp. Instances are immutable, so a cache can be read from any
+     * thread without locking.
+     */
+    private static class ChargeCache {
+        /** Rate epoch the charges were calculated for */
+        final long epoch;
+        /** Modification stamp the charges were calculated for */
+        final long stamp;
+        /** Storage charge */
+        final double storageCharge;
+        /** Insurance levy */
+        final double insuranceLevy;
+        /** Type specific charge */
+        final double typeCharge;
+        /** Total monthly charge */
+        final double total;
+
+        /**
+         * Constructs the cached charges.
+         * 
+         * @param epoch         Rate epoch of the calculation
+         * @param stamp         Modification stamp of the calculation
+         * @param storageCharge Storage charge
+         * @param insuranceLevy Insurance levy
+         * @param typeCharge    Type specific charge
+         */
+        ChargeCache(long epoch, long stamp, double storageCharge,
+                    double insuranceLevy, double typeCharge) {
+            this.epoch = epoch;
+            this.stamp = stamp;
+            this.storageCharge = storageCharge;
+            this.insuranceLevy = insuranceLevy;
+            this.typeCharge = typeCharge;
+            this.total = storageCharge + insuranceLevy + typeCharge;
+        }
     }
 }
\ No newline at end of file
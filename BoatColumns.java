@@ -0,0 +1,175 @@
+package assignment1;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Columnar copy of the boats held by a BoatStorage. Each boat attribute
+ * is kept in its own primitive array, one row per boat in the order the
+ * boats were added, so fleet-wide charge calculations run as tight loops
+ * over contiguous memory instead of following a reference to every boat.
+ * The storage keeps the rows in step with the Boat objects, which remain
+ * the primary data.
+ */
+public class BoatColumns {
+    /** Type tag of a sail boat row */
+    static final byte SAIL_BOAT = 0;
+    /** Type tag of a motor boat row */
+    static final byte MOTOR_BOAT = 1;
+    /** Initial number of rows allocated */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Number of rows in use */
+    private int size;
+    /** Type tag of each row */
+    private byte[] type;
+    /** Height of each boat */
+    private double[] height;
+    /** Length of each boat */
+    private double[] length;
+    /** Width of each boat */
+    private double[] width;
+    /** Value of each boat */
+    private double[] boatValue;
+    /** Mast height of each sail boat (0 for motor boats) */
+    private double[] mastHeight;
+    /** Sail area of each sail boat (0 for motor boats) */
+    private double[] sailArea;
+    /** Horse power of each motor boat (0 for sail boats) */
+    private int[] horsePower;
+    /** Row of each boat, used to update a row when its boat changes */
+    private final IdentityHashMap<Boat, Integer> rows =
+        new IdentityHashMap<>();
+
+    /**
+     * Constructs an empty column store.
+     */
+    public BoatColumns() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return Number of boats stored
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Append a row for a boat.
+     *
+     * @param boat The boat to add
+     * @throws IllegalArgumentException If the boat is neither a SailBoat
+     *                                  nor a MotorBoat
+     */
+    public void add(Boat boat) {
+        if (size == type.length) {
+            allocate(size * 2);
+        }
+        write(size, boat);
+        rows.put(boat, size);
+        size++;
+    }
+
+    /**
+     * Copy the current values of a boat into its row.
+     *
+     * @param boat The boat that changed
+     */
+    public void update(Boat boat) {
+        Integer row = rows.get(boat);
+        if (row != null) {
+            write(row, boat);
+        }
+    }
+
+    /**
+     * Summarise the charges of the rows in [from, to). Rows are added to
+     * the accumulator in order with the same arithmetic as the Boat charge
+     * methods, so the result matches summarising the Boat objects.
+     *
+     * @param from First row (inclusive)
+     * @param to   Last row (exclusive)
+     * @return Accumulated charges and counts of the rows
+     */
+    ChargeSummary.Accumulator summarize(int from, int to) {
+        double chargeRate = Boat.getChargeRate();
+        double levyRate = Boat.getLevyRate();
+        double sailRate = SailBoat.getSailRate();
+        double fireRate = MotorBoat.getFireRate();
+        byte[] type = this.type;
+        double[] height = this.height;
+        double[] length = this.length;
+        double[] width = this.width;
+        double[] boatValue = this.boatValue;
+        double[] sailArea = this.sailArea;
+        int[] horsePower = this.horsePower;
+        ChargeSummary.Accumulator acc = new ChargeSummary.Accumulator();
+        for (int i = from; i < to; i++) {
+            double storage = height[i] * length[i] * width[i] * chargeRate;
+            double insurance = boatValue[i] * levyRate;
+            if (type[i] == SAIL_BOAT) {
+                acc.addSailBoat(storage, insurance, sailArea[i] * sailRate);
+            } else {
+                acc.addMotorBoat(storage, insurance,
+                                 horsePower[i] * fireRate);
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Write the values of a boat into a row.
+     *
+     * @param row  The row to write
+     * @param boat The boat to copy
+     */
+    private void write(int row, Boat boat) {
+        height[row] = boat.getHeight();
+        length[row] = boat.getLength();
+        width[row] = boat.getWidth();
+        boatValue[row] = boat.getBoatValue();
+        if (boat instanceof SailBoat) {
+            SailBoat sailBoat = (SailBoat) boat;
+            type[row] = SAIL_BOAT;
+            mastHeight[row] = sailBoat.getMastHeight();
+            sailArea[row] = sailBoat.getSailArea();
+        } else if (boat instanceof MotorBoat) {
+            type[row] = MOTOR_BOAT;
+            horsePower[row] = ((MotorBoat) boat).getHorsePower();
+        } else {
+            throw new IllegalArgumentException(
+                "Unsupported boat type: " + boat.getClass().getName()
+            );
+        }
+    }
+
+    /**
+     * Grow every column to the given number of rows.
+     *
+     * @param capacity New number of rows
+     */
+    private void allocate(int capacity) {
+        if (type == null) {
+            type = new byte[capacity];
+            height = new double[capacity];
+            length = new double[capacity];
+            width = new double[capacity];
+            boatValue = new double[capacity];
+            mastHeight = new double[capacity];
+            sailArea = new double[capacity];
+            horsePower = new int[capacity];
+            return;
+        }
+        type = Arrays.copyOf(type, capacity);
+        height = Arrays.copyOf(height, capacity);
+        length = Arrays.copyOf(length, capacity);
+        width = Arrays.copyOf(width, capacity);
+        boatValue = Arrays.copyOf(boatValue, capacity);
+        mastHeight = Arrays.copyOf(mastHeight, capacity);
+        sailArea = Arrays.copyOf(sailArea, capacity);
+        horsePower = Arrays.copyOf(horsePower, capacity);
+    }
+}
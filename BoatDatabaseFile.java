@@ -0,0 +1,999 @@
+package assignment1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Reads and writes the compact binary database format, and reads the
+ * older databases written with Java serialization.
+ * <p>
+ * A binary database file holds, in order:
+ * <ul>
+ * <li>a header: magic number, format version, snapshot ID, next owner ID
+ *     counter, owner count, boat count and compression codec ID, followed
+ *     for a compressed file by the number of records per block;</li>
+ * <li>the owner table, which serves as an owner index: ID number, name,
+ *     address, boat count and total boat volume of each owner, in the
+ *     storage's original order;</li>
+ * <li>the boat records: one fixed-width record per boat, grouped by owner
+ *     in owner table order.</li>
+ * </ul>
+ * A boat record is a type byte followed by height, length, width, value,
+ * mast height and sail area as doubles and horse power as an int; fields
+ * that do not apply to the type are written as zero.
+ * <p>
+ * The boat records of a compressed file are cut into blocks of
+ * BLOCK_RECORDS records, and each block is compressed on its own with
+ * the file's BlockCodec and written as its compressed length followed by
+ * the compressed bytes. Blocks are compressed and decompressed several
+ * at a time in parallel, and a block can be decompressed without those
+ * before it, which keeps boats of compressed files decodable on demand.
+ * <p>
+ * The total boat volume in the owner table lets a file opened with open
+ * or BoatDatabaseLoader give every owner their boat count and storage
+ * charge before any boat record is read, so the owners can be listed
+ * straight away.
+ * <p>
+ * Every write gives the file a new random snapshot ID, which lets a
+ * BoatJournal tell whether its changes were made on top of this file.
+ * <p>
+ * A file can be read in full with read, or opened with open, which maps
+ * the boat records into memory and decodes each boat only when it is
+ * first used (see MappedBoatFile).
+ */
+public class BoatDatabaseFile {
+    /** Magic number at the start of every binary database ("BSDB") */
+    static final int MAGIC = 0x42534442;
+    /** Format version, the only one that can be read */
+    static final short VERSION = 4;
+    /** Boat record type of a sail boat */
+    static final byte SAIL_BOAT_RECORD = 0;
+    /** Boat record type of a motor boat */
+    static final byte MOTOR_BOAT_RECORD = 1;
+    /** Size of a boat record in bytes */
+    static final int BOAT_RECORD_SIZE = 53;
+    /** First two bytes of a Java serialization stream */
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+    /** Size of the read and write buffers */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Codec ID of an uncompressed file */
+    private static final byte UNCOMPRESSED = 0;
+    /** Boat records per compressed block, a power of two */
+    static final int BLOCK_RECORDS = 1 << 12;
+    /** Compressed blocks gathered to compress or decompress in parallel */
+    private static final int BATCH_BLOCKS =
+        2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * A database read from a file.
+     */
+    public static class Contents {
+        /** Owners and boats of the database */
+        public final BoatStorage storage;
+        /** Next owner ID to hand out */
+        public final int ownerIdCounter;
+        /** Snapshot ID of the file, 0 if it has none */
+        public final long snapshotId;
+
+        /**
+         * Constructs the contents of a database.
+         * @param storage the owners and boats
+         * @param ownerIdCounter the next owner ID to hand out
+         * @param snapshotId the snapshot ID of the file, 0 if it has none
+         */
+        public Contents(BoatStorage storage, int ownerIdCounter,
+                        long snapshotId) {
+            this.storage = storage;
+            this.ownerIdCounter = ownerIdCounter;
+            this.snapshotId = snapshotId;
+        }
+    }
+
+    /**
+     * The owners of a binary database with their boats, read without
+     * adding them to a storage.
+     */
+    static class Table {
+        /** Header of the file */
+        final Header header;
+        /** Owners in owner table order, with empty boat lists */
+        final List<Owner> owners;
+        /** Boats of each owner, in owner table order */
+        final List<List<Boat>> boats;
+
+        /**
+         * Constructs a table.
+         *
+         * @param header Header of the file
+         * @param owners Owners in owner table order
+         * @param boats  Boats of each owner
+         */
+        Table(Header header, List<Owner> owners, List<List<Boat>> boats) {
+            this.header = header;
+            this.owners = owners;
+            this.boats = boats;
+        }
+    }
+
+    /**
+     * The fixed fields at the start of a binary database.
+     */
+    static class Header {
+        /** Snapshot ID of the file */
+        final long snapshotId;
+        /** Next owner ID to hand out */
+        final int ownerIdCounter;
+        /** Number of owners in the owner table */
+        final int ownerCount;
+        /** Number of boat records */
+        final int boatCount;
+        /** Codec the boat records are compressed with, or null if none */
+        final BlockCodec codec;
+        /** Boat records per compressed block, 0 if uncompressed */
+        final int blockRecords;
+
+        /**
+         * Constructs a header.
+         * @param snapshotId     Snapshot ID of the file
+         * @param ownerIdCounter Next owner ID to hand out
+         * @param ownerCount     Number of owners
+         * @param boatCount      Number of boat records
+         * @param codec          Codec of the boat records, or null
+         * @param blockRecords   Boat records per compressed block
+         */
+        Header(long snapshotId, int ownerIdCounter, int ownerCount,
+               int boatCount, BlockCodec codec, int blockRecords) {
+            this.snapshotId = snapshotId;
+            this.ownerIdCounter = ownerIdCounter;
+            this.ownerCount = ownerCount;
+            this.boatCount = boatCount;
+            this.codec = codec;
+            this.blockRecords = blockRecords;
+        }
+    }
+
+    /**
+     * Write a storage to a file in the binary format, replacing the file.
+     * The database is written to a temporary file that is forced to disk
+     * and then moved over the target, so the target is never left half
+     * written, even by a crash, and a storage opened from it keeps
+     * reading the old contents while it is saved.
+     * Boats of an opened file that were never used are copied without
+     * being decoded.
+     *
+     * @param file           The file to write
+     * @param storage        The owners and boats to write
+     * @param ownerIdCounter Next owner ID to hand out
+     * @return The snapshot ID given to the file
+     * @throws IOException If the file cannot be written
+     */
+    public static long write(File file, BoatStorage storage,
+                             int ownerIdCounter) throws IOException {
+        BoatStorageSnapshot snapshot = storage.snapshot();
+        try {
+            return write(file, snapshot, null, ownerIdCounter, null, null);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Write a snapshot of a storage to a file in the binary format,
+     * replacing the file as write(File, BoatStorage, int) does. This can
+     * run on a background thread while the storage is edited, since the
+     * snapshot keeps the values the boats had when it was taken.
+     *
+     * @param file           The file to write
+     * @param snapshot       The owners and boats to write
+     * @param ownerIdCounter Next owner ID to hand out
+     * @param codec          Codec to compress the boat records with, or
+     *                       null to leave them uncompressed
+     * @param progress       Told the percentage of boats written each
+     *                       time it grows, or null
+     * @return The snapshot ID given to the file
+     * @throws IOException If the file cannot be written
+     */
+    public static long write(File file, BoatStorageSnapshot snapshot,
+                             int ownerIdCounter, BlockCodec codec,
+                             IntConsumer progress) throws IOException {
+        return write(file, snapshot, null, ownerIdCounter, codec, progress);
+    }
+
+    /**
+     * Write some of the owners of a snapshot, and their boats, to a file
+     * as write does for all of them. May be called on several threads at
+     * once for the same snapshot.
+     *
+     * @param file           The file to write
+     * @param snapshot       The owners and boats to write
+     * @param owners         Positions in the snapshot of the owners to
+     *                       write, in the order to write them, or null
+     *                       for every owner
+     * @param ownerIdCounter Next owner ID to hand out
+     * @param codec          Codec to compress the boat records with, or
+     *                       null to leave them uncompressed
+     * @param progress       Told the percentage of boats written each
+     *                       time it grows, or null
+     * @return The snapshot ID given to the file
+     * @throws IOException If the file cannot be written
+     */
+    static long write(File file, BoatStorageSnapshot snapshot, int[] owners,
+                      int ownerIdCounter, BlockCodec codec,
+                      IntConsumer progress) throws IOException {
+        long snapshotId;
+        do {
+            snapshotId = ThreadLocalRandom.current().nextLong();
+        } while (snapshotId == 0);
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        boolean written = false;
+        try (
+            FileChannel channel = FileChannel.open(
+                temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+            );
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(
+                    Channels.newOutputStream(channel), BUFFER_SIZE
+                )
+            )
+        ) {
+            int ownerCount;
+            long boatCount = 0;
+            if (owners == null) {
+                ownerCount = snapshot.getOwnerCount();
+                boatCount = snapshot.getTotalBoatCount();
+            } else {
+                ownerCount = owners.length;
+                for (int owner : owners) {
+                    boatCount += snapshot.getBoatCount(owner);
+                }
+            }
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(snapshotId);
+            out.writeInt(ownerIdCounter);
+            out.writeInt(ownerCount);
+            out.writeInt((int) boatCount);
+            if (codec == null) {
+                out.writeByte(UNCOMPRESSED);
+            } else {
+                out.writeByte(codec.getId());
+                out.writeInt(BLOCK_RECORDS);
+            }
+            for (int i = 0; i < ownerCount; i++) {
+                writeOwner(out, snapshot, owners == null ? i : owners[i]);
+            }
+            BlockOutputStream blocks = null;
+            DataOutputStream records = out;
+            if (codec != null) {
+                blocks = new BlockOutputStream(
+                    out, codec, BLOCK_RECORDS * BOAT_RECORD_SIZE
+                );
+                records = new DataOutputStream(blocks);
+            }
+            long boatsWritten = 0;
+            int percent = 0;
+            for (int i = 0; i < ownerCount; i++) {
+                int owner = owners == null ? i : owners[i];
+                snapshot.writeBoats(owner, records);
+                boatsWritten += snapshot.getBoatCount(owner);
+                if (progress != null && boatCount > 0
+                        && boatsWritten * 100 / boatCount > percent) {
+                    percent = (int) (boatsWritten * 100 / boatCount);
+                    progress.accept(percent);
+                }
+            }
+            if (blocks != null) {
+                blocks.finish();
+            }
+            out.flush();
+            // The file must be on disk before it replaces the old one,
+            // since the caller then starts an empty journal for it
+            channel.force(true);
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        replace(temp, target);
+        return snapshotId;
+    }
+
+    /**
+     * Move a file that has been forced to disk over another, and force
+     * the directory so that the move survives a crash. Once this returns
+     * the target holds the new contents even after a power failure.
+     *
+     * @param temp   The new file, already forced to disk
+     * @param target The file to replace
+     * @throws IOException If the file cannot be moved or the directory
+     *                     cannot be forced
+     */
+    static void replace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path directory = target.toAbsolutePath().getParent();
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            // Some platforms, such as Windows, cannot open a directory;
+            // there the move is made durable by the file system itself
+            return;
+        }
+        try (FileChannel open = channel) {
+            open.force(true);
+        }
+    }
+
+    /**
+     * Read a database file in either the binary format or the older
+     * Java serialization format.
+     *
+     * @param file The file to read
+     * @return The owners, boats and owner ID counter of the database
+     * @throws IOException If the file cannot be read or is not a database
+     */
+    public static Contents read(File file) throws IOException {
+        try (
+            InputStream in = new BufferedInputStream(
+                Channels.newInputStream(
+                    FileChannel.open(file.toPath(), StandardOpenOption.READ)
+                ),
+                BUFFER_SIZE
+            )
+        ) {
+            in.mark(2);
+            int first = in.read();
+            int second = in.read();
+            in.reset();
+            if (((first << 8) | second) == SERIALIZATION_MAGIC) {
+                return readSerialized(in);
+            }
+            return readBinary(new DataInputStream(in));
+        }
+    }
+
+    /**
+     * Open a database file without reading its boats. The owners are read
+     * from the owner table and the boat records are mapped into memory,
+     * to be decoded as they are used. Databases written with Java
+     * serialization cannot be mapped and are read in full.
+     *
+     * @param file The file to open
+     * @return The owners, boats and owner ID counter of the database
+     * @throws IOException If the file cannot be read or is not a database
+     */
+    public static Contents open(File file) throws IOException {
+        Contents contents = map(file);
+        MappedBoatFile records = contents.storage.getRecords();
+        if (records != null) {
+            contents.storage.addMappedRun(
+                records.scan(0, records.getOwnerCount())
+            );
+        }
+        return contents;
+    }
+
+    /**
+     * Read the owner table of a database file and map its boat records,
+     * giving a storage over the mapped file that holds every owner, with
+     * their boat counts and volumes, but none of the fleet totals yet.
+     * These are added by scanning runs of owners with
+     * MappedBoatFile.scan and passing each run to
+     * BoatStorage.addMappedRun, all at once as open does or in batches
+     * as BoatDatabaseLoader does. Databases written with Java
+     * serialization are read in full, into a storage with no mapped file.
+     *
+     * @param file The file to open
+     * @return The storage, owner ID counter and snapshot ID of the
+     *         database
+     * @throws IOException If the file cannot be read or is not a database
+     */
+    static Contents map(File file) throws IOException {
+        try (
+            FileChannel channel =
+                FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            InputStream buffered = new BufferedInputStream(
+                Channels.newInputStream(channel), BUFFER_SIZE
+            )
+        ) {
+            buffered.mark(2);
+            int first = buffered.read();
+            int second = buffered.read();
+            buffered.reset();
+            if (((first << 8) | second) == SERIALIZATION_MAGIC) {
+                return readSerialized(buffered);
+            }
+            CountingInputStream counter = new CountingInputStream(buffered);
+            DataInputStream in = new DataInputStream(counter);
+            Header header = readHeader(in);
+            int ownerCount = header.ownerCount;
+            int boatCount = header.boatCount;
+            Owner[] owners = new Owner[ownerCount];
+            int[] firstRecords = new int[ownerCount + 1];
+            for (int i = 0; i < ownerCount; i++) {
+                owners[i] = new Owner(in.readUTF(), in.readUTF(),
+                                      in.readUTF(), new ArrayList<>());
+                firstRecords[i + 1] = firstRecords[i] + in.readInt();
+                owners[i].addBoatVolume(in.readDouble());
+            }
+            long offset = counter.getCount();
+            if (firstRecords[ownerCount] != boatCount
+                    || header.codec == null && channel.size()
+                       < offset + (long) boatCount * BOAT_RECORD_SIZE) {
+                throw new IOException("Database file is incomplete");
+            }
+            MappedBoatFile records = new MappedBoatFile(
+                channel, offset, owners, firstRecords, header.codec,
+                header.blockRecords
+            );
+            return new Contents(new BoatStorage(records),
+                                header.ownerIdCounter, header.snapshotId);
+        }
+    }
+
+    /**
+     * Read the owners and boats of a file in the binary format without
+     * adding them to a storage, so that several files can be read at
+     * once on different threads.
+     *
+     * @param file The file to read
+     * @return The owners and boats of the file
+     * @throws IOException If the file cannot be read or is not a binary
+     *                     database
+     */
+    static Table readTable(File file) throws IOException {
+        try (
+            InputStream in = new BufferedInputStream(
+                Channels.newInputStream(
+                    FileChannel.open(file.toPath(), StandardOpenOption.READ)
+                ),
+                BUFFER_SIZE
+            )
+        ) {
+            return readTable(new DataInputStream(in));
+        }
+    }
+
+    /**
+     * Read a database in the binary format.
+     *
+     * @param in Stream positioned at the header
+     * @return The contents of the database
+     * @throws IOException If the stream is not a valid binary database
+     */
+    private static Contents readBinary(DataInputStream in)
+            throws IOException {
+        Table table = readTable(in);
+        BoatStorage storage = new BoatStorage();
+        for (int i = 0; i < table.owners.size(); i++) {
+            Owner owner = table.owners.get(i);
+            storage.addOwner(owner);
+            storage.addBoats(owner, table.boats.get(i));
+        }
+        return new Contents(storage, table.header.ownerIdCounter,
+                            table.header.snapshotId);
+    }
+
+    /**
+     * Read the owners and boats of a database in the binary format.
+     *
+     * @param in Stream positioned at the header
+     * @return The owners and boats of the database
+     * @throws IOException If the stream is not a valid binary database
+     */
+    private static Table readTable(DataInputStream in) throws IOException {
+        Header header = readHeader(in);
+        int ownerCount = header.ownerCount;
+        List<Owner> owners = new ArrayList<>(ownerCount);
+        int[] boatCounts = new int[ownerCount];
+        for (int i = 0; i < ownerCount; i++) {
+            owners.add(new Owner(in.readUTF(), in.readUTF(), in.readUTF(),
+                                 new ArrayList<>()));
+            boatCounts[i] = in.readInt();
+            // Adding the boats totals their volumes again
+            in.readDouble();
+        }
+        if (header.codec != null) {
+            in = new DataInputStream(new BlockInputStream(
+                in, header.codec, header.blockRecords * BOAT_RECORD_SIZE,
+                (long) header.boatCount * BOAT_RECORD_SIZE
+            ));
+        }
+        List<List<Boat>> boats = new ArrayList<>(ownerCount);
+        for (int i = 0; i < ownerCount; i++) {
+            List<Boat> ownerBoats = new ArrayList<>(boatCounts[i]);
+            for (int j = 0; j < boatCounts[i]; j++) {
+                ownerBoats.add(readBoat(in));
+            }
+            boats.add(ownerBoats);
+        }
+        return new Table(header, owners, boats);
+    }
+
+    /**
+     * Read the header of a binary database, checking its magic number
+     * and version.
+     *
+     * @param in Stream positioned at the header
+     * @return The header
+     * @throws IOException If the header is not a supported database header
+     */
+    static Header readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a boat storage database");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException(
+                "Unsupported database version " + version
+            );
+        }
+        long snapshotId = in.readLong();
+        int ownerIdCounter = in.readInt();
+        int ownerCount = in.readInt();
+        int boatCount = in.readInt();
+        byte codecId = in.readByte();
+        if (codecId == UNCOMPRESSED) {
+            return new Header(snapshotId, ownerIdCounter, ownerCount,
+                              boatCount, null, 0);
+        }
+        BlockCodec codec = BlockCodec.forId(codecId);
+        int blockRecords = in.readInt();
+        if (blockRecords <= 0 || Integer.bitCount(blockRecords) != 1
+                || (long) blockRecords * BOAT_RECORD_SIZE > 1 << 24) {
+            throw new IOException(
+                "Unsupported compressed block size " + blockRecords
+            );
+        }
+        return new Header(snapshotId, ownerIdCounter, ownerCount,
+                          boatCount, codec, blockRecords);
+    }
+
+    /**
+     * Read a database written with Java serialization by earlier versions.
+     *
+     * @param in Stream positioned at the serialization header
+     * @return The contents of the database
+     * @throws IOException If the stream cannot be deserialized
+     */
+    private static Contents readSerialized(InputStream in)
+            throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(in);
+        try {
+            BoatStorage storage = (BoatStorage) ois.readObject();
+            return new Contents(storage, ois.readInt(), 0);
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("Not a boat storage database", ex);
+        }
+    }
+
+    /**
+     * Write one entry of the owner table.
+     *
+     * @param out      The stream to write to
+     * @param snapshot The snapshot holding the owner
+     * @param index    Position of the owner in the snapshot
+     * @throws IOException If the stream cannot be written
+     */
+    static void writeOwner(DataOutputStream out, BoatStorageSnapshot snapshot,
+                           int index) throws IOException {
+        out.writeUTF(snapshot.getIdNumber(index));
+        out.writeUTF(snapshot.getName(index));
+        out.writeUTF(snapshot.getAddress(index));
+        out.writeInt(snapshot.getBoatCount(index));
+        out.writeDouble(snapshot.getBoatVolume(index));
+    }
+
+    /**
+     * Write one fixed-width boat record.
+     *
+     * @param out  The stream to write to
+     * @param boat The boat to write
+     * @throws IOException If the stream cannot be written or the boat
+     *                     type has no record type
+     */
+    static void writeBoat(DataOutputStream out, Boat boat)
+            throws IOException {
+        double mastHeight = 0;
+        double sailArea = 0;
+        int horsePower = 0;
+        if (boat instanceof SailBoat) {
+            out.writeByte(SAIL_BOAT_RECORD);
+            mastHeight = ((SailBoat) boat).getMastHeight();
+            sailArea = ((SailBoat) boat).getSailArea();
+        } else if (boat instanceof MotorBoat) {
+            out.writeByte(MOTOR_BOAT_RECORD);
+            horsePower = ((MotorBoat) boat).getHorsePower();
+        } else {
+            throw new IOException(
+                "Unsupported boat type: " + boat.getClass().getName()
+            );
+        }
+        out.writeDouble(boat.getHeight());
+        out.writeDouble(boat.getLength());
+        out.writeDouble(boat.getWidth());
+        out.writeDouble(boat.getBoatValue());
+        out.writeDouble(mastHeight);
+        out.writeDouble(sailArea);
+        out.writeInt(horsePower);
+    }
+
+    /**
+     * Read one fixed-width boat record.
+     *
+     * @param in The stream to read from
+     * @return The boat
+     * @throws IOException If the record cannot be read or has an unknown
+     *                     type
+     */
+    static Boat readBoat(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        double height = in.readDouble();
+        double length = in.readDouble();
+        double width = in.readDouble();
+        double value = in.readDouble();
+        double mastHeight = in.readDouble();
+        double sailArea = in.readDouble();
+        int horsePower = in.readInt();
+        switch (type) {
+            case SAIL_BOAT_RECORD:
+                return new SailBoat(height, length, width, value,
+                                    mastHeight, sailArea);
+            case MOTOR_BOAT_RECORD:
+                return new MotorBoat(height, length, width, value,
+                                     horsePower);
+            default:
+                throw new IOException("Unknown boat record type " + type);
+        }
+    }
+
+    /**
+     * Get the largest compressed length a block can have, so that a
+     * damaged length prefix is caught before it is used to allocate.
+     * Both codecs grow incompressible data by well under this margin.
+     *
+     * @param blockSize Length of the block before it was compressed
+     * @return Largest valid compressed length
+     */
+    static int maxCompressedLength(int blockSize) {
+        return blockSize + (blockSize >> 6) + 64;
+    }
+
+    /**
+     * Output stream that cuts the boat records into blocks and writes
+     * each block compressed, as its compressed length followed by the
+     * compressed bytes. Several blocks are gathered and compressed at
+     * once in parallel.
+     */
+    private static class BlockOutputStream extends OutputStream {
+        /** The stream the compressed blocks are written to */
+        private final DataOutputStream out;
+        /** The codec */
+        private final BlockCodec codec;
+        /** Length of a full block */
+        private final int blockSize;
+        /** Blocks gathered for the next batch */
+        private final byte[][] blocks = new byte[BATCH_BLOCKS][];
+        /** Number of full blocks in blocks */
+        private int blockCount;
+        /** The block being filled */
+        private byte[] block;
+        /** Number of bytes in the block being filled */
+        private int position;
+
+        /**
+         * Constructs a block stream.
+         *
+         * @param out       The stream to write the compressed blocks to
+         * @param codec     The codec
+         * @param blockSize Length of a full block
+         */
+        BlockOutputStream(DataOutputStream out, BlockCodec codec,
+                          int blockSize) {
+            this.out = out;
+            this.codec = codec;
+            this.blockSize = blockSize;
+            block = new byte[blockSize];
+        }
+
+        /**
+         * Write one byte.
+         *
+         * @param b The byte
+         * @throws IOException If a batch cannot be written
+         */
+        @Override
+        public void write(int b) throws IOException {
+            block[position++] = (byte) b;
+            if (position == blockSize) {
+                blockFilled();
+            }
+        }
+
+        /**
+         * Write bytes from an array.
+         *
+         * @param b   The array
+         * @param off First byte to write
+         * @param len Number of bytes to write
+         * @throws IOException If a batch cannot be written
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, blockSize - position);
+                System.arraycopy(b, off, block, position, n);
+                position += n;
+                off += n;
+                len -= n;
+                if (position == blockSize) {
+                    blockFilled();
+                }
+            }
+        }
+
+        /**
+         * Compress and write every block left, the last one possibly
+         * short. The underlying stream is not closed.
+         *
+         * @throws IOException If the blocks cannot be written
+         */
+        void finish() throws IOException {
+            if (position > 0) {
+                blocks[blockCount++] = Arrays.copyOf(block, position);
+                position = 0;
+            }
+            writeBatch();
+        }
+
+        /**
+         * Move the filled block to the batch, writing the batch when it
+         * is full.
+         *
+         * @throws IOException If the batch cannot be written
+         */
+        private void blockFilled() throws IOException {
+            blocks[blockCount++] = block;
+            block = new byte[blockSize];
+            position = 0;
+            if (blockCount == blocks.length) {
+                writeBatch();
+            }
+        }
+
+        /**
+         * Compress the gathered blocks in parallel and write them.
+         *
+         * @throws IOException If the blocks cannot be written
+         */
+        private void writeBatch() throws IOException {
+            byte[][] compressed =
+                codec.compressAll(Arrays.copyOf(blocks, blockCount));
+            for (byte[] data : compressed) {
+                out.writeInt(data.length);
+                out.write(data);
+            }
+            Arrays.fill(blocks, null);
+            blockCount = 0;
+        }
+    }
+
+    /**
+     * Input stream that reads the boat records of a compressed file,
+     * reading several blocks at a time and decompressing them in
+     * parallel.
+     */
+    private static class BlockInputStream extends InputStream {
+        /** The stream the compressed blocks are read from */
+        private final DataInputStream in;
+        /** The codec */
+        private final BlockCodec codec;
+        /** Length of a full block */
+        private final int blockSize;
+        /** Number of bytes of records not yet decompressed */
+        private long remaining;
+        /** Decompressed blocks of the current batch */
+        private byte[][] blocks = new byte[0][];
+        /** Position of the block being read in blocks */
+        private int blockIndex;
+        /** Position in the block being read */
+        private int position;
+
+        /**
+         * Constructs a block stream.
+         *
+         * @param in         The stream to read the compressed blocks from
+         * @param codec      The codec
+         * @param blockSize  Length of a full block
+         * @param totalBytes Number of bytes of records in the file
+         */
+        BlockInputStream(DataInputStream in, BlockCodec codec,
+                         int blockSize, long totalBytes) {
+            this.in = in;
+            this.codec = codec;
+            this.blockSize = blockSize;
+            remaining = totalBytes;
+        }
+
+        /**
+         * Read one byte.
+         *
+         * @return The byte, or -1 after the last record
+         * @throws IOException If a block cannot be read
+         */
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return blocks[blockIndex][position++] & 0xFF;
+        }
+
+        /**
+         * Read bytes into an array.
+         *
+         * @param b   The array to read into
+         * @param off First position to fill
+         * @param len Maximum number of bytes to read
+         * @return Number of bytes read, or -1 after the last record
+         * @throws IOException If a block cannot be read
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            byte[] block = blocks[blockIndex];
+            int n = Math.min(len, block.length - position);
+            System.arraycopy(block, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        /**
+         * Make sure there is a byte left in the current block, reading
+         * the next batch if needed.
+         *
+         * @return false if every record has been read
+         * @throws IOException If a block cannot be read
+         */
+        private boolean fill() throws IOException {
+            while (blockIndex < blocks.length
+                   && position == blocks[blockIndex].length) {
+                blockIndex++;
+                position = 0;
+            }
+            if (blockIndex < blocks.length) {
+                return true;
+            }
+            if (remaining == 0) {
+                return false;
+            }
+            int count = (int) Math.min(
+                BATCH_BLOCKS, (remaining + blockSize - 1) / blockSize
+            );
+            byte[][] compressed = new byte[count][];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                int length = in.readInt();
+                if (length <= 0 || length > maxCompressedLength(blockSize)) {
+                    throw new IOException("Corrupt compressed block");
+                }
+                compressed[i] = new byte[length];
+                in.readFully(compressed[i]);
+                lengths[i] = (int) Math.min(blockSize, remaining);
+                remaining -= lengths[i];
+            }
+            blocks = codec.decompressAll(compressed, lengths);
+            blockIndex = 0;
+            position = 0;
+            return true;
+        }
+    }
+
+    /**
+     * Input stream that counts the bytes read through it, used to find
+     * where the owner table ends.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        /** Number of bytes read so far */
+        private long count;
+
+        /**
+         * Constructs a counting stream.
+         *
+         * @param in The stream to read from
+         */
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Get the number of bytes read so far.
+         *
+         * @return Bytes read
+         */
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * Read one byte and count it.
+         *
+         * @return The byte, or -1 at the end of the stream
+         * @throws IOException If the stream cannot be read
+         */
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        /**
+         * Read bytes into an array and count them.
+         *
+         * @param b   The array to read into
+         * @param off First position to fill
+         * @param len Maximum number of bytes to read
+         * @return Number of bytes read, or -1 at the end of the stream
+         * @throws IOException If the stream cannot be read
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        /**
+         * Skip bytes and count them.
+         *
+         * @param n Number of bytes to skip
+         * @return Number of bytes skipped
+         * @throws IOException If the stream cannot be read
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package assignment1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * Opens a database file in batches of owners, so that a window can show
+ * the database while the rest of the file is still being read. The owner
+ * table is read and the boat records are mapped as open does, which
+ * gives the storage every owner, with boat counts and storage charges,
+ * straight away. Then readBatch scans the next run of owners' records on
+ * a background thread and addBatches adds the fleet totals and boat type
+ * counts of the runs scanned so far to the storage on the thread that
+ * owns it. Boats are never decoded while loading, so each batch costs a
+ * pass over its records.
+ * <p>
+ * Databases written with Java serialization, and sharded databases (see
+ * ShardedDatabase), are read in full by open and have no batches.
+ */
+public class BoatDatabaseLoader {
+    /** Fewest boats in a batch, other than the last */
+    private static final int MIN_BATCH_BOATS = 1 << 16;
+    /** Most batches a file is split into */
+    private static final int MAX_BATCHES = 20;
+
+    /** The storage being filled, the owner ID counter and snapshot ID */
+    private final BoatDatabaseFile.Contents contents;
+    /** Mapped boat records, or null for a database read in full */
+    private final MappedBoatFile records;
+    /** The sharded database being loaded, or null for a single file */
+    private final ShardedDatabase sharded;
+    /** Boats per batch */
+    private final int batchBoats;
+    /** Next owner to scan, used by the reading thread only */
+    private int nextOwner;
+    /** Records scanned so far, for progress */
+    private volatile int recordsScanned;
+    /** Batches scanned but not yet added to the storage */
+    private final ArrayDeque<MappedBoatFile.Scan> scanned =
+        new ArrayDeque<>();
+
+    /**
+     * Constructs a loader for a mapped or fully read database.
+     *
+     * @param contents The storage to fill and the values of the header
+     * @param sharded  The sharded database read, or null
+     */
+    private BoatDatabaseLoader(BoatDatabaseFile.Contents contents,
+                               ShardedDatabase sharded) {
+        this.contents = contents;
+        this.sharded = sharded;
+        records = contents.storage.getRecords();
+        int size = records == null ? 0 : records.size();
+        batchBoats = Math.max(MIN_BATCH_BOATS, size / MAX_BATCHES);
+    }
+
+    /**
+     * Start loading a database file by reading its owner table and
+     * mapping its boat records. A sharded database directory, or its
+     * manifest, is read in full, its shards in parallel. May be called
+     * on a background thread.
+     *
+     * @param file The file or sharded database directory to load
+     * @return The loader, whose storage holds every owner but, unless
+     *         the database was read in full, none of the fleet totals
+     * @throws IOException If the file cannot be read or is not a database
+     */
+    public static BoatDatabaseLoader open(File file) throws IOException {
+        File directory = ShardedDatabase.databaseDirectory(file);
+        if (directory != null) {
+            ShardedDatabase sharded = ShardedDatabase.load(directory, null);
+            return new BoatDatabaseLoader(
+                new BoatDatabaseFile.Contents(
+                    sharded.getStorage(), sharded.getOwnerIdCounter(), 0
+                ),
+                sharded
+            );
+        }
+        return new BoatDatabaseLoader(BoatDatabaseFile.map(file), null);
+    }
+
+    /**
+     * Scan the records of the next batch of owners, to be added by
+     * addBatches. Called on the background thread reading the file.
+     *
+     * @return true if a batch was scanned, false if every owner has been
+     * @throws IOException If a record has an unknown type
+     */
+    public boolean readBatch() throws IOException {
+        if (records == null || nextOwner == records.getOwnerCount()) {
+            return false;
+        }
+        int from = nextOwner;
+        int limit = records.getFirstRecord(from) + batchBoats;
+        int to = from + 1;
+        while (to < records.getOwnerCount()
+                && records.getFirstRecord(to + 1) <= limit) {
+            to++;
+        }
+        MappedBoatFile.Scan scan = records.scan(from, to);
+        nextOwner = to;
+        synchronized (scanned) {
+            scanned.add(scan);
+        }
+        recordsScanned = records.getFirstRecord(to);
+        return true;
+    }
+
+    /**
+     * Add every batch scanned so far to the storage. Called on the thread
+     * that owns the storage.
+     *
+     * @return true if any batches were added
+     */
+    public boolean addBatches() {
+        boolean added = false;
+        while (true) {
+            MappedBoatFile.Scan scan;
+            synchronized (scanned) {
+                scan = scanned.poll();
+            }
+            if (scan == null) {
+                return added;
+            }
+            contents.storage.addMappedRun(scan);
+            added = true;
+        }
+    }
+
+    /**
+     * Get how much of the file has been scanned.
+     *
+     * @return Percentage of the boat records scanned
+     */
+    public int getProgress() {
+        if (records == null || records.size() == 0) {
+            return 100;
+        }
+        return (int) ((long) recordsScanned * 100 / records.size());
+    }
+
+    /**
+     * Get the storage being filled, with the owner ID counter and
+     * snapshot ID of the file.
+     *
+     * @return The contents of the database; the storage holds only the
+     *         batches added so far
+     */
+    public BoatDatabaseFile.Contents getContents() {
+        return contents;
+    }
+
+    /**
+     * Get the sharded database being loaded.
+     *
+     * @return The sharded database, or null if a single file is loaded
+     */
+    public ShardedDatabase getShardedDatabase() {
+        return sharded;
+    }
+}
@@ -0,0 +1,948 @@
+package assignment1;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Imports boats in bulk from a CSV or JSON file, such as the fleet of
+ * another marina, for owners already in a storage.
+ * <p>
+ * A CSV file starts with a header row naming its columns, and a JSON
+ * file holds an array of flat objects (or one object per line) whose
+ * keys name the same columns. Columns are matched by name, ignoring case,
+ * spaces and underscores, so the column headings of the boat table can
+ * be used: Owner ID, Type (SailBoat or MotorBoat), Height, Length, Width,
+ * Value, Mast Height and Sail Area for sail boats, and Horse Power for
+ * motor boats. Other columns are ignored, and "-" or an empty value
+ * leaves a column out.
+ * <p>
+ * Rows are checked as BoatDialog checks the boats it adds: every field
+ * of the boat type must be given and be a positive number. A row that
+ * fails, or names an owner ID the storage does not hold, is written to
+ * an error file with its line number and the reason, and the rest of
+ * the file is still imported.
+ * <p>
+ * The file is read in chunks of rows, and several chunks are parsed at
+ * once in parallel on a background thread. The parsed boats are then
+ * added to the storage a chunk at a time with BoatStorage.addBoats, on
+ * the thread that owns the storage.
+ */
+public class BoatImporter {
+    /** Rows in a chunk */
+    private static final int CHUNK_ROWS = 1 << 13;
+    /** Chunks read before they are parsed together in parallel */
+    private static final int BATCH_CHUNKS =
+        2 * Runtime.getRuntime().availableProcessors();
+    /** Column of the owner ID in a parsed row */
+    private static final int OWNER_ID = 0;
+    /** Column of the boat type in a parsed row */
+    private static final int TYPE = 1;
+    /** Column of the height in a parsed row */
+    private static final int HEIGHT = 2;
+    /** Column of the length in a parsed row */
+    private static final int LENGTH = 3;
+    /** Column of the width in a parsed row */
+    private static final int WIDTH = 4;
+    /** Column of the value in a parsed row */
+    private static final int VALUE = 5;
+    /** Column of the mast height in a parsed row */
+    private static final int MAST_HEIGHT = 6;
+    /** Column of the sail area in a parsed row */
+    private static final int SAIL_AREA = 7;
+    /** Column of the horse power in a parsed row */
+    private static final int HORSE_POWER = 8;
+    /** Heading of each column in a parsed row */
+    private static final String[] HEADINGS = {
+        "Owner ID", "Type", "Height", "Length", "Width", "Value",
+        "Mast Height", "Sail Area", "Horse Power"
+    };
+
+    /** The file to import */
+    private final File file;
+    /** Whether the file is JSON rather than CSV */
+    private final boolean json;
+    /** Owners of the storage by ID number, as they were at the start */
+    private final Map<String, Owner> owners = new HashMap<>();
+    /** Chunks parsed and not yet added to the storage */
+    private final List<Chunk> chunks = new ArrayList<>();
+    /** Number of rows read */
+    private int rowCount;
+    /** Number of rows rejected */
+    private int rejectedCount;
+    /** Number of boats added to the storage */
+    private int addedCount;
+
+    /**
+     * The parsed boats of a chunk of rows, with their owners.
+     */
+    private static class Chunk {
+        /** Owner of each boat */
+        final Owner[] owners;
+        /** The boats, in file order */
+        final Boat[] boats;
+        /** Number of boats */
+        int count;
+        /** Rejected rows, as lines of the error file */
+        final StringBuilder rejects = new StringBuilder();
+        /** Number of rejected rows */
+        int rejectedCount;
+
+        /**
+         * Constructs an empty chunk.
+         *
+         * @param rows Number of rows in the chunk
+         */
+        Chunk(int rows) {
+            owners = new Owner[rows];
+            boats = new Boat[rows];
+        }
+    }
+
+    /**
+     * Prepares an import into a storage, taking note of the owners the
+     * storage holds. Called on the thread that owns the storage; owners
+     * added after this are not matched.
+     *
+     * @param file    The CSV or JSON file to import; files named .json,
+     *                .jsonl or .ndjson are read as JSON
+     * @param storage The storage the boats will be added to
+     */
+    public BoatImporter(File file, BoatStorage storage) {
+        this.file = file;
+        String name = file.getName().toLowerCase();
+        json = name.endsWith(".json") || name.endsWith(".jsonl")
+               || name.endsWith(".ndjson");
+        for (int i = 0; i < storage.getOwnerCount(); i++) {
+            Owner owner = storage.getOwnerAt(i);
+            owners.put(owner.getIdNumber(), owner);
+        }
+    }
+
+    /**
+     * Get the error file written for an import file.
+     *
+     * @param file The file imported
+     * @return The file rejected rows are written to
+     */
+    public static File errorFile(File file) {
+        return new File(file.getPath() + ".errors.csv");
+    }
+
+    /**
+     * Read and parse the whole file, writing rejected rows to the error
+     * file. The error file is written only if a row is rejected. May be
+     * called on a background thread.
+     *
+     * @param errorFile The file to write rejected rows to
+     * @param progress  Told the percentage of the file read each time it
+     *                  grows, or null
+     * @throws IOException If the file cannot be read, has no header row
+     *                     or required column, is not a JSON array of
+     *                     objects, or the error file cannot be written
+     */
+    public void parse(File errorFile, IntConsumer progress)
+            throws IOException {
+        long length = Math.max(1, file.length());
+        Writer errors = null;
+        try (BufferedReader in = Files.newBufferedReader(
+                 file.toPath(), StandardCharsets.UTF_8)) {
+            RowReader rows = json ? new JsonRowReader(in)
+                                  : new CsvRowReader(in);
+            int percent = 0;
+            boolean more = true;
+            while (more) {
+                List<List<Row>> batch = new ArrayList<>();
+                while (more && batch.size() < BATCH_CHUNKS) {
+                    List<Row> chunk = new ArrayList<>(CHUNK_ROWS);
+                    Row row;
+                    while (chunk.size() < CHUNK_ROWS
+                           && (row = rows.next()) != null) {
+                        chunk.add(row);
+                    }
+                    more = chunk.size() == CHUNK_ROWS;
+                    if (!chunk.isEmpty()) {
+                        batch.add(chunk);
+                    }
+                }
+                List<Chunk> parsed = new ArrayList<>(batch.size());
+                batch.parallelStream().map(rows::parseChunk)
+                     .forEachOrdered(parsed::add);
+                for (Chunk chunk : parsed) {
+                    rowCount += chunk.count + chunk.rejectedCount;
+                    rejectedCount += chunk.rejectedCount;
+                    if (chunk.rejectedCount > 0) {
+                        if (errors == null) {
+                            errors = new BufferedWriter(
+                                Files.newBufferedWriter(
+                                    errorFile.toPath(),
+                                    StandardCharsets.UTF_8
+                                ), 1 << 16
+                            );
+                            errors.write("Line,Error,Row\n");
+                        }
+                        errors.append(chunk.rejects);
+                    }
+                    chunks.add(chunk);
+                }
+                int done = (int) Math.min(
+                    99, rows.getCharsRead() * 100 / length
+                );
+                if (progress != null && done > percent) {
+                    percent = done;
+                    progress.accept(percent);
+                }
+            }
+        } finally {
+            if (errors != null) {
+                errors.close();
+            }
+        }
+        if (progress != null) {
+            progress.accept(100);
+        }
+    }
+
+    /**
+     * Add the parsed boats to the storage, a chunk at a time. Called on
+     * the thread that owns the storage once parse has returned.
+     *
+     * @param storage The storage given to the constructor
+     * @return Number of boats added
+     */
+    public int addTo(BoatStorage storage) {
+        for (Chunk chunk : chunks) {
+            Map<Owner, List<Boat>> boatsByOwner = new LinkedHashMap<>();
+            for (int i = 0; i < chunk.count; i++) {
+                boatsByOwner.computeIfAbsent(
+                    chunk.owners[i], owner -> new ArrayList<>()
+                ).add(chunk.boats[i]);
+            }
+            storage.addBoats(boatsByOwner);
+            addedCount += chunk.count;
+        }
+        chunks.clear();
+        return addedCount;
+    }
+
+    /**
+     * Get the number of rows read, not counting the CSV header row.
+     *
+     * @return Number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Get the number of rows rejected.
+     *
+     * @return Number of rows written to the error file
+     */
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Get the number of boats added by addTo.
+     *
+     * @return Number of boats added
+     */
+    public int getAddedCount() {
+        return addedCount;
+    }
+
+    /**
+     * Make a boat from the values of a row, checking them as BoatDialog
+     * does, and add it to a chunk.
+     *
+     * @param values Values of the row by column, null where not given
+     * @param line   Line number of the row, for the error file
+     * @param text   Text of the row, for the error file
+     * @param chunk  The chunk to add the boat or the rejected row to
+     */
+    private void addRow(String[] values, int line, String text,
+                        Chunk chunk) {
+        try {
+            String type = normalise(require(values, TYPE));
+            boolean sail = type.equals("sailboat") || type.equals("sail");
+            int[] columns;
+            if (sail) {
+                columns = new int[] {
+                    HEIGHT, LENGTH, WIDTH, VALUE, MAST_HEIGHT, SAIL_AREA
+                };
+            } else if (type.equals("motorboat") || type.equals("motor")) {
+                columns = new int[] {HEIGHT, LENGTH, WIDTH, VALUE,
+                                     HORSE_POWER};
+            } else {
+                throw new IllegalArgumentException(
+                    "Unknown boat type " + values[TYPE]
+                );
+            }
+            StringBuilder missing = new StringBuilder();
+            for (int column : columns) {
+                if (values[column] == null) {
+                    missing.append(HEADINGS[column]).append(", ");
+                }
+            }
+            if (missing.length() > 0) {
+                missing.setLength(missing.length() - 2);
+                throw new IllegalArgumentException(
+                    missing + " field(s) cannot be empty!"
+                );
+            }
+            Owner owner = owners.get(require(values, OWNER_ID));
+            if (owner == null) {
+                throw new IllegalArgumentException(
+                    "No owner with ID Number " + values[OWNER_ID]
+                );
+            }
+            double height = number(values, HEIGHT);
+            double length = number(values, LENGTH);
+            double width = number(values, WIDTH);
+            double value = number(values, VALUE);
+            Boat boat;
+            if (sail) {
+                double mastHeight = number(values, MAST_HEIGHT);
+                double sailArea = number(values, SAIL_AREA);
+                if (height <= 0 || length <= 0 || width <= 0
+                        || value <= 0 || mastHeight <= 0 || sailArea <= 0) {
+                    throw new IllegalArgumentException(
+                        "Height, Length, Width, Value, Mast Height, and "
+                        + "Sail Area must all be positive numbers."
+                    );
+                }
+                boat = new SailBoat(height, length, width, value,
+                                    mastHeight, sailArea);
+            } else {
+                int horsePower;
+                try {
+                    horsePower = Integer.parseInt(values[HORSE_POWER]);
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException(
+                        "Invalid number for Horse Power"
+                    );
+                }
+                if (height <= 0 || length <= 0 || width <= 0
+                        || value <= 0 || horsePower <= 0) {
+                    throw new IllegalArgumentException(
+                        "Height, Length, Width, Value, and Horse Power "
+                        + "must all be positive numbers."
+                    );
+                }
+                boat = new MotorBoat(height, length, width, value,
+                                     horsePower);
+            }
+            chunk.owners[chunk.count] = owner;
+            chunk.boats[chunk.count++] = boat;
+        } catch (IllegalArgumentException ex) {
+            reject(line, ex.getMessage(), text, chunk);
+        }
+    }
+
+    /**
+     * Add a rejected row to a chunk's lines of the error file.
+     *
+     * @param line   Line number of the row
+     * @param reason Why the row was rejected
+     * @param text   Text of the row
+     * @param chunk  The chunk
+     */
+    private static void reject(int line, String reason, String text,
+                               Chunk chunk) {
+        chunk.rejects.append(line).append(',');
+        quote(reason, chunk.rejects);
+        chunk.rejects.append(',');
+        quote(text, chunk.rejects);
+        chunk.rejects.append('\n');
+        chunk.rejectedCount++;
+    }
+
+    /**
+     * Append a value to a CSV line as a quoted field.
+     *
+     * @param value The value
+     * @param out   The line being built
+     */
+    private static void quote(String value, StringBuilder out) {
+        out.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Get a value that must be given.
+     *
+     * @param values Values of the row by column
+     * @param column The column
+     * @return The value
+     * @throws IllegalArgumentException If the value is not given
+     */
+    private static String require(String[] values, int column) {
+        if (values[column] == null) {
+            throw new IllegalArgumentException(
+                HEADINGS[column] + " field(s) cannot be empty!"
+            );
+        }
+        return values[column];
+    }
+
+    /**
+     * Parse a decimal value. Infinite and NaN values are rejected, since
+     * they would spoil every total that includes the boat.
+     *
+     * @param values Values of the row by column
+     * @param column The column
+     * @return The value
+     * @throws IllegalArgumentException If the value is not a number
+     */
+    private static double number(String[] values, int column) {
+        double value;
+        try {
+            value = Double.parseDouble(values[column]);
+        } catch (NumberFormatException ex) {
+            value = Double.NaN;
+        }
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException(
+                "Invalid number for " + HEADINGS[column]
+            );
+        }
+        return value;
+    }
+
+    /**
+     * Normalise a column name or boat type for matching: lower case with
+     * only letters and digits kept.
+     *
+     * @param name The name
+     * @return The normalised name
+     */
+    private static String normalise(String name) {
+        StringBuilder out = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                out.append(Character.toLowerCase(c));
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Find the column of a parsed row a heading or key names.
+     *
+     * @param name The heading or key
+     * @return The column, or -1 if the name is not a column
+     */
+    private static int column(String name) {
+        String normalised = normalise(name);
+        for (int i = 0; i < HEADINGS.length; i++) {
+            if (normalise(HEADINGS[i]).equals(normalised)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Store a field of a row under its column, treating "-" and blank
+     * values as not given.
+     *
+     * @param values Values of the row by column
+     * @param column The column, or -1 to ignore the field
+     * @param value  The field
+     */
+    private static void setValue(String[] values, int column, String value) {
+        if (column < 0) {
+            return;
+        }
+        value = value.trim();
+        values[column] = value.isEmpty() || value.equals("-") ? null : value;
+    }
+
+    /**
+     * A row of the file as read, before it is parsed.
+     */
+    private static class Row {
+        /** Line number the row starts on */
+        final int line;
+        /** Text of the row */
+        final String text;
+
+        /**
+         * Constructs a row.
+         *
+         * @param line Line number the row starts on
+         * @param text Text of the row
+         */
+        Row(int line, String text) {
+            this.line = line;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Cuts the file into rows on the reading thread and parses chunks of
+     * rows on any thread.
+     */
+    private abstract class RowReader {
+        /** Number of characters read */
+        long charsRead;
+
+        /**
+         * Read the next row.
+         *
+         * @return The row, or null at the end of the file
+         * @throws IOException If the file cannot be read or is malformed
+         */
+        abstract Row next() throws IOException;
+
+        /**
+         * Split a row into its values by column.
+         *
+         * @param text Text of the row
+         * @return Values by column, null where not given
+         * @throws IllegalArgumentException If the row is malformed
+         */
+        abstract String[] split(String text);
+
+        /**
+         * Get the number of characters read, for progress.
+         *
+         * @return Characters read so far
+         */
+        long getCharsRead() {
+            return charsRead;
+        }
+
+        /**
+         * Parse a chunk of rows. May be called on any thread.
+         *
+         * @param rows The rows
+         * @return The parsed chunk
+         */
+        Chunk parseChunk(List<Row> rows) {
+            Chunk chunk = new Chunk(rows.size());
+            for (Row row : rows) {
+                String[] values;
+                try {
+                    values = split(row.text);
+                } catch (IllegalArgumentException ex) {
+                    reject(row.line, ex.getMessage(), row.text, chunk);
+                    continue;
+                } catch (IndexOutOfBoundsException ex) {
+                    reject(row.line, "The row is not valid", row.text,
+                           chunk);
+                    continue;
+                }
+                addRow(values, row.line, row.text, chunk);
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Reads CSV rows, one per line, after a header row naming the
+     * columns. Fields may be quoted with double quotes, doubling any
+     * quote inside them, but may not span lines.
+     */
+    private class CsvRowReader extends RowReader {
+        /** The file */
+        private final BufferedReader in;
+        /** Column of each field of a row, -1 if it is ignored */
+        private final int[] columns;
+        /** Number of the last line read */
+        private int line;
+
+        /**
+         * Reads the header row.
+         *
+         * @param in The file
+         * @throws IOException If the file cannot be read, or the header
+         *                     row lacks a column every row needs
+         */
+        CsvRowReader(BufferedReader in) throws IOException {
+            this.in = in;
+            String header;
+            do {
+                header = in.readLine();
+                line++;
+                if (header == null) {
+                    throw new IOException("The file has no header row");
+                }
+                charsRead += header.length() + 1;
+            } while (header.trim().isEmpty());
+            List<String> names = fields(header.replace("\uFEFF", ""));
+            columns = new int[names.size()];
+            boolean[] found = new boolean[HEADINGS.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = column(names.get(i));
+                if (columns[i] >= 0) {
+                    found[columns[i]] = true;
+                }
+            }
+            for (int column : new int[] {OWNER_ID, TYPE, HEIGHT, LENGTH,
+                                         WIDTH, VALUE}) {
+                if (!found[column]) {
+                    throw new IOException(
+                        "The header row has no " + HEADINGS[column]
+                        + " column"
+                    );
+                }
+            }
+        }
+
+        /**
+         * Read the next line that is not blank.
+         *
+         * @return The row, or null at the end of the file
+         * @throws IOException If the file cannot be read
+         */
+        @Override
+        Row next() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                if (text == null) {
+                    return null;
+                }
+                line++;
+                charsRead += text.length() + 1;
+            } while (text.trim().isEmpty());
+            return new Row(line, text);
+        }
+
+        /**
+         * Split a line into its fields and place them by column.
+         *
+         * @param text The line
+         * @return Values by column, null where not given
+         * @throws IllegalArgumentException If a quoted field is not
+         *                                  closed
+         */
+        @Override
+        String[] split(String text) {
+            List<String> fields = fields(text);
+            String[] values = new String[HEADINGS.length];
+            for (int i = 0; i < fields.size() && i < columns.length; i++) {
+                setValue(values, columns[i], fields.get(i));
+            }
+            return values;
+        }
+
+        /**
+         * Split a line into its fields.
+         *
+         * @param text The line
+         * @return The fields, unquoted
+         * @throws IllegalArgumentException If a quoted field is not
+         *                                  closed
+         */
+        private List<String> fields(String text) {
+            List<String> fields = new ArrayList<>();
+            int i = 0;
+            while (true) {
+                if (i < text.length() && text.charAt(i) == '"') {
+                    StringBuilder field = new StringBuilder();
+                    i++;
+                    while (true) {
+                        int quote = text.indexOf('"', i);
+                        if (quote < 0) {
+                            throw new IllegalArgumentException(
+                                "Quoted field is not closed"
+                            );
+                        }
+                        field.append(text, i, quote);
+                        i = quote + 1;
+                        if (i < text.length() && text.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    fields.add(field.toString());
+                    int comma = text.indexOf(',', i);
+                    if (comma < 0) {
+                        return fields;
+                    }
+                    i = comma + 1;
+                } else {
+                    int comma = text.indexOf(',', i);
+                    if (comma < 0) {
+                        fields.add(text.substring(i));
+                        return fields;
+                    }
+                    fields.add(text.substring(i, comma));
+                    i = comma + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads JSON rows: the objects of a top-level array, or objects one
+     * after another as in JSON Lines. Each object must be flat, holding
+     * only strings, numbers, booleans and nulls.
+     */
+    private class JsonRowReader extends RowReader {
+        /** The file */
+        private final BufferedReader in;
+        /** Characters read from the file and not yet used */
+        private final char[] buffer = new char[1 << 16];
+        /** Position of the next character in buffer */
+        private int position;
+        /** Number of characters in buffer */
+        private int limit;
+        /** Line number of the next character */
+        private int line = 1;
+        /** Whether the objects are inside a top-level array */
+        private boolean inArray;
+        /** Whether the end of the top-level array has been read */
+        private boolean ended;
+
+        /**
+         * Constructs a reader.
+         *
+         * @param in The file
+         */
+        JsonRowReader(BufferedReader in) {
+            this.in = in;
+        }
+
+        /**
+         * Read the text of the next object.
+         *
+         * @return The row, or null at the end of the file
+         * @throws IOException If the file cannot be read or text other
+         *                     than objects is found at the top level
+         */
+        @Override
+        Row next() throws IOException {
+            int c;
+            while (true) {
+                c = read();
+                if (c < 0) {
+                    if (inArray && !ended) {
+                        throw new IOException(
+                            "The JSON array is not closed"
+                        );
+                    }
+                    return null;
+                }
+                if (c == '[' && !inArray && !ended) {
+                    inArray = true;
+                } else if (c == ']' && inArray && !ended) {
+                    ended = true;
+                } else if (c == '{' && !ended) {
+                    break;
+                } else if (!Character.isWhitespace(c) && c != ','
+                           && c != '\uFEFF') {
+                    throw new IOException(
+                        "Expected a JSON object on line " + line
+                    );
+                }
+            }
+            int start = line;
+            StringBuilder text = new StringBuilder("{");
+            int depth = 1;
+            boolean inString = false;
+            while (depth > 0) {
+                c = read();
+                if (c < 0) {
+                    throw new IOException(
+                        "The JSON object on line " + start
+                        + " is not closed"
+                    );
+                }
+                text.append((char) c);
+                if (inString) {
+                    if (c == '\\') {
+                        c = read();
+                        if (c >= 0) {
+                            text.append((char) c);
+                        }
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            }
+            return new Row(start, text.toString());
+        }
+
+        /**
+         * Read the next character, counting lines.
+         *
+         * @return The character, or -1 at the end of the file
+         * @throws IOException If the file cannot be read
+         */
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+                charsRead += limit;
+            }
+            char c = buffer[position++];
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+
+        /**
+         * Parse a flat object and place its values by column.
+         *
+         * @param text The object
+         * @return Values by column, null where not given
+         * @throws IllegalArgumentException If the object is not valid
+         *                                  JSON or holds nested values
+         */
+        @Override
+        String[] split(String text) {
+            String[] values = new String[HEADINGS.length];
+            int[] at = {1};
+            skipSpace(text, at);
+            if (text.charAt(at[0]) == '}') {
+                return values;
+            }
+            while (true) {
+                skipSpace(text, at);
+                if (text.charAt(at[0]) != '"') {
+                    throw new IllegalArgumentException("Expected a key");
+                }
+                int column = column(string(text, at));
+                skipSpace(text, at);
+                expect(text, at, ':');
+                skipSpace(text, at);
+                char c = text.charAt(at[0]);
+                if (c == '"') {
+                    setValue(values, column, string(text, at));
+                } else if (c == '{' || c == '[') {
+                    throw new IllegalArgumentException(
+                        "Nested values are not supported"
+                    );
+                } else {
+                    int start = at[0];
+                    while (",} \t\r\n".indexOf(text.charAt(at[0])) < 0) {
+                        at[0]++;
+                    }
+                    String literal = text.substring(start, at[0]);
+                    setValue(values, column,
+                             literal.equals("null") ? "" : literal);
+                }
+                skipSpace(text, at);
+                if (text.charAt(at[0]) == '}') {
+                    return values;
+                }
+                expect(text, at, ',');
+            }
+        }
+
+        /**
+         * Read a string starting at a quote.
+         *
+         * @param text The object
+         * @param at   Holds the position of the quote, moved past the
+         *             closing quote
+         * @return The string, unescaped
+         * @throws IllegalArgumentException If an escape is not valid
+         */
+        private String string(String text, int[] at) {
+            StringBuilder out = new StringBuilder();
+            int i = at[0] + 1;
+            while (true) {
+                char c = text.charAt(i++);
+                if (c == '"') {
+                    break;
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                c = text.charAt(i++);
+                switch (c) {
+                    case 'b':
+                        out.append('\b');
+                        break;
+                    case 'f':
+                        out.append('\f');
+                        break;
+                    case 'n':
+                        out.append('\n');
+                        break;
+                    case 'r':
+                        out.append('\r');
+                        break;
+                    case 't':
+                        out.append('\t');
+                        break;
+                    case 'u':
+                        try {
+                            out.append((char) Integer.parseInt(
+                                text.substring(i, i + 4), 16
+                            ));
+                        } catch (NumberFormatException
+                                 | IndexOutOfBoundsException ex) {
+                            throw new IllegalArgumentException(
+                                "Invalid escape in a string"
+                            );
+                        }
+                        i += 4;
+                        break;
+                    default:
+                        out.append(c);
+                }
+            }
+            at[0] = i;
+            return out.toString();
+        }
+
+        /**
+         * Skip white space.
+         *
+         * @param text The object
+         * @param at   Holds the position, moved past any white space
+         */
+        private void skipSpace(String text, int[] at) {
+            while (Character.isWhitespace(text.charAt(at[0]))) {
+                at[0]++;
+            }
+        }
+
+        /**
+         * Step over an expected character.
+         *
+         * @param text     The object
+         * @param at       Holds the position, moved past the character
+         * @param expected The character
+         * @throws IllegalArgumentException If another character is found
+         */
+        private void expect(String text, int[] at, char expected) {
+            if (text.charAt(at[0]) != expected) {
+                throw new IllegalArgumentException(
+                    "Expected '" + expected + "' in the JSON object"
+                );
+            }
+            at[0]++;
+        }
+    }
+}
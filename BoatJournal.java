@@ -0,0 +1,619 @@
+package assignment1;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the changes made to a BoatStorage since its
+ * database file was last written. The journal sits next to the database
+ * as "&lt;database&gt;.journal" and records owners and boats as they are
+ * added or edited, so a save only has to make the new records durable
+ * instead of rewriting the whole database, and edits survive a crash.
+ * <p>
+ * Records are buffered and written to disk by commit, which forces them
+ * to the device with a single fsync for everything recorded since the
+ * previous commit. Successive edits of the same owner or boat that have
+ * not been written yet are merged into one record.
+ * <p>
+ * The journal header names the snapshot ID of the database file it
+ * applies to. When the database is opened, the journal is replayed over
+ * it if the IDs match and discarded otherwise, since a newer snapshot
+ * already holds its changes. A record torn by a crash fails its checksum
+ * and ends the replay. Writing the database again (a checkpoint) starts
+ * a new, empty journal.
+ * <p>
+ * Owners are identified by their position in the storage and boats by
+ * their position in their owner's list, which never change because
+ * nothing can be removed.
+ */
+public class BoatJournal implements Closeable {
+    /** Magic number at the start of every journal ("BSJL") */
+    static final int MAGIC = 0x42534A4C;
+    /** Current journal version */
+    static final short VERSION = 1;
+    /** Size of the journal header in bytes */
+    private static final int HEADER_SIZE = 14;
+    /** Record type of an added owner */
+    private static final byte ADD_OWNER = 1;
+    /** Record type of an added boat */
+    private static final byte ADD_BOAT = 2;
+    /** Record type of an edited owner */
+    private static final byte EDIT_OWNER = 3;
+    /** Record type of an edited boat */
+    private static final byte EDIT_BOAT = 4;
+    /** Record type of a new owner ID counter */
+    private static final byte OWNER_ID_COUNTER = 5;
+    /** Largest record accepted when replaying */
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    /** Buffered records are written out once they reach this size */
+    private static final int FLUSH_SIZE = 1 << 16;
+    /** Smallest journal size at which a checkpoint is suggested */
+    private static final long MIN_CHECKPOINT_SIZE = 1 << 20;
+
+    /** The journal file */
+    private final FileChannel channel;
+    /** Storage whose changes are recorded */
+    private final BoatStorage storage;
+    /** Journal size above which a checkpoint is suggested */
+    private final long checkpointSize;
+    /** Next owner ID to hand out, as last recorded or replayed */
+    private int ownerIdCounter;
+    /** Framed records not yet written to the file */
+    private final RecordBuffer pending = new RecordBuffer();
+    /** Payload of the record being built */
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    /** Writer for the record being built */
+    private final DataOutputStream record = new DataOutputStream(payload);
+    /** Checksum of the record being built or read */
+    private final CRC32 crc = new CRC32();
+    /** Owner or boat of the last buffered record if it was an edit */
+    private Object lastEdited;
+    /** Start of the last buffered record in the pending buffer */
+    private int lastRecordStart;
+    /** First failure writing buffered records, reported by commit */
+    private IOException failure;
+
+    /**
+     * Constructs a journal over an open journal file.
+     *
+     * @param channel        The journal file
+     * @param storage        Storage whose changes are recorded
+     * @param checkpointSize Journal size above which a checkpoint is
+     *                       suggested
+     * @param ownerIdCounter Next owner ID to hand out
+     */
+    private BoatJournal(FileChannel channel, BoatStorage storage,
+                        long checkpointSize, int ownerIdCounter) {
+        this.channel = channel;
+        this.storage = storage;
+        this.checkpointSize = checkpointSize;
+        this.ownerIdCounter = ownerIdCounter;
+    }
+
+    /**
+     * Get the journal file of a database file.
+     *
+     * @param database The database file
+     * @return The journal file next to it
+     */
+    public static File journalFile(File database) {
+        return new File(database.getPath() + ".journal");
+    }
+
+    /**
+     * Open the journal of a database that has just been read or written,
+     * replay its records over the storage if it belongs to this snapshot
+     * of the database, and start recording the storage's changes.
+     * A journal for another snapshot is discarded.
+     *
+     * @param database       The database file
+     * @param storage        The storage read from or written to the file
+     * @param snapshotId     Snapshot ID of the database file
+     * @param ownerIdCounter Next owner ID to hand out, from the file
+     * @return The journal, attached to the storage
+     * @throws IOException If the journal cannot be read, replayed or
+     *                     written
+     */
+    public static BoatJournal open(File database, BoatStorage storage,
+                                   long snapshotId, int ownerIdCounter)
+            throws IOException {
+        FileChannel channel = FileChannel.open(
+            journalFile(database).toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE
+        );
+        try {
+            BoatJournal journal = new BoatJournal(
+                channel, storage,
+                Math.max(MIN_CHECKPOINT_SIZE, database.length() / 2),
+                ownerIdCounter
+            );
+            long end = journal.replay(snapshotId);
+            if (end == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putShort(VERSION).putLong(snapshotId);
+                header.flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                channel.force(false);
+                end = HEADER_SIZE;
+            }
+            // Drop a torn record left by a crash, then append after the rest
+            channel.truncate(end);
+            channel.position(end);
+            storage.setJournal(journal);
+            return journal;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Tell whether the journal of a database file can be opened for
+     * writing: the journal file if there is one, or else the directory
+     * it would be created in, must be writable.
+     *
+     * @param database The database file
+     * @return true if open can create or append to the journal
+     */
+    public static boolean canWrite(File database) {
+        Path journal = journalFile(database).toPath().toAbsolutePath();
+        if (Files.exists(journal)) {
+            return Files.isWritable(journal);
+        }
+        Path directory = journal.getParent();
+        return directory != null && Files.isWritable(directory);
+    }
+
+    /**
+     * Replay the journal of a database over the storage without
+     * recording further changes, for a database whose journal cannot
+     * be written. Nothing is written, and a missing journal or one for
+     * another snapshot is left alone.
+     *
+     * @param database       The database file
+     * @param storage        The storage read from the file
+     * @param snapshotId     Snapshot ID of the database file
+     * @param ownerIdCounter Next owner ID to hand out, from the file
+     * @return Next owner ID to hand out, including replayed changes
+     * @throws IOException If the journal cannot be read or replayed
+     */
+    public static int replay(File database, BoatStorage storage,
+                             long snapshotId, int ownerIdCounter)
+            throws IOException {
+        File file = journalFile(database);
+        if (!file.exists()) {
+            return ownerIdCounter;
+        }
+        try (
+            FileChannel channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.READ
+            )
+        ) {
+            BoatJournal journal = new BoatJournal(
+                channel, storage, Long.MAX_VALUE, ownerIdCounter
+            );
+            journal.replay(snapshotId);
+            return journal.ownerIdCounter;
+        }
+    }
+
+    /**
+     * Get the next owner ID to hand out, including replayed changes.
+     *
+     * @return Next owner ID
+     */
+    public int getOwnerIdCounter() {
+        return ownerIdCounter;
+    }
+
+    /**
+     * Record a new owner ID counter.
+     *
+     * @param ownerIdCounter Next owner ID to hand out
+     */
+    public void ownerIdCounterChanged(int ownerIdCounter) {
+        this.ownerIdCounter = ownerIdCounter;
+        try {
+            record.writeByte(OWNER_ID_COUNTER);
+            record.writeInt(ownerIdCounter);
+        } catch (IOException ex) {
+            throw new AssertionError(ex); // Writes to memory cannot fail
+        }
+        append(null);
+    }
+
+    /**
+     * Record an owner added to the storage.
+     * Called by the storage.
+     *
+     * @param owner The new owner
+     */
+    void ownerAdded(Owner owner) {
+        try {
+            record.writeByte(ADD_OWNER);
+            writeOwnerDetails(owner);
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+        append(null);
+    }
+
+    /**
+     * Record a boat added to the storage.
+     * Called by the storage.
+     *
+     * @param owner The owner of the boat
+     * @param boat  The new boat
+     */
+    void boatAdded(Owner owner, Boat boat) {
+        try {
+            record.writeByte(ADD_BOAT);
+            record.writeInt(owner.getPosition());
+            BoatDatabaseFile.writeBoat(record, boat);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+        append(null);
+    }
+
+    /**
+     * Record the new details of an owner.
+     * Called by the storage.
+     *
+     * @param owner The owner that changed
+     */
+    void ownerChanged(Owner owner) {
+        replaceLastEdit(owner);
+        try {
+            record.writeByte(EDIT_OWNER);
+            record.writeInt(owner.getPosition());
+            writeOwnerDetails(owner);
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+        append(owner);
+    }
+
+    /**
+     * Record the new values of a boat.
+     * Called by the storage.
+     *
+     * @param owner The owner of the boat
+     * @param boat  The boat that changed
+     */
+    void boatChanged(Owner owner, Boat boat) {
+        replaceLastEdit(boat);
+        try {
+            record.writeByte(EDIT_BOAT);
+            record.writeInt(owner.getPosition());
+            record.writeInt(boat.getPosition());
+            BoatDatabaseFile.writeBoat(record, boat);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+        append(boat);
+    }
+
+    /**
+     * Write every buffered record to the journal and force it to the
+     * device, so that all changes recorded so far survive a crash.
+     *
+     * @throws IOException If the journal cannot be written
+     */
+    public void commit() throws IOException {
+        flush();
+        if (failure != null) {
+            IOException ex = failure;
+            failure = null;
+            throw ex;
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Get the size of the journal, including records not yet written.
+     *
+     * @return Size in bytes
+     */
+    public long size() {
+        try {
+            return channel.position() + pending.size();
+        } catch (IOException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Check whether the journal has grown large enough that writing the
+     * whole database (which starts a new journal) would be worthwhile.
+     *
+     * @return true if a checkpoint is suggested
+     */
+    public boolean needsCheckpoint() {
+        return size() > checkpointSize;
+    }
+
+    /**
+     * Commit the buffered records, stop recording the storage's changes
+     * and close the journal file.
+     *
+     * @throws IOException If the journal cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        storage.detachJournal(this);
+        try {
+            commit();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Write the ID number, name and address of an owner to the record
+     * being built.
+     *
+     * @param owner The owner
+     * @throws IOException Never, the record is built in memory
+     */
+    private void writeOwnerDetails(Owner owner) throws IOException {
+        record.writeUTF(owner.getIdNumber());
+        record.writeUTF(owner.getName());
+        record.writeUTF(owner.getAddress());
+    }
+
+    /**
+     * Drop the last buffered record if it is an edit of the same owner
+     * or boat, which the record about to be built supersedes.
+     *
+     * @param edited The owner or boat being edited
+     */
+    private void replaceLastEdit(Object edited) {
+        if (lastEdited == edited) {
+            pending.truncate(lastRecordStart);
+        }
+    }
+
+    /**
+     * Frame the record that has been built (length, payload, checksum)
+     * and add it to the pending records.
+     *
+     * @param edited The owner or boat the record edits, or null if it is
+     *               not an edit
+     */
+    private void append(Object edited) {
+        byte[] bytes = payload.toByteArray();
+        payload.reset();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        lastRecordStart = pending.size();
+        lastEdited = edited;
+        pending.writeInt(bytes.length);
+        pending.write(bytes, 0, bytes.length);
+        pending.writeInt((int) crc.getValue());
+        if (pending.size() >= FLUSH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the pending records to the journal file without forcing them
+     * to the device. A failure is kept and reported by the next commit.
+     */
+    private void flush() {
+        lastEdited = null;
+        if (pending.size() == 0 || failure != null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = pending.asByteBuffer();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            pending.reset();
+        } catch (IOException ex) {
+            failure = ex;
+        }
+    }
+
+    /**
+     * Replay the records of the journal file over the storage if the file
+     * belongs to the given snapshot.
+     *
+     * @param snapshotId Snapshot ID of the database the storage was read
+     *                   from
+     * @return Position after the last intact record, or 0 if the journal
+     *         is empty or belongs to another snapshot
+     * @throws IOException If the journal cannot be read or a record
+     *                     does not fit the storage
+     */
+    private long replay(long snapshotId) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return 0; // New, or torn while its header was written
+        }
+        channel.position(0);
+        // The stream is not closed, as that would close the channel
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            Channels.newInputStream(channel), FLUSH_SIZE
+        ));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a boat storage journal");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported journal version " + version);
+        }
+        if (in.readLong() != snapshotId) {
+            return 0;
+        }
+        long end = HEADER_SIZE;
+        byte[] bytes;
+        while ((bytes = readRecord(in)) != null) {
+            apply(new DataInputStream(new ByteArrayInputStream(bytes)));
+            end += bytes.length + 8;
+        }
+        return end;
+    }
+
+    /**
+     * Read the next intact record from the journal.
+     *
+     * @param in The journal stream
+     * @return The record payload, or null at the end of the journal or
+     *         at a torn record
+     * @throws IOException If the journal cannot be read
+     */
+    private byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            int checksum = in.readInt();
+            crc.reset();
+            crc.update(bytes, 0, length);
+            return checksum == (int) crc.getValue() ? bytes : null;
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Apply one record to the storage.
+     *
+     * @param in The record payload
+     * @throws IOException If the record is not valid for the storage
+     */
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case ADD_OWNER:
+                storage.addOwner(new Owner(in.readUTF(), in.readUTF(),
+                                           in.readUTF(), new ArrayList<>()));
+                break;
+            case ADD_BOAT: {
+                Owner owner = ownerAt(in.readInt());
+                storage.addBoat(BoatDatabaseFile.readBoat(in), owner);
+                break;
+            }
+            case EDIT_OWNER: {
+                Owner owner = ownerAt(in.readInt());
+                String idNumber = in.readUTF();
+                if (!idNumber.equals(owner.getIdNumber())) {
+                    owner.setIdNumber(idNumber);
+                }
+                owner.setName(in.readUTF());
+                owner.setAddress(in.readUTF());
+                break;
+            }
+            case EDIT_BOAT: {
+                List<Boat> boats = ownerAt(in.readInt()).getBoats();
+                int index = in.readInt();
+                if (index < 0 || index >= boats.size()) {
+                    throw new IOException("Journal names a missing boat");
+                }
+                copyValues(BoatDatabaseFile.readBoat(in), boats.get(index));
+                break;
+            }
+            case OWNER_ID_COUNTER:
+                ownerIdCounter = in.readInt();
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Get an owner of the storage by position.
+     *
+     * @param position Position of the owner
+     * @return The owner
+     * @throws IOException If there is no owner at the position
+     */
+    private Owner ownerAt(int position) throws IOException {
+        if (position < 0 || position >= storage.getOwnerCount()) {
+            throw new IOException("Journal names a missing owner");
+        }
+        return storage.getOwnerAt(position);
+    }
+
+    /**
+     * Set the values of a stored boat to those of a journal record.
+     *
+     * @param from Boat decoded from the record
+     * @param to   The stored boat
+     * @throws IOException If the boats are not of the same type
+     */
+    private static void copyValues(Boat from, Boat to) throws IOException {
+        if (from.getClass() != to.getClass()) {
+            throw new IOException("Journal changes the type of a boat");
+        }
+        to.setHeight(from.getHeight());
+        to.setLength(from.getLength());
+        to.setWidth(from.getWidth());
+        to.setBoatValue(from.getBoatValue());
+        if (to instanceof SailBoat) {
+            ((SailBoat) to).setMastHeight(((SailBoat) from).getMastHeight());
+            ((SailBoat) to).setSailArea(((SailBoat) from).getSailArea());
+        } else if (to instanceof MotorBoat) {
+            ((MotorBoat) to).setHorsePower(
+                ((MotorBoat) from).getHorsePower()
+            );
+        }
+    }
+
+    /**
+     * Byte buffer for framed records that can drop its tail and expose
+     * its contents without copying.
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        /**
+         * Write an int in big-endian order.
+         *
+         * @param value The value to write
+         */
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        /**
+         * Drop everything after the given length.
+         *
+         * @param length Number of bytes to keep
+         */
+        void truncate(int length) {
+            count = length;
+        }
+
+        /**
+         * Get the contents as a byte buffer sharing this buffer's array.
+         *
+         * @return The contents
+         */
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package assignment1;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The boats of one concrete Boat class held by a BoatStorage, together
+ * with the running total of their type specific charges (for example the
+ * sail drying charges of all sail boats). Keeping one partition per class
+ * lets the storage count boats of a type and total their type charges
+ * without filtering the whole fleet, for any Boat subclass. The total is
+ * recalculated only when a rate of the partition's own class changes;
+ * the charge rate, levy rate and the rates of other classes leave it
+ * as it is.
+ */
+public class BoatPartition {
+    /** The Boat class of this partition's boats */
+    private final Class<? extends Boat> type;
+    /** Mapped file holding records of this partition, or null if none */
+    private MappedBoatFile records;
+    /** Record numbers of this partition's boats in the mapped file */
+    private int[] recordNumbers = new int[0];
+    /** Number of record numbers in use */
+    private int recordCount;
+    /** Boats of this partition in the order they were added */
+    private final ArrayList<Boat> boats = new ArrayList<>();
+    /** Running total of the type specific charges of the boats */
+    private CompensatedSum typeCharges = new CompensatedSum();
+    /** Type rate epoch of the class the running total was calculated for */
+    private long rateEpoch;
+
+    /**
+     * Create an empty partition for a Boat class.
+     *
+     * @param type The Boat class of the partition's boats
+     */
+    BoatPartition(Class<? extends Boat> type) {
+        this.type = type;
+        rateEpoch = Boat.getTypeRateEpoch(type);
+    }
+
+    /**
+     * Get the number of boats in the partition.
+     *
+     * @return Number of boats
+     */
+    public int size() {
+        return recordCount + boats.size();
+    }
+
+    /**
+     * Get the boats of the partition.
+     *
+     * @return Read-only view of the boats, in the order they were added;
+     *         boats from a mapped file come first and are decoded when
+     *         the view reads them
+     */
+    public List<Boat> getBoats() {
+        if (recordCount == 0) {
+            return Collections.unmodifiableList(boats);
+        }
+        return new AbstractList<Boat>() {
+            /**
+             * Get a boat, decoding mapped records when first read.
+             *
+             * @param index Position of the boat
+             * @return The boat
+             */
+            @Override
+            public Boat get(int index) {
+                if (index < recordCount) {
+                    return records.get(recordNumbers[index]);
+                }
+                return boats.get(index - recordCount);
+            }
+
+            /**
+             * Get the number of boats in the partition.
+             *
+             * @return Number of boats
+             */
+            @Override
+            public int size() {
+                return BoatPartition.this.size();
+            }
+        };
+    }
+
+    /**
+     * Get the total type specific charge of the boats at current rates.
+     *
+     * @return Total type specific charge
+     */
+    public double getTotalTypeCharge() {
+        refreshForRates();
+        return typeCharges.value();
+    }
+
+    /**
+     * Add a boat to the partition.
+     *
+     * @param boat The boat to add
+     */
+    void add(Boat boat) {
+        // Account first so a rate refresh does not count the boat twice
+        account(boat, 1);
+        boats.add(boat);
+    }
+
+    /**
+     * Add boats of a mapped file to the partition without decoding them.
+     * A file may be added in several runs of records, all before any
+     * boat is added.
+     *
+     * @param records     The mapped file
+     * @param moreRecords Record numbers of more of the partition's boats
+     */
+    void addRecords(MappedBoatFile records, int[] moreRecords) {
+        refreshForRates();
+        this.records = records;
+        if (recordCount + moreRecords.length > recordNumbers.length) {
+            recordNumbers = Arrays.copyOf(recordNumbers, Math.max(
+                recordCount + moreRecords.length, recordNumbers.length * 2
+            ));
+        }
+        System.arraycopy(moreRecords, 0, recordNumbers, recordCount,
+                         moreRecords.length);
+        recordCount += moreRecords.length;
+        for (int record : moreRecords) {
+            typeCharges.add(records.typeCharge(record));
+        }
+    }
+
+    /**
+     * Add (sign 1) or remove (sign -1) a boat's type specific charge in
+     * the running total.
+     *
+     * @param boat The boat to account for
+     * @param sign 1 to add the charge, -1 to remove it
+     */
+    void account(Boat boat, int sign) {
+        refreshForRates();
+        typeCharges.add(sign * boat.typeCharge());
+    }
+
+    /**
+     * Recalculate the running total from this partition's boats if a
+     * rate of their type specific charge has changed since it was last
+     * calculated. Only the boats of this partition are visited.
+     */
+    private void refreshForRates() {
+        long epoch = Boat.getTypeRateEpoch(type);
+        if (rateEpoch == epoch) {
+            return;
+        }
+        typeCharges = new CompensatedSum();
+        for (int i = 0; i < recordCount; i++) {
+            typeCharges.add(records.typeCharge(recordNumbers[i]));
+        }
+        for (Boat boat : boats) {
+            typeCharges.add(boat.typeCharge());
+        }
+        rateEpoch = epoch;
+    }
+}
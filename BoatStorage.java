@@ -1,6 +1,21 @@
 package assignment1;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.*;
 
 /**
@@ -9,10 +24,166 @@ import java.util.stream.*;
  * count boats and calculate various charges.
  */
 public class BoatStorage implements Serializable{
+    /** Serial version matching databases saved by earlier versions */
+    private static final long serialVersionUID = 2268104586887353163L;
+    /** Number of boats below which a summary stops splitting the list */
+    private static final int SUMMARY_SPLIT_THRESHOLD = 16384;
+    /**
+     * Order of owners by total storage charge, highest first, then by
+     * original order. Storage charges are the boat volume times the charge
+     * rate, so for a positive rate ordering by volume is the same thing.
+     */
+    private static final Comparator<Owner> BY_STORAGE_CHARGE =
+        Comparator.comparingDouble(Owner::getBoatVolume).reversed()
+                  .thenComparingInt(Owner::getPosition);
+    /**
+     * Collator for owner names in the default locale. Secondary strength
+     * ignores case, so "smith" and "Smith" sort together and both match
+     * a prefix search for "sm".
+     */
+    private static final Collator NAME_COLLATOR =
+        createNameCollator(Collator.SECONDARY);
+    /**
+     * Collator comparing only the base letters of owner names. Names are
+     * ordered by their base letters first, so the names starting with
+     * the base letters of a prefix are next to each other in the name
+     * order, with accents telling them apart only within that run.
+     */
+    private static final Collator BASE_LETTER_COLLATOR =
+        createNameCollator(Collator.PRIMARY);
+    /** Order of owners by the collation key of their name */
+    private static final Comparator<Owner> BY_NAME =
+        Comparator.comparing(Owner::getNameKey)
+                  .thenComparingInt(Owner::getPosition);
     /** List of owners */
     private ArrayList<Owner> owners = new ArrayList<>();
     /** List of boats */
-    private ArrayList<Boat> boats = new ArrayList<>();
+    private List<Boat> boats = new ArrayList<>();
+    /** Index of owners by ID number, rebuilt after deserialization */
+    private transient HashMap<String, Owner> ownersById = new HashMap<>();
+    /** Owner of each boat (reverse of the owners' boat lists) */
+    private transient IdentityHashMap<Boat, Owner> boatOwners =
+        new IdentityHashMap<>();
+    /** Incremented whenever an owner or a boat is added */
+    private transient int structureVersion;
+    /** Owners ordered by storage charge, see BY_STORAGE_CHARGE */
+    private transient TreeSet<Owner> ownersByCharge =
+        new TreeSet<>(BY_STORAGE_CHARGE);
+    /**
+     * Owners ordered by name, see BY_NAME, or null until first needed.
+     * Collation keys are costly to make, so the name index is only built
+     * once an owner is looked up or listed by name.
+     */
+    private transient TreeSet<Owner> ownersByName;
+    /** Columnar copy of the boats, or null when the columnar store is off */
+    private transient BoatColumns columns;
+    /*
+     * Running fleet totals. They hold the rate-independent quantities
+     * (volume, value) so that a change to the storage or levy rate needs
+     * no rescan: each charge total is the running quantity times the
+     * current rate. Type specific charges are totalled per partition.
+     */
+    /** Sum of height * length * width over all boats */
+    private transient CompensatedSum totalVolume = new CompensatedSum();
+    /** Sum of boat values over all boats */
+    private transient CompensatedSum totalBoatValue = new CompensatedSum();
+    /** Boats partitioned by their concrete class */
+    private transient LinkedHashMap<Class<? extends Boat>, BoatPartition>
+        partitions = new LinkedHashMap<>();
+    /** Mapped file the boats were opened from, or null if none */
+    private transient MappedBoatFile records;
+    /** Journal recording changes to the storage, or null if none */
+    private transient BoatJournal journal;
+    /** Sharded database marking the shards changed, or null if none */
+    private transient ShardedDatabase sharded;
+    /** Snapshots in use, which keep the old values of changed boats */
+    private transient ArrayList<BoatStorageSnapshot> snapshots =
+        new ArrayList<>();
+    /** Listeners told about owners and boats added or edited */
+    private transient ArrayList<BoatStorageListener> listeners =
+        new ArrayList<>();
+
+    /**
+     * Constructs an empty storage.
+     */
+    public BoatStorage() {
+    }
+
+    /**
+     * Constructs a storage over the boats of a mapped database file. The
+     * owners, which already know their boat counts and volumes, are all
+     * added at once; the fleet totals and partitions are filled in runs
+     * by addMappedRun, with the boats left in the file to be decoded
+     * the first time they are used.
+     * 
+     * @param records The mapped boat records and their owners
+     */
+    BoatStorage(MappedBoatFile records) {
+        this.records = records;
+        records.setStorage(this);
+        for (int i = 0; i < records.getOwnerCount(); i++) {
+            addMappedOwner(records.getOwner(i));
+        }
+        boats = new MappedBoatList(records, 0, records.size());
+        structureVersion++;
+    }
+
+    /**
+     * Add the boats of a run of owners of the mapped file to the fleet
+     * totals and the partitions, from a scan of their records. Runs are
+     * added in file order, before any boat is added by other means. No
+     * Boat objects are created: the owners already hold their boat lists
+     * and volumes, and only the scan's totals are added.
+     * 
+     * @param scan The scanned run of owners
+     */
+    void addMappedRun(MappedBoatFile.Scan scan) {
+        totalVolume.merge(scan.volume);
+        totalBoatValue.merge(scan.boatValue);
+        // Partitions are kept in the order their class first appears
+        if (scan.sailFirst) {
+            addRecords(SailBoat.class, scan.sailRecords);
+        }
+        addRecords(MotorBoat.class, scan.motorRecords);
+        if (!scan.sailFirst) {
+            addRecords(SailBoat.class, scan.sailRecords);
+        }
+        structureVersion++;
+    }
+
+    /**
+     * Add an owner of the mapped file to the owner list and indexes.
+     * 
+     * @param owner The owner, with its boat list and volume already set
+     */
+    private void addMappedOwner(Owner owner) {
+        owners.add(owner);
+        indexOwner(owner);
+        ownersByCharge.add(owner);
+        addToNameIndex(owner);
+    }
+
+    /**
+     * Get the mapped file the storage was opened from.
+     * 
+     * @return The mapped records, or null if the storage has none
+     */
+    MappedBoatFile getRecords() {
+        return records;
+    }
+
+    /**
+     * Add mapped records of one boat class to the partition of that class.
+     * 
+     * @param type          The boat class of the records
+     * @param recordNumbers The record numbers, ignored if empty
+     */
+    private void addRecords(Class<? extends Boat> type, int[] recordNumbers) {
+        if (recordNumbers.length > 0) {
+            partitions.computeIfAbsent(type, BoatPartition::new)
+                      .addRecords(records, recordNumbers);
+        }
+    }
 
     /**
      * Add a new owner to the owner's list.
@@ -21,6 +192,19 @@ public class BoatStorage implements Serializable{
      */
     public void addOwner(Owner owner) {
         owners.add(owner);
+        indexOwner(owner);
+        ownersByCharge.add(owner);
+        addToNameIndex(owner);
+        structureVersion++;
+        if (journal != null) {
+            journal.ownerAdded(owner);
+        }
+        if (sharded != null) {
+            sharded.markDirty(owner.getIdNumber());
+        }
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).ownersAdded(owners.size() - 1, owners.size());
+        }
     }
 
     /**
@@ -30,8 +214,299 @@ public class BoatStorage implements Serializable{
      * @param owner The owner of the boat
      */
     public void addBoat(Boat boat, Owner owner) {
+        registerBoat(boat, owner);
+        moveOwner(owner, boat.volume());
+        structureVersion++;
+        fireBoatsAdded(owner, owner.getBoats().size() - 1);
+    }
+
+    /**
+     * Add several boats for a specific owner. This has the same effect as
+     * calling addBoat for each boat in turn, but the owner is moved in
+     * the storage charge order only once, which makes it the cheaper way
+     * to add boats in bulk.
+     * 
+     * @param owner    The owner of the boats
+     * @param newBoats The boats to be added
+     */
+    public void addBoats(Owner owner, Collection<? extends Boat> newBoats) {
+        int fromIndex = owner.getBoats().size();
+        double volume = 0;
+        for (Boat boat : newBoats) {
+            registerBoat(boat, owner);
+            volume += boat.volume();
+        }
+        moveOwner(owner, volume);
+        structureVersion++;
+        if (!newBoats.isEmpty()) {
+            fireBoatsAdded(owner, fromIndex);
+        }
+    }
+
+    /**
+     * Add a batch of boats for several owners, as a bulk import does.
+     * Each owner is moved in the storage charge order only once, and the
+     * structure version changes once for the whole batch.
+     * 
+     * @param boatsByOwner The boats to be added for each owner, in the
+     *                     order they are to be added
+     */
+    public void addBoats(
+            Map<Owner, ? extends Collection<? extends Boat>> boatsByOwner) {
+        for (Map.Entry<Owner, ? extends Collection<? extends Boat>> entry
+                 : boatsByOwner.entrySet()) {
+            Owner owner = entry.getKey();
+            double volume = 0;
+            for (Boat boat : entry.getValue()) {
+                registerBoat(boat, owner);
+                volume += boat.volume();
+            }
+            moveOwner(owner, volume);
+        }
+        structureVersion++;
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).storageChanged();
+        }
+    }
+
+    /**
+     * Add a boat to its owner, the boat list and every boat index except
+     * the owner order, which the caller updates.
+     * 
+     * @param boat  The boat to be added
+     * @param owner The owner of the boat
+     */
+    private void registerBoat(Boat boat, Owner owner) {
+        boat.setPosition(owner.getBoats().size());
         owner.addBoat(boat); // Add the boat to the owner's list of boats
         boats.add(boat);//Add the boat to overall list of boats in the storage
+        boatOwners.put(boat, owner);
+        attachBoat(boat);
+        if (columns != null) {
+            columns.add(boat);
+        }
+        if (journal != null) {
+            journal.boatAdded(owner, boat);
+        }
+        if (sharded != null) {
+            sharded.markDirty(owner.getIdNumber());
+        }
+    }
+
+    /**
+     * Tell the listeners that boats were added to the end of an owner's
+     * boat list.
+     * 
+     * @param owner     The owner of the boats
+     * @param fromIndex Position of the first boat added in the owner's list
+     */
+    private void fireBoatsAdded(Owner owner, int fromIndex) {
+        int toIndex = owner.getBoats().size();
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).boatsAdded(owner, fromIndex, toIndex);
+        }
+    }
+
+    /**
+     * Tell the listeners that the details of an owner changed.
+     * 
+     * @param owner The owner that changed
+     */
+    private void fireOwnerChanged(Owner owner) {
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).ownerChanged(owner);
+        }
+    }
+
+    /**
+     * Start telling a listener about owners and boats added or edited.
+     * 
+     * @param listener The listener to add
+     */
+    public void addStorageListener(BoatStorageListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop telling a listener about owners and boats added or edited.
+     * 
+     * @param listener The listener to remove
+     */
+    public void removeStorageListener(BoatStorageListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Find the owner of a boat.
+     * 
+     * @param boat The boat
+     * @return The owner the boat was added for, or null if the boat is
+     *         not held in this storage
+     */
+    public Owner getOwnerOf(Boat boat) {
+        return boatOwners.get(boat);
+    }
+
+    /**
+     * Get the structure version of the storage. It changes whenever an
+     * owner or a boat is added, but not when their details are edited,
+     * so views can tell whether their rows need rebuilding.
+     * 
+     * @return Current structure version
+     */
+    public int getStructureVersion() {
+        return structureVersion;
+    }
+
+    /**
+     * Link a boat decoded from the mapped file to this storage and its
+     * owner. Its values are already in the fleet totals.
+     * Called by MappedBoatFile the first time a record is used.
+     * 
+     * @param boat     The decoded boat
+     * @param owner    The owner of the boat
+     * @param position Position of the boat in the owner's boat list
+     */
+    void boatDecoded(Boat boat, Owner owner, int position) {
+        boat.setStorage(this);
+        boat.setPosition(position);
+        boatOwners.put(boat, owner);
+    }
+
+    /**
+     * Take a boat's current values out of the fleet totals.
+     * Called by the Boat setters before a field changes.
+     * 
+     * @param boat The boat about to change
+     */
+    void boatChanging(Boat boat) {
+        for (BoatStorageSnapshot snapshot : snapshots) {
+            snapshot.boatChanging(boat);
+        }
+        account(boat, -1);
+        moveOwner(boatOwners.get(boat), -boat.volume());
+    }
+
+    /**
+     * Add a boat's new values back into the fleet totals.
+     * Called by the Boat setters after a field has changed.
+     * 
+     * @param boat The boat that changed
+     */
+    void boatChanged(Boat boat) {
+        account(boat, 1);
+        moveOwner(boatOwners.get(boat), boat.volume());
+        if (columns != null) {
+            columns.update(boat);
+        }
+        Owner owner = boatOwners.get(boat);
+        if (owner == null) {
+            return;
+        }
+        if (journal != null) {
+            journal.boatChanged(owner, boat);
+        }
+        if (sharded != null) {
+            sharded.markDirty(owner.getIdNumber());
+        }
+        int index = boat.getPosition();
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).boatChanged(owner, boat, index);
+        }
+    }
+
+    /**
+     * Link a boat to this storage, add it to the partition of its class
+     * and to the fleet totals.
+     * 
+     * @param boat The boat to attach
+     */
+    private void attachBoat(Boat boat) {
+        boat.setStorage(this);
+        totalVolume.add(boat.volume());
+        totalBoatValue.add(boat.getBoatValue());
+        partitions.computeIfAbsent(boat.getClass(), BoatPartition::new)
+                  .add(boat);
+    }
+
+    /**
+     * Add (sign 1) or remove (sign -1) the values of an attached boat in
+     * the fleet totals.
+     * 
+     * @param boat The boat to account for
+     * @param sign 1 to add the boat, -1 to remove it
+     */
+    private void account(Boat boat, int sign) {
+        totalVolume.add(sign * boat.volume());
+        totalBoatValue.add(sign * boat.getBoatValue());
+        partitions.get(boat.getClass()).account(boat, sign);
+    }
+
+    /**
+     * Take an owner out of the name index before its details change.
+     * Called by the Owner setters.
+     * 
+     * @param owner The owner about to change
+     */
+    void ownerChanging(Owner owner) {
+        if (ownersByName != null) {
+            ownersByName.remove(owner);
+        }
+    }
+
+    /**
+     * Put an owner back into the name index after its details changed.
+     * Called by the Owner setters.
+     * 
+     * @param owner The owner that changed
+     */
+    void ownerChanged(Owner owner) {
+        addToNameIndex(owner);
+        if (journal != null) {
+            journal.ownerChanged(owner);
+        }
+        if (sharded != null) {
+            sharded.markDirty(owner.getIdNumber());
+        }
+        fireOwnerChanged(owner);
+    }
+
+    /**
+     * Create a collator used to order and search owner names.
+     * 
+     * @param strength Strength of the collator
+     * @return Collator for owner names
+     */
+    private static Collator createNameCollator(int strength) {
+        Collator collator = Collator.getInstance();
+        collator.setStrength(strength);
+        return collator;
+    }
+
+    /**
+     * Get the collation key of an owner name.
+     * 
+     * @param name The name, may be null
+     * @return Collation key of the name
+     */
+    private static CollationKey nameKey(String name) {
+        return NAME_COLLATOR.getCollationKey(name == null ? "" : name);
+    }
+
+    /**
+     * Change the recorded boat volume of an owner held in this storage
+     * and move the owner to its new place in the storage charge order.
+     * 
+     * @param owner        The owner to move, ignored if not held here
+     * @param volumeChange Volume to add to the owner's total
+     */
+    private void moveOwner(Owner owner, double volumeChange) {
+        if (owner == null || owner.getStorage() != this) {
+            return;
+        }
+        ownersByCharge.remove(owner);
+        owner.addBoatVolume(volumeChange);
+        ownersByCharge.add(owner);
     }
 
     /**
@@ -41,10 +516,185 @@ public class BoatStorage implements Serializable{
      * @return The owner if found, null otherwise
      */
     public Owner findOwner(String idNumber) {
-        return owners.stream()
-                     .filter(owner -> owner.getIdNumber().equals(idNumber))
-                     .findFirst()
-                     .orElse(null);
+        return ownersById.get(idNumber);
+    }
+
+    /**
+     * Update the ID index after an owner's ID number has changed.
+     * Called by Owner.setIdNumber for owners held in this storage.
+     * 
+     * @param owner       The owner whose ID changed
+     * @param oldIdNumber The ID number the owner was indexed under
+     */
+    void ownerIdChanged(Owner owner, String oldIdNumber) {
+        if (ownersById.get(oldIdNumber) == owner) {
+            ownersById.remove(oldIdNumber);
+            // Another owner may share the old ID, keep the first one findable
+            owners.stream()
+                  .filter(o -> o.getIdNumber().equals(oldIdNumber))
+                  .findFirst()
+                  .ifPresent(o -> ownersById.put(oldIdNumber, o));
+        }
+        ownersById.putIfAbsent(owner.getIdNumber(), owner);
+        if (journal != null) {
+            journal.ownerChanged(owner);
+        }
+        if (sharded != null) {
+            // The owner moves from the shard of the old ID to the new one
+            sharded.markDirty(oldIdNumber);
+            sharded.markDirty(owner.getIdNumber());
+        }
+        fireOwnerChanged(owner);
+    }
+
+    /**
+     * Start recording changes in a journal. Called by BoatJournal.open
+     * once the journal has been replayed.
+     * 
+     * @param journal The journal to record changes in
+     */
+    void setJournal(BoatJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Stop recording changes in a journal, if it is the current one.
+     * Called by BoatJournal.close.
+     * 
+     * @param journal The journal being closed
+     */
+    void detachJournal(BoatJournal journal) {
+        if (this.journal == journal) {
+            this.journal = null;
+        }
+    }
+
+    /**
+     * Start or stop marking the shards of a sharded database as owners
+     * and boats change. Called by ShardedDatabase.
+     * 
+     * @param sharded The database the storage is saved in, or null
+     */
+    void setShardedDatabase(ShardedDatabase sharded) {
+        this.sharded = sharded;
+    }
+
+    /**
+     * Stop marking the shards of a sharded database, if it is the
+     * current one. Called by ShardedDatabase.detach.
+     * 
+     * @param sharded The database no longer saved to
+     */
+    void detachShardedDatabase(ShardedDatabase sharded) {
+        if (this.sharded == sharded) {
+            this.sharded = null;
+        }
+    }
+
+    /**
+     * Take a snapshot of the owners and boats, which can be written to a
+     * file on another thread while this storage goes on being edited.
+     * Several snapshots can be in use at once, such as one being saved
+     * and one being exported; release each once it has been written.
+     * 
+     * @return The snapshot
+     */
+    public BoatStorageSnapshot snapshot() {
+        BoatStorageSnapshot snapshot = new BoatStorageSnapshot(this, records);
+        snapshots.add(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Stop telling a snapshot about changes, if it is still in use.
+     * Called by BoatStorageSnapshot.release.
+     * 
+     * @param released The snapshot being released
+     */
+    void snapshotReleased(BoatStorageSnapshot released) {
+        snapshots.remove(released);
+    }
+
+    /**
+     * Register an owner in the ID index and link it back to this storage.
+     * The first owner added with a given ID wins, as with a linear search.
+     * 
+     * @param owner The owner to index
+     */
+    private void indexOwner(Owner owner) {
+        owner.setStorage(this);
+        owner.setPosition(owners.size() - 1);
+        ownersById.putIfAbsent(owner.getIdNumber(), owner);
+    }
+
+    /**
+     * Put an owner in the name index with the collation key of its
+     * current name, if the index has been built.
+     * 
+     * @param owner The owner to index
+     */
+    private void addToNameIndex(Owner owner) {
+        if (ownersByName != null) {
+            owner.setNameKey(nameKey(owner.getName()));
+            ownersByName.add(owner);
+        }
+    }
+
+    /**
+     * Get the name index, building it the first time.
+     * 
+     * @return Owners ordered by name
+     */
+    private TreeSet<Owner> ownersByName() {
+        if (ownersByName == null) {
+            TreeSet<Owner> index = new TreeSet<>(BY_NAME);
+            for (Owner owner : owners) {
+                owner.setNameKey(nameKey(owner.getName()));
+                index.add(owner);
+            }
+            ownersByName = index;
+        }
+        return ownersByName;
+    }
+
+    /**
+     * Rebuild the transient indexes when a saved storage is loaded
+     * from a database file.
+     * 
+     * @param in The stream the storage is read from
+     * @throws IOException            If the stream cannot be read
+     * @throws ClassNotFoundException If a saved class cannot be found
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ownersById = new HashMap<>();
+        boatOwners = new IdentityHashMap<>();
+        ownersByCharge = new TreeSet<>(BY_STORAGE_CHARGE);
+        ownersByName = null;
+        totalVolume = new CompensatedSum();
+        totalBoatValue = new CompensatedSum();
+        partitions = new LinkedHashMap<>();
+        snapshots = new ArrayList<>();
+        listeners = new ArrayList<>();
+        for (int i = 0; i < owners.size(); i++) {
+            Owner owner = owners.get(i);
+            owner.setStorage(this);
+            owner.setPosition(i);
+            ownersById.putIfAbsent(owner.getIdNumber(), owner);
+            List<Boat> ownerBoats = owner.getBoats();
+            for (int j = 0; j < ownerBoats.size(); j++) {
+                Boat boat = ownerBoats.get(j);
+                boat.setPosition(j);
+                boatOwners.put(boat, owner);
+                owner.addBoatVolume(boat.volume());
+            }
+        }
+        // Owners are ordered once their volumes are known
+        ownersByCharge.addAll(owners);
+        for (Boat boat : boats) {
+            attachBoat(boat);
+        }
     }
 
     /**
@@ -72,9 +722,7 @@ public class BoatStorage implements Serializable{
      * @return Number of sail boats
      */
     public int countSailBoats() {
-        return (int) boats.stream()
-                          .filter(boat -> boat instanceof SailBoat)
-                          .count();
+        return countBoats(SailBoat.class);
     }
 
     /**
@@ -83,9 +731,61 @@ public class BoatStorage implements Serializable{
      * @return Number of motor boats
      */
     public int countMotorBoats() {
-        return (int) boats.stream()
-                          .filter(boat -> boat instanceof MotorBoat)
-                          .count();
+        return countBoats(MotorBoat.class);
+    }
+
+    /**
+     * Count the boats of a type, including its subclasses. Only the
+     * partition sizes are read, one per boat class held.
+     * 
+     * @param type The boat type to count
+     * @return Number of boats of the type
+     */
+    public int countBoats(Class<? extends Boat> type) {
+        int count = 0;
+        for (Map.Entry<Class<? extends Boat>, BoatPartition> entry
+                : partitions.entrySet()) {
+            if (type.isAssignableFrom(entry.getKey())) {
+                count += entry.getValue().size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the boats of a type, including its subclasses.
+     * 
+     * @param type The boat type
+     * @return Boats of the type, grouped by class in the order added
+     */
+    public ArrayList<Boat> getBoatsOfType(Class<? extends Boat> type) {
+        ArrayList<Boat> found = new ArrayList<>();
+        for (Map.Entry<Class<? extends Boat>, BoatPartition> entry
+                : partitions.entrySet()) {
+            if (type.isAssignableFrom(entry.getKey())) {
+                found.addAll(entry.getValue().getBoats());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Calculate the total type specific charges of the boats of a type,
+     * including its subclasses (for example the sail drying charges of
+     * all sail boats). Only the partitions of that type are visited.
+     * 
+     * @param type The boat type
+     * @return Total type specific charges
+     */
+    public double getTotalTypeCharges(Class<? extends Boat> type) {
+        CompensatedSum total = new CompensatedSum();
+        for (Map.Entry<Class<? extends Boat>, BoatPartition> entry
+                : partitions.entrySet()) {
+            if (type.isAssignableFrom(entry.getKey())) {
+                total.add(entry.getValue().getTotalTypeCharge());
+            }
+        }
+        return total.value();
     }
 
     /**
@@ -94,9 +794,7 @@ public class BoatStorage implements Serializable{
      * @return Total storage charges
      */
     public double getTotalStorageCharges() {
-        return boats.stream()
-                    .mapToDouble(Boat::storageCharge)
-                    .sum();
+        return totalVolume.value() * Boat.getChargeRate();
     }
 
     /**
@@ -105,9 +803,7 @@ public class BoatStorage implements Serializable{
      * @return Total insurance levies
      */
     public double getTotalInsuranceLevies() {
-        return boats.stream()
-                    .mapToDouble(Boat::insuranceLevy)
-                    .sum();
+        return totalBoatValue.value() * Boat.getLevyRate();
     }
 
     /**
@@ -116,10 +812,7 @@ public class BoatStorage implements Serializable{
      * @return Total sail drying charges
      */
     public double getTotalSailDryingCharges() {
-        return boats.stream()
-                .filter(boat -> boat instanceof SailBoat)
-                .mapToDouble(boat -> ((SailBoat) boat).sailDryingCharge())
-                .sum();
+        return getTotalTypeCharges(SailBoat.class);
     }
 
     /**
@@ -128,10 +821,185 @@ public class BoatStorage implements Serializable{
      * @return Total fire levy charges
      */
     public double getTotalFireLevyCharges() {
-        return boats.stream()
-                .filter(boat -> boat instanceof MotorBoat)
-                .mapToDouble(boat -> ((MotorBoat) boat).fireLevyCharge())
-                .sum();
+        return getTotalTypeCharges(MotorBoat.class);
+    }
+
+    /**
+     * Switch the columnar store on or off. While it is on, the storage
+     * keeps a copy of every boat's attributes in primitive arrays (see
+     * BoatColumns) and computeChargeSummary runs over those arrays.
+     * It costs extra memory and is meant for very large fleets.
+     * 
+     * @param enabled true to keep a columnar store, false to drop it
+     */
+    public void setColumnarStore(boolean enabled) {
+        if (!enabled) {
+            columns = null;
+        } else if (columns == null) {
+            BoatColumns built = new BoatColumns();
+            for (Boat boat : boats) {
+                built.add(boat);
+            }
+            columns = built;
+        }
+    }
+
+    /**
+     * Check whether the columnar store is on.
+     * 
+     * @return true if a columnar copy of the boats is kept
+     */
+    public boolean isColumnarStore() {
+        return columns != null;
+    }
+
+    /**
+     * Get the charge summary of the fleet from the running totals.
+     * This does not visit the boats, so it is cheap to call on every
+     * report refresh.
+     * 
+     * @return Charge totals and boat counts of the fleet
+     */
+    public ChargeSummary getChargeSummary() {
+        return new ChargeSummary(getTotalStorageCharges(),
+                                 getTotalInsuranceLevies(),
+                                 getTotalSailDryingCharges(),
+                                 getTotalFireLevyCharges(),
+                                 countSailBoats(), countMotorBoats());
+    }
+
+    /**
+     * Compute the charge summary of the fleet from the boats themselves,
+     * collecting every charge total and type count in a single traversal.
+     * The parallel mode splits the boat list with fork/join and is meant
+     * for large fleets.
+     * <p>
+     * Both modes sum with compensated summation over the same reduction
+     * tree, which depends only on the number of boats. The parallel result
+     * is therefore identical, bit for bit, to the sequential one whatever
+     * the number of threads. With the columnar store on, the traversal
+     * reads the primitive columns instead of the Boat objects and still
+     * gives the same result.
+     * 
+     * @param parallel true to spread the traversal over the common pool
+     * @return Charge totals and boat counts of the fleet
+     */
+    public ChargeSummary computeChargeSummary(boolean parallel) {
+        RangeSummarizer leaf;
+        if (columns != null) {
+            leaf = columns::summarize;
+        } else if (boats instanceof MappedBoatList) {
+            leaf = ((MappedBoatList) boats)::summarize;
+        } else {
+            leaf = (from, to) -> {
+                ChargeSummary.Accumulator acc =
+                    new ChargeSummary.Accumulator();
+                for (int i = from; i < to; i++) {
+                    acc.add(boats.get(i));
+                }
+                return acc;
+            };
+        }
+        SummaryTask task = new SummaryTask(leaf, 0, boats.size(), parallel);
+        ChargeSummary.Accumulator result = parallel
+            ? ForkJoinPool.commonPool().invoke(task)
+            : task.compute();
+        return result.toSummary();
+    }
+
+    /**
+     * Summarises the charges of one slice of boats, by index.
+     */
+    private interface RangeSummarizer {
+        /**
+         * Summarise the boats in [from, to).
+         * 
+         * @param from First index (inclusive)
+         * @param to   Last index (exclusive)
+         * @return Accumulated totals of the slice
+         */
+        ChargeSummary.Accumulator summarize(int from, int to);
+    }
+
+    /**
+     * Fork/join task summarising one slice of the boat list. Slices are
+     * halved until they reach SUMMARY_SPLIT_THRESHOLD boats, and the
+     * halves are always merged left then right, so the shape of the
+     * reduction does not depend on how the work is scheduled.
+     */
+    private static class SummaryTask
+            extends RecursiveTask<ChargeSummary.Accumulator> {
+        private static final long serialVersionUID = 1L;
+        /** Summarises the slices that are not split further */
+        private final RangeSummarizer leaf;
+        /** First index of the slice (inclusive) */
+        private final int from;
+        /** Last index of the slice (exclusive) */
+        private final int to;
+        /** Whether the left half is forked to run on another thread */
+        private final boolean parallel;
+
+        /**
+         * Constructs a task for the boats in [from, to).
+         * 
+         * @param leaf     Summarises the slices that are not split further
+         * @param from     First index of the slice
+         * @param to       End index of the slice (exclusive)
+         * @param parallel true to fork sub-tasks, false to run them inline
+         */
+        SummaryTask(RangeSummarizer leaf, int from, int to,
+                    boolean parallel) {
+            this.leaf = leaf;
+            this.from = from;
+            this.to = to;
+            this.parallel = parallel;
+        }
+
+        /**
+         * Summarise the slice directly or split it in two halves.
+         * 
+         * @return Accumulated totals of the slice
+         */
+        @Override
+        protected ChargeSummary.Accumulator compute() {
+            if (to - from <= SUMMARY_SPLIT_THRESHOLD) {
+                return leaf.summarize(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            SummaryTask left = new SummaryTask(leaf, from, mid, parallel);
+            SummaryTask right = new SummaryTask(leaf, mid, to, parallel);
+            ChargeSummary.Accumulator acc;
+            ChargeSummary.Accumulator rightAcc;
+            if (parallel) {
+                left.fork();
+                rightAcc = right.compute();
+                acc = left.join();
+            } else {
+                acc = left.compute();
+                rightAcc = right.compute();
+            }
+            acc.merge(rightAcc);
+            return acc;
+        }
+    }
+
+    /**
+     * Get the number of owners.
+     * 
+     * @return Number of owners
+     */
+    public int getOwnerCount() {
+        return owners.size();
+    }
+
+    /**
+     * Get an owner by position in the original order.
+     * 
+     * @param position Position of the owner, from 0
+     * @return The owner
+     */
+    Owner getOwnerAt(int position) {
+        return owners.get(position);
     }
 
     /**
@@ -144,14 +1012,48 @@ public class BoatStorage implements Serializable{
     }
 
     /**
-     * Get all owners sorted by name in ascending order.
+     * Get all owners sorted by name in ascending order, using the
+     * alphabetical order of the default locale without regard to case.
      * 
      * @return List of owners sorted by name
      */
     public ArrayList<Owner> getOwnersSortedByName() {
-        return (ArrayList<Owner>) owners.stream()
-                .sorted((o1, o2) -> o1.getName().compareTo(o2.getName()))
-                .collect(Collectors.toList());
+        return new ArrayList<>(ownersByName());
+    }
+
+    /**
+     * Find the owners whose name starts with the given prefix, compared
+     * the same way as the name order (case is ignored). The owners are
+     * returned in name order.
+     * 
+     * @param prefix The start of the names to find
+     * @return Owners whose name starts with the prefix
+     */
+    public ArrayList<Owner> findOwnersByNamePrefix(String prefix) {
+        ArrayList<Owner> found = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty()) {
+            found.addAll(ownersByName());
+            return found;
+        }
+        // A prefix sorts no later than any name it starts. The names
+        // whose start has the prefix's base letters follow it in a run,
+        // but names whose accents differ from the prefix are mixed in
+        Owner probe = new Owner();
+        probe.setNameKey(nameKey(prefix));
+        probe.setPosition(-1);
+        for (Owner owner : ownersByName().tailSet(probe)) {
+            String name = owner.getName() == null ? "" : owner.getName();
+            String head = name.substring(
+                0, Math.min(prefix.length(), name.length())
+            );
+            if (BASE_LETTER_COLLATOR.compare(head, prefix) != 0) {
+                break;
+            }
+            if (NAME_COLLATOR.compare(head, prefix) == 0) {
+                found.add(owner);
+            }
+        }
+        return found;
     }
 
     /**
@@ -160,23 +1062,51 @@ public class BoatStorage implements Serializable{
      * @return List of owners sorted by total monthly storage charges
      */
     public ArrayList<Owner> getOwnersSortedByStorageCharges() {
+        if (Boat.getChargeRate() > 0) {
+            return new ArrayList<>(ownersByCharge);
+        }
+        // The volume order does not match the charge order for other rates
         return (ArrayList<Owner>) owners.stream()
                                         .sorted((o1, o2) -> Double.compare(o2.totalStorageCharge(), o1.totalStorageCharge()))
                                         .collect(Collectors.toList());
     }
 
+    /**
+     * Get the owners with the highest total monthly storage charges,
+     * highest first. Only the returned owners are visited.
+     * 
+     * @param n Maximum number of owners to return
+     * @return Up to n owners with the highest storage charges
+     */
+    public ArrayList<Owner> topOwnersByStorageCharge(int n) {
+        int limit = Math.max(0, Math.min(n, owners.size()));
+        ArrayList<Owner> top = new ArrayList<>(limit);
+        if (Boat.getChargeRate() > 0) {
+            for (Owner owner : ownersByCharge) {
+                if (top.size() == limit) {
+                    break;
+                }
+                top.add(owner);
+            }
+        } else {
+            top.addAll(getOwnersSortedByStorageCharges().subList(0, limit));
+        }
+        return top;
+    }
+
     /**
      * Display summary of all charges.
      */
     public void displayChargeSummary() {
+        ChargeSummary summary = getChargeSummary();
         System.out.println("Charge Summary:");
         System.out.printf("Total Storage Charges: $%.2f%n",
-                          getTotalStorageCharges());
+                          summary.getStorageCharges());
         System.out.printf("Total Insurance Levies: $%.2f%n",
-                          getTotalInsuranceLevies());
+                          summary.getInsuranceLevies());
         System.out.printf("Total Sail Drying Charges: $%.2f%n", 
-                          getTotalSailDryingCharges());
+                          summary.getSailDryingCharges());
         System.out.printf("Total Fire Levy Charges: $%.2f%n", 
-                          getTotalFireLevyCharges());
+                          summary.getFireLevyCharges());
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
 import java.io.*;
 
 /**
@@ -25,6 +26,35 @@ public class BoatStorageGUI extends JFrame {
     /** Tracks the currently loaded or saved file */
     private File currentFile = null;
 
+    /** Journal of changes since the current file was written, or null */
+    private BoatJournal journal = null;
+
+    /** Sharded database the current database is saved in, or null */
+    private ShardedDatabase shards = null;
+
+    /** Codec saved files are compressed with, or null for none */
+    private BlockCodec compression = null;
+
+    /** Background save in progress, or null */
+    private SwingWorker<Long, Void> saveWorker = null;
+
+    /** Background import in progress, or null */
+    private SwingWorker<BoatImporter, Void> importWorker = null;
+
+    /** Background export of the owner charges in progress, or null */
+    private SwingWorker<Void, Void> exportWorker = null;
+
+    /** Background load in progress, or null */
+    private SwingWorker<BoatDatabaseLoader, BoatDatabaseLoader> loadWorker =
+        null;
+
+    /** Panel below the tabs shown while a file is saved or loaded */
+    private JPanel progressPanel;
+    /** Shows the progress of a background save or load */
+    private JProgressBar progressBar;
+    /** Cancels a background load */
+    private JButton cancelButton;
+
     /** Panel for displaying and managing owners */
     private OwnerTabPanel ownerTabPanel;
     /** Panel for displaying and managing boats */
@@ -77,7 +107,10 @@ public class BoatStorageGUI extends JFrame {
             () -> showBoatDialog(null, null),
             (owner, boat) -> showBoatDialog(owner, boat)
         );
-        reportTabPanel = new ReportTabPanel(boatStorage);
+        reportTabPanel = new ReportTabPanel(
+            boatStorage,
+            this::exportOwnerCharges
+        );
 
         tabbedPane.addTab("Owners", ownerTabPanel);
         tabbedPane.addTab("Boats", boatTabPanel);
@@ -86,6 +119,20 @@ public class BoatStorageGUI extends JFrame {
         setupTabRefresh(tabbedPane);
 
         contentPane.add(tabbedPane, BorderLayout.CENTER);
+
+        progressPanel = new JPanel(new BorderLayout(5, 0));
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> {
+            if (loadWorker != null) {
+                loadWorker.cancel(false);
+            }
+        });
+        progressPanel.add(progressBar, BorderLayout.CENTER);
+        progressPanel.add(cancelButton, BorderLayout.EAST);
+        progressPanel.setVisible(false);
+        contentPane.add(progressPanel, BorderLayout.SOUTH);
     }
 
     /**
@@ -110,17 +157,34 @@ public class BoatStorageGUI extends JFrame {
         JMenu fileMenu = new JMenu("File");
         JMenuItem saveItem = new JMenuItem("Save");
         JMenuItem saveAsItem = new JMenuItem("Save As...");
+        JMenuItem saveShardsItem = new JMenuItem("Save As Shards...");
         JMenuItem loadItem = new JMenuItem("Upload File...");
+        JMenuItem importItem = new JMenuItem("Import Boats...");
         JMenuItem exitItem = new JMenuItem("Exit");
 
         saveItem.addActionListener(e -> saveDatabase(false));
         saveAsItem.addActionListener(e -> saveDatabase(true));
+        saveShardsItem.addActionListener(e -> saveShardsAs());
         loadItem.addActionListener(e -> loadDatabase());
+        importItem.addActionListener(e -> importBoats());
         exitItem.addActionListener(e -> System.exit(0));
 
+        JMenu compressionMenu = new JMenu("Compression");
+        ButtonGroup compressionGroup = new ButtonGroup();
+        addCompressionItem(compressionMenu, compressionGroup, "None", null);
+        addCompressionItem(compressionMenu, compressionGroup,
+                           "Fast (LZ)", new LzBlockCodec());
+        addCompressionItem(compressionMenu, compressionGroup,
+                           "Deflate - Fastest", new DeflateCodec(1));
+        addCompressionItem(compressionMenu, compressionGroup,
+                           "Deflate - Default", new DeflateCodec(6));
+
         fileMenu.add(saveItem);
         fileMenu.add(saveAsItem);
+        fileMenu.add(saveShardsItem);
         fileMenu.add(loadItem);
+        fileMenu.add(importItem);
+        fileMenu.add(compressionMenu);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
 
@@ -128,11 +192,30 @@ public class BoatStorageGUI extends JFrame {
         return menuBar;
     }
 
+    /**
+     * Adds a choice of compression for saved files to the menu.
+     * @param menu the compression menu
+     * @param group the group of compression choices
+     * @param text the text of the menu item
+     * @param codec the codec to compress with, or null for none
+     */
+    private void addCompressionItem(JMenu menu, ButtonGroup group,
+                                    String text, BlockCodec codec) {
+        JRadioButtonMenuItem item =
+            new JRadioButtonMenuItem(text, codec == compression);
+        item.addActionListener(e -> compression = codec);
+        group.add(item);
+        menu.add(item);
+    }
+
     /**
      * Shows the dialog for adding or editing an owner.
      * @param owner the owner to edit, or null to add a new owner
      */
     private void showOwnerDialog(Owner owner) {
+        if (!canStart(true)) {
+            return;
+        }
         OwnerDialog dialog = new OwnerDialog(
             this, boatStorage, owner, ownerIdCounter
         );
@@ -143,6 +226,10 @@ public class BoatStorageGUI extends JFrame {
         if (owner == null && dialog.isOwnerAdded()) {
             String newOwnerId = String.valueOf(ownerIdCounter);
             ownerIdCounter++;
+            if (journal != null) {
+                journal.ownerIdCounterChanged(ownerIdCounter);
+            }
+            commitJournal();
             ownerTabPanel.refreshTable();
             JOptionPane.showMessageDialog(
                 this,
@@ -150,6 +237,7 @@ public class BoatStorageGUI extends JFrame {
                 newOwnerId + "' !"
             );
         } else if (owner != null && dialog.isOwnerEdited()) {  
+            commitJournal();
             ownerTabPanel.refreshTable();
             JOptionPane.showMessageDialog(
                 this,
@@ -163,6 +251,9 @@ public class BoatStorageGUI extends JFrame {
      * and updates the table.
      */
     private void showOwnerSortDialog() {
+        if (!canStart(true)) {
+            return;
+        }
         String[] options = {
             "Original Order",
             "By Name",
@@ -206,6 +297,9 @@ public class BoatStorageGUI extends JFrame {
             + ", boat: " +
             (editBoat != null ? editBoat.toString() : "null")
         );
+        if (!canStart(true)) {
+            return;
+        }
         if (boatStorage.getOwners().isEmpty()) {
             JOptionPane.showMessageDialog(
                 this,
@@ -222,12 +316,14 @@ public class BoatStorageGUI extends JFrame {
 
             // Confirmation messages for add/edit boat
             if (editBoat == null && dialog.isBoatAdded()) {
+                commitJournal();
                 boatTabPanel.refreshTable();
                 JOptionPane.showMessageDialog(
                     this,
                     "Boat added successfully."
                 );
             } else if (editBoat != null && dialog.isBoatEdited()) {  
+                commitJournal();
                 boatTabPanel.refreshTable();
                 JOptionPane.showMessageDialog(
                     this,
@@ -244,46 +340,323 @@ public class BoatStorageGUI extends JFrame {
     }
 
     /**
-     * Saves the database to file using serialization.
-     * @param saveAs if true, shows a Save As dialog; otherwise saves to the current file
+     * Makes the changes recorded in the journal durable. Once the journal
+     * has grown large, the whole database is also written in the
+     * background, which starts a new journal.
      */
-    private void saveDatabase(boolean saveAs) {
-        if (!saveAs && currentFile != null) {
-            try (
-                FileOutputStream fos = new FileOutputStream(currentFile);
-                ObjectOutputStream oos = new ObjectOutputStream(fos)
-            ) {
-                oos.writeObject(boatStorage);
-                oos.writeInt(ownerIdCounter);
-                updateTitle();
+    private void commitJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.commit();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Error saving changes: " + ex.getMessage()
+            );
+            return;
+        }
+        if (saveWorker == null && journal.needsCheckpoint()) {
+            writeDatabase(currentFile, false);
+        }
+    }
+
+    /**
+     * Writes the whole database to a file on a background thread, from a
+     * snapshot taken now, so the window stays responsive and can go on
+     * being edited while the file is written. Progress is shown below the
+     * tabs. Once the file is in place a new journal is started for it,
+     * holding the changes made during the save.
+     * @param file the file to write
+     * @param announce whether to tell the user when the save has finished
+     */
+    private void writeDatabase(File file, boolean announce) {
+        BoatStorage storage = boatStorage;
+        int counter = ownerIdCounter;
+        BlockCodec codec = compression;
+        BoatStorageSnapshot snapshot = storage.snapshot();
+        showProgress("Saving " + file.getName() + "...", false);
+        saveWorker = new SwingWorker<Long, Void>() {
+            /**
+             * Writes the snapshot to the file.
+             * @return the snapshot ID given to the file
+             * @throws IOException if the file cannot be written
+             */
+            @Override
+            protected Long doInBackground() throws IOException {
+                return BoatDatabaseFile.write(
+                    file, snapshot, counter, codec, this::setProgress
+                );
+            }
+
+            /**
+             * Starts the new journal and reports the outcome on the
+             * event thread.
+             */
+            @Override
+            protected void done() {
+                saveFinished(this, file, snapshot, counter, announce);
+            }
+        };
+        saveWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                progressBar.setValue((Integer) e.getNewValue());
+            }
+        });
+        saveWorker.execute();
+    }
+
+    /**
+     * Finishes a background save. If the file was written, it becomes
+     * the current file, and the journal is replaced by a new one for
+     * the file, holding the changes made since the snapshot was taken.
+     * If the new journal cannot be opened, the file still becomes
+     * current, without a journal, and the user is told so. If the file
+     * was not written, the current file and its journal are left as they
+     * were.
+     * @param worker the finished save
+     * @param file the file that was written
+     * @param snapshot the snapshot that was written
+     * @param counter the owner ID counter that was written
+     * @param announce whether to tell the user that the save succeeded
+     */
+    private void saveFinished(SwingWorker<Long, Void> worker, File file,
+                              BoatStorageSnapshot snapshot, int counter,
+                              boolean announce) {
+        saveWorker = null;
+        hideProgress();
+        try {
+            long snapshotId = worker.get();
+            // The new journal may be the old one's file, so nothing may
+            // be left for the old one to write once the new one is open
+            if (journal != null) {
+                journal.commit();
+            }
+            // If the new journal cannot be opened, such as in a read-only
+            // directory, the file is still saved and becomes current,
+            // but changes are then kept only by writing the whole file
+            BoatJournal opened = null;
+            try {
+                opened = BoatJournal.open(
+                    file, boatStorage, snapshotId, counter
+                );
+            } catch (IOException ex) {
+                // Left without a journal; the user is told below
+            }
+            // write forced the file and its directory to disk before it
+            // returned, so the edits in the old journal are now safe
+            try {
+                closeJournal();
+            } catch (IOException ex) {
+                if (opened != null) {
+                    opened.close();
+                }
+                throw ex;
+            }
+            journal = opened;
+            currentFile = file;
+            detachShards();
+            if (journal != null) {
+                snapshot.recordChanges(journal);
+                if (ownerIdCounter != counter) {
+                    journal.ownerIdCounterChanged(ownerIdCounter);
+                }
+                journal.commit();
+            }
+            updateTitle();
+            if (journal == null) {
+                JOptionPane.showMessageDialog(
+                    this,
+                    "Database saved successfully.\n"
+                    + "Its journal cannot be written, so changes are only"
+                    + " kept\nby saving the whole database."
+                );
+            } else if (announce) {
                 JOptionPane.showMessageDialog(
                     this,
                     "Database saved successfully."
                 );
-            } catch (Exception ex) {
+            }
+        } catch (ExecutionException ex) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Error saving: " + ex.getCause().getMessage()
+            );
+        } catch (InterruptedException | IOException ex) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Error saving: " + ex.getMessage()
+            );
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Commits and closes the journal of the current file, if any.
+     * @throws IOException if the journal cannot be written or closed
+     */
+    private void closeJournal() throws IOException {
+        BoatJournal closing = journal;
+        journal = null;
+        if (closing != null) {
+            closing.close();
+        }
+    }
+
+    /**
+     * Writes the dirty shards of the sharded database on background
+     * threads, from a snapshot taken now, then its manifest. Progress is
+     * shown below the tabs.
+     * @param announce whether to tell the user when the save has finished
+     */
+    private void writeShards(boolean announce) {
+        BlockCodec codec = compression;
+        ShardedDatabase.Save save = shards.startSave(ownerIdCounter);
+        showProgress(
+            "Saving " + shards.getDirectory().getName() + "...", false
+        );
+        saveWorker = new SwingWorker<Long, Void>() {
+            /**
+             * Writes the dirty shards and the manifest.
+             * @return the generation of the database written
+             * @throws IOException if a shard or the manifest cannot be
+             *         written
+             */
+            @Override
+            protected Long doInBackground() throws IOException {
+                return save.write(codec, this::setProgress);
+            }
+
+            /**
+             * Reports the outcome on the event thread.
+             */
+            @Override
+            protected void done() {
+                shardsSaved(this, save, announce);
+            }
+        };
+        saveWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                progressBar.setValue((Integer) e.getNewValue());
+            }
+        });
+        saveWorker.execute();
+    }
+
+    /**
+     * Finishes a background save of the sharded database. Shards that
+     * could not be written stay dirty for the next save.
+     * @param worker the finished save
+     * @param save the save of the shards
+     * @param announce whether to tell the user that the save succeeded
+     */
+    private void shardsSaved(SwingWorker<Long, Void> worker,
+                             ShardedDatabase.Save save, boolean announce) {
+        saveWorker = null;
+        hideProgress();
+        boolean written = false;
+        try {
+            worker.get();
+            written = true;
+            updateTitle();
+            if (announce) {
                 JOptionPane.showMessageDialog(
                     this,
-                    "Error saving: " + ex.getMessage()
+                    "Database saved successfully ("
+                    + save.getShardsWritten() + " of "
+                    + shards.getShardCount() + " shards written)."
                 );
             }
-            return;
+        } catch (ExecutionException ex) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Error saving: " + ex.getCause().getMessage()
+            );
+        } catch (InterruptedException ex) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Error saving: " + ex.getMessage()
+            );
+        } finally {
+            save.finish(written);
         }
+    }
 
-        JFileChooser fileChooser = new JFileChooser();
-        if (currentFile != null) {
-            fileChooser.setSelectedFile(currentFile);
+    /**
+     * Stops saving the database in the sharded database, if it is.
+     */
+    private void detachShards() {
+        if (shards != null) {
+            shards.detach();
+            shards = null;
+        }
+    }
+
+    /**
+     * Saves the database as a sharded database in a chosen directory:
+     * owners are split into shard files by ID number, and from then on
+     * saving rewrites only the shards that changed, several at a time.
+     */
+    private void saveShardsAs() {
+        if (!canStart(false)) {
+            return;
         }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
         if (
             fileChooser.showSaveDialog(this)
-            == JFileChooser.APPROVE_OPTION
+            != JFileChooser.APPROVE_OPTION
         ) {
-            currentFile = fileChooser.getSelectedFile();
-            try (
-                FileOutputStream fos = new FileOutputStream(currentFile);
-                ObjectOutputStream oos = new ObjectOutputStream(fos)
-            ) {
-                oos.writeObject(boatStorage);
-                oos.writeInt(ownerIdCounter);
+            return;
+        }
+        File directory = fileChooser.getSelectedFile();
+        try {
+            ShardedDatabase created = ShardedDatabase.create(
+                directory, ShardedDatabase.DEFAULT_SHARDS, boatStorage
+            );
+            // The new database is already attached; detaching the old
+            // one leaves it so
+            if (shards != null) {
+                shards.detach();
+            }
+            shards = created;
+            closeJournal();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Error saving: " + ex.getMessage()
+            );
+            return;
+        }
+        currentFile = directory;
+        writeShards(true);
+    }
+
+    /**
+     * Saves the database to file in the compact binary format.
+     * While a journal is open for the current file, saving only commits
+     * the journal unless it has grown large enough to be worth replacing
+     * with a full write. A full write runs in the background. A sharded
+     * database rewrites only its changed shards.
+     * @param saveAs if true, shows a Save As dialog; otherwise saves to the current file
+     */
+    private void saveDatabase(boolean saveAs) {
+        if (!canStart(false)) {
+            return;
+        }
+        if (!saveAs && shards != null) {
+            writeShards(true);
+            return;
+        }
+        if (!saveAs && currentFile != null) {
+            if (journal == null || journal.needsCheckpoint()) {
+                writeDatabase(currentFile, true);
+                return;
+            }
+            try {
+                journal.commit();
                 updateTitle();
                 JOptionPane.showMessageDialog(
                     this,
@@ -295,44 +668,420 @@ public class BoatStorageGUI extends JFrame {
                     "Error saving: " + ex.getMessage()
                 );
             }
+            return;
+        }
+
+        JFileChooser fileChooser = new JFileChooser();
+        if (currentFile != null) {
+            fileChooser.setSelectedFile(currentFile);
+        }
+        if (
+            fileChooser.showSaveDialog(this)
+            == JFileChooser.APPROVE_OPTION
+        ) {
+            // The chosen file becomes current once it has been written
+            writeDatabase(fileChooser.getSelectedFile(), true);
         }
     }
 
     /**
-     * Loads the database from file using deserialization.
+     * Loads the database from file. Both the binary format and databases
+     * saved with Java serialization by earlier versions can be loaded.
+     * Boats of a binary database stay in the file until they are used.
+     * Changes recorded in the file's journal are replayed over it. A
+     * sharded database is loaded by choosing its directory.
      */
     private void loadDatabase() {
+        if (!canStart(false)) {
+            return;
+        }
         JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileSelectionMode(
+            JFileChooser.FILES_AND_DIRECTORIES
+        );
         if (
             fileChooser.showOpenDialog(this)
             == JFileChooser.APPROVE_OPTION
         ) {
-            currentFile = fileChooser.getSelectedFile();
-            try (
-                FileInputStream fis = new FileInputStream(currentFile);
-                ObjectInputStream ois = new ObjectInputStream(fis)
-            ) {
-                boatStorage = (BoatStorage) ois.readObject();
-                ownerIdCounter = ois.readInt();
-
-                ownerTabPanel.setBoatStorage(boatStorage);
-                boatTabPanel.setBoatStorage(boatStorage);
-                reportTabPanel.setBoatStorage(boatStorage);
+            startLoad(fileChooser.getSelectedFile());
+        }
+    }
 
-                updateTitle();
-                JOptionPane.showMessageDialog(
-                    this,
-                    "Database loaded successfully."
+    /**
+     * Loads a database file on a background thread. The owner and boat
+     * tables show the owners read so far, a batch at a time, while the
+     * rest of the file is read, and the load can be cancelled from below
+     * the tabs. Editing waits until the whole file has been read; until
+     * then the previous database stays current, and it is shown again if
+     * the load fails or is cancelled.
+     * @param file the file to load
+     */
+    private void startLoad(File file) {
+        showProgress("Loading " + file.getName() + "...", true);
+        loadWorker = new SwingWorker<BoatDatabaseLoader, BoatDatabaseLoader>() {
+            /** Whether the tables show the storage being loaded yet */
+            private boolean shown = false;
+
+            /**
+             * Reads the owner table, then scans the boat records a batch
+             * at a time until the file is read or the load cancelled.
+             * @return the loader holding the batches read
+             * @throws IOException if the file cannot be read
+             */
+            @Override
+            protected BoatDatabaseLoader doInBackground()
+                    throws IOException {
+                BoatDatabaseLoader loader = BoatDatabaseLoader.open(file);
+                publish(loader);
+                while (!isCancelled() && loader.readBatch()) {
+                    publish(loader);
+                    setProgress(loader.getProgress());
+                }
+                return loader;
+            }
+
+            /**
+             * Adds the batches read so far and refreshes the tables.
+             * @param loaders the loader, once for each published batch
+             */
+            @Override
+            protected void process(java.util.List<BoatDatabaseLoader> loaders) {
+                // Once the load is over, done() adds the batches left
+                if (isDone()) {
+                    return;
+                }
+                BoatDatabaseLoader loader = loaders.get(0);
+                if (!shown) {
+                    showStorage(loader.getContents().storage);
+                    shown = true;
+                }
+                if (loader.addBatches()) {
+                    ownerTabPanel.refreshTable();
+                    boatTabPanel.refreshTable();
+                }
+            }
+
+            /**
+             * Makes the loaded database current on the event thread.
+             */
+            @Override
+            protected void done() {
+                loadFinished(this, file);
+            }
+        };
+        loadWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                progressBar.setValue((Integer) e.getNewValue());
+            }
+        });
+        loadWorker.execute();
+    }
+
+    /**
+     * Finishes a background load. If the whole file was read, its journal
+     * is replayed and it becomes the current database; otherwise the
+     * previous database is shown again.
+     * @param worker the finished load
+     * @param file the file that was loaded
+     */
+    private void loadFinished(
+            SwingWorker<BoatDatabaseLoader, BoatDatabaseLoader> worker,
+            File file) {
+        loadWorker = null;
+        hideProgress();
+        if (worker.isCancelled()) {
+            showStorage(boatStorage);
+            JOptionPane.showMessageDialog(this, "Loading cancelled.");
+            return;
+        }
+        try {
+            BoatDatabaseLoader loader = worker.get();
+            // Batches published last may not have been processed yet
+            loader.addBatches();
+            BoatDatabaseFile.Contents contents = loader.getContents();
+            ShardedDatabase loadedShards = loader.getShardedDatabase();
+            // A sharded database has no journal. Nor has a database
+            // whose journal cannot be written, such as one in a
+            // read-only directory: its journal is only replayed, and
+            // changes are kept by writing the whole file
+            BoatJournal opened = null;
+            int counter = contents.ownerIdCounter;
+            boolean readOnly = false;
+            if (loadedShards == null && BoatJournal.canWrite(file)) {
+                opened = BoatJournal.open(
+                    file, contents.storage, contents.snapshotId, counter
                 );
-            } catch (Exception ex) {
-                currentFile = null;
-                updateTitle();
-                JOptionPane.showMessageDialog(
-                    this,
-                    "Error loading: " + ex.getMessage()
+                counter = opened.getOwnerIdCounter();
+            } else if (loadedShards == null) {
+                counter = BoatJournal.replay(
+                    file, contents.storage, contents.snapshotId, counter
+                );
+                readOnly = true;
+            }
+            try {
+                closeJournal();
+            } catch (IOException ex) {
+                if (opened != null) {
+                    opened.close();
+                }
+                throw ex;
+            }
+            journal = opened;
+            detachShards();
+            shards = loadedShards;
+            boatStorage = contents.storage;
+            ownerIdCounter = counter;
+            currentFile = loadedShards != null
+                ? loadedShards.getDirectory() : file;
+            showStorage(boatStorage);
+            updateTitle();
+            JOptionPane.showMessageDialog(
+                this,
+                readOnly
+                    ? "Database loaded successfully.\n"
+                      + "Its journal cannot be written, so changes are"
+                      + " only kept\nby saving the whole database."
+                    : "Database loaded successfully."
+            );
+        } catch (ExecutionException ex) {
+            showStorage(boatStorage);
+            JOptionPane.showMessageDialog(
+                this,
+                "Error loading: " + ex.getCause().getMessage()
+            );
+        } catch (InterruptedException | IOException ex) {
+            showStorage(boatStorage);
+            JOptionPane.showMessageDialog(
+                this,
+                "Error loading: " + ex.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Imports boats for existing owners from a CSV or JSON file. The file
+     * is parsed on a background thread, then the boats are added in
+     * batches on the event thread. Rows that cannot be imported are
+     * written to an error file beside the imported file.
+     */
+    private void importBoats() {
+        if (!canStart(false)) {
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        if (
+            fileChooser.showOpenDialog(this)
+            != JFileChooser.APPROVE_OPTION
+        ) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        File errorFile = BoatImporter.errorFile(file);
+        BoatStorage storage = boatStorage;
+        BoatImporter importer = new BoatImporter(file, storage);
+        showProgress("Importing " + file.getName() + "...", false);
+        importWorker = new SwingWorker<BoatImporter, Void>() {
+            /**
+             * Reads and parses the file.
+             * @return the importer holding the parsed boats
+             * @throws IOException if the file cannot be read
+             */
+            @Override
+            protected BoatImporter doInBackground() throws IOException {
+                importer.parse(errorFile, this::setProgress);
+                return importer;
+            }
+
+            /**
+             * Adds the parsed boats on the event thread.
+             */
+            @Override
+            protected void done() {
+                importFinished(this, storage, errorFile);
+            }
+        };
+        importWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                progressBar.setValue((Integer) e.getNewValue());
+            }
+        });
+        importWorker.execute();
+    }
+
+    /**
+     * Finishes a background import by adding the parsed boats to the
+     * storage they were parsed for, and reports the outcome.
+     * @param worker the finished import
+     * @param storage the storage the boats are added to
+     * @param errorFile the file rejected rows were written to
+     */
+    private void importFinished(SwingWorker<BoatImporter, Void> worker,
+                                BoatStorage storage, File errorFile) {
+        importWorker = null;
+        hideProgress();
+        try {
+            BoatImporter importer = worker.get();
+            int added = importer.addTo(storage);
+            commitJournal();
+            boatTabPanel.refreshTable();
+            ownerTabPanel.refreshTable();
+            String message = added + " boat(s) imported.";
+            if (importer.getRejectedCount() > 0) {
+                message += "\n" + importer.getRejectedCount()
+                    + " row(s) could not be imported; see "
+                    + errorFile.getName() + ".";
+            }
+            JOptionPane.showMessageDialog(this, message);
+        } catch (ExecutionException ex) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Error importing: " + ex.getCause().getMessage()
+            );
+        } catch (InterruptedException ex) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Error importing: " + ex.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Exports the charges of every boat of every owner to a CSV file on a
+     * background thread, from a snapshot taken now, so the window stays
+     * responsive and can go on being edited while the file is written.
+     * Progress is shown below the tabs.
+     */
+    private void exportOwnerCharges() {
+        if (!canStart(false)) {
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File("owner-charges.csv"));
+        if (
+            fileChooser.showSaveDialog(this)
+            != JFileChooser.APPROVE_OPTION
+        ) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        BoatStorageSnapshot snapshot = boatStorage.snapshot();
+        showProgress("Exporting " + file.getName() + "...", false);
+        exportWorker = new SwingWorker<Void, Void>() {
+            /**
+             * Writes the owner charges of the snapshot to the file.
+             * @return nothing
+             * @throws IOException if the file cannot be written
+             */
+            @Override
+            protected Void doInBackground() throws IOException {
+                ChargeReportExporter.exportOwnerCharges(
+                    snapshot, file, this::setProgress
                 );
+                return null;
+            }
+
+            /**
+             * Reports the outcome on the event thread.
+             */
+            @Override
+            protected void done() {
+                exportFinished(this, file, snapshot);
+            }
+        };
+        exportWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                progressBar.setValue((Integer) e.getNewValue());
             }
+        });
+        exportWorker.execute();
+    }
+
+    /**
+     * Finishes a background export of the owner charges and reports the
+     * outcome.
+     * @param worker the finished export
+     * @param file the file that was written
+     * @param snapshot the snapshot that was exported
+     */
+    private void exportFinished(SwingWorker<Void, Void> worker, File file,
+                                BoatStorageSnapshot snapshot) {
+        exportWorker = null;
+        hideProgress();
+        snapshot.release();
+        try {
+            worker.get();
+            JOptionPane.showMessageDialog(
+                this,
+                "Owner charges exported to " + file.getName()
+            );
+        } catch (ExecutionException ex) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Error exporting: " + ex.getCause().getMessage()
+            );
+        } catch (InterruptedException ex) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Error exporting: " + ex.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Shows a storage in all three tabs.
+     * @param storage the storage to show
+     */
+    private void showStorage(BoatStorage storage) {
+        ownerTabPanel.setBoatStorage(storage);
+        boatTabPanel.setBoatStorage(storage);
+        reportTabPanel.setBoatStorage(storage);
+    }
+
+    /**
+     * Shows the progress bar below the tabs.
+     * @param text the text shown in the bar
+     * @param cancellable whether to show the Cancel button
+     */
+    private void showProgress(String text, boolean cancellable) {
+        progressBar.setValue(0);
+        progressBar.setString(text);
+        cancelButton.setVisible(cancellable);
+        progressPanel.setVisible(true);
+    }
+
+    /**
+     * Hides the progress bar below the tabs.
+     */
+    private void hideProgress() {
+        progressPanel.setVisible(false);
+    }
+
+    /**
+     * Checks that no background save, load, import or export stands in
+     * the way of an action, and asks the user to wait if one does.
+     * @param saveAllowed whether the action may go ahead during a save
+     *        or export, which work from snapshots of the storage
+     * @return true if the action may go ahead
+     */
+    private boolean canStart(boolean saveAllowed) {
+        String running = null;
+        if (loadWorker != null) {
+            running = "load";
+        } else if (importWorker != null && !saveAllowed) {
+            running = "import";
+        } else if (saveWorker != null && !saveAllowed) {
+            running = "save";
+        } else if (exportWorker != null && !saveAllowed) {
+            running = "export";
+        }
+        if (running == null) {
+            return true;
         }
+        JOptionPane.showMessageDialog(
+            this,
+            "Please wait for the current " + running + " to finish."
+        );
+        return false;
     }
 
     /**
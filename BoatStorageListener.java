@@ -0,0 +1,53 @@
+package assignment1;
+
+import java.util.EventListener;
+
+/**
+ * Listens for owners and boats being added to or edited in a BoatStorage,
+ * so that views can update exactly the rows that changed instead of
+ * rebuilding all of them. Events are sent on the thread that changed the
+ * storage, after the change is complete, which for a storage shown in the
+ * GUI is the event dispatch thread.
+ */
+public interface BoatStorageListener extends EventListener {
+    /**
+     * Called after owners were added to the end of the owner list.
+     *
+     * @param fromIndex Position of the first owner added
+     * @param toIndex   Position after the last owner added
+     */
+    void ownersAdded(int fromIndex, int toIndex);
+
+    /**
+     * Called after the ID number, name or address of an owner changed.
+     *
+     * @param owner The owner that changed
+     */
+    void ownerChanged(Owner owner);
+
+    /**
+     * Called after boats were added to the end of an owner's boat list.
+     * The owner's boat count and storage charge changed with them.
+     *
+     * @param owner     The owner of the boats
+     * @param fromIndex Position of the first boat added in the owner's list
+     * @param toIndex   Position after the last boat added
+     */
+    void boatsAdded(Owner owner, int fromIndex, int toIndex);
+
+    /**
+     * Called after the details of a boat changed. The owner's storage
+     * charge may have changed with them.
+     *
+     * @param owner The owner of the boat
+     * @param boat  The boat that changed
+     * @param index Position of the boat in the owner's list
+     */
+    void boatChanged(Owner owner, Boat boat, int index);
+
+    /**
+     * Called after boats were added for many owners at once, as a bulk
+     * import does, when a view is better rebuilt than updated row by row.
+     */
+    void storageChanged();
+}
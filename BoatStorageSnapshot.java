@@ -0,0 +1,368 @@
+package assignment1;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The owners and boats of a BoatStorage as they were at one moment,
+ * which can be written to a database file or exported on a background
+ * thread while the storage goes on being edited on the event thread.
+ * <p>
+ * Taking a snapshot copies the owner table and the references to each
+ * owner's boats, but not the boats themselves. Instead the storage tells
+ * the snapshot before a boat changes, and the snapshot keeps the values
+ * the boat had (copy on write), so only boats edited while the snapshot
+ * is in use are ever copied. Owners and boats added later are not part
+ * of the snapshot. Records of a mapped database that had not been
+ * decoded when the snapshot was taken cannot have changed, and are
+ * copied from the file as they are.
+ * <p>
+ * Kept values are handed from the event thread to the threads writing
+ * the snapshot under the snapshot's lock. Boats are encoded outside the
+ * lock, so several threads can write parts of one snapshot at once.
+ * Release the snapshot once it has been written so that the storage
+ * stops keeping old values.
+ */
+public class BoatStorageSnapshot {
+    /** The storage the snapshot was taken of */
+    private final BoatStorage storage;
+    /** ID number of each owner */
+    private final String[] idNumbers;
+    /** Name of each owner */
+    private final String[] names;
+    /** Address of each owner */
+    private final String[] addresses;
+    /** Mapped file the storage was opened from, or null if none */
+    private final MappedBoatFile records;
+    /** Mapped boats that had been decoded, see MappedBoatFile */
+    private final Boat[][] decoded;
+    /** First mapped record of each owner's boats */
+    private final int[] firstRecords;
+    /** Number of each owner's boats held as mapped records */
+    private final int[] recordCounts;
+    /** Total volume of each owner's boats, as the storage recorded it */
+    private final double[] volumes;
+    /** Each owner's boats, after those held as mapped records */
+    private final Boat[][] boats;
+    /** Total number of boats */
+    private final int boatCount;
+    /** Record of the old values of each boat changed since the snapshot */
+    private final IdentityHashMap<Boat, byte[]> keptValues =
+        new IdentityHashMap<>();
+
+    /**
+     * Takes a snapshot of a storage. Called by BoatStorage.snapshot on
+     * the thread that edits the storage.
+     *
+     * @param storage The storage
+     * @param records The mapped file the storage was opened from, or null
+     */
+    BoatStorageSnapshot(BoatStorage storage, MappedBoatFile records) {
+        this.storage = storage;
+        this.records = records;
+        decoded = records == null ? null : records.copyDecoded();
+        int ownerCount = storage.getOwnerCount();
+        idNumbers = new String[ownerCount];
+        names = new String[ownerCount];
+        addresses = new String[ownerCount];
+        firstRecords = new int[ownerCount];
+        recordCounts = new int[ownerCount];
+        volumes = new double[ownerCount];
+        boats = new Boat[ownerCount][];
+        int count = 0;
+        for (int i = 0; i < ownerCount; i++) {
+            Owner owner = storage.getOwnerAt(i);
+            idNumbers[i] = owner.getIdNumber();
+            names[i] = owner.getName();
+            addresses[i] = owner.getAddress();
+            volumes[i] = owner.getBoatVolume();
+            List<Boat> ownerBoats = owner.getBoats();
+            if (ownerBoats instanceof MappedBoatList) {
+                MappedBoatList mapped = (MappedBoatList) ownerBoats;
+                firstRecords[i] = mapped.getFirstRecord();
+                recordCounts[i] = mapped.getRecordCount();
+                boats[i] = mapped.copyAdded();
+            } else {
+                boats[i] = ownerBoats.toArray(new Boat[0]);
+            }
+            count += recordCounts[i] + boats[i].length;
+        }
+        boatCount = count;
+    }
+
+    /**
+     * Get the number of owners.
+     *
+     * @return Number of owners in the snapshot
+     */
+    public int getOwnerCount() {
+        return idNumbers.length;
+    }
+
+    /**
+     * Get the total number of boats.
+     *
+     * @return Number of boats in the snapshot
+     */
+    public int getTotalBoatCount() {
+        return boatCount;
+    }
+
+    /**
+     * Get the ID number an owner had.
+     *
+     * @param index Position of the owner
+     * @return ID number of the owner
+     */
+    public String getIdNumber(int index) {
+        return idNumbers[index];
+    }
+
+    /**
+     * Get the name an owner had.
+     *
+     * @param index Position of the owner
+     * @return Name of the owner
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Get the address an owner had.
+     *
+     * @param index Position of the owner
+     * @return Address of the owner
+     */
+    public String getAddress(int index) {
+        return addresses[index];
+    }
+
+    /**
+     * Get the number of boats an owner had.
+     *
+     * @param index Position of the owner
+     * @return Number of boats of the owner
+     */
+    public int getBoatCount(int index) {
+        return recordCounts[index] + boats[index].length;
+    }
+
+    /**
+     * Get the total volume an owner's boats had, as the storage kept it.
+     *
+     * @param index Position of the owner
+     * @return Total boat volume of the owner
+     */
+    double getBoatVolume(int index) {
+        return volumes[index];
+    }
+
+    /**
+     * Write the database records of an owner's boats with the values
+     * they had when the snapshot was taken. May be called on any thread.
+     *
+     * @param index Position of the owner
+     * @param out   The stream to write to
+     * @throws IOException If the stream cannot be written or a boat type
+     *                     has no record type
+     */
+    void writeBoats(int index, DataOutputStream out) throws IOException {
+        byte[] bytes = new byte[BoatDatabaseFile.BOAT_RECORD_SIZE];
+        ByteArrayOutputStream encoded =
+            new ByteArrayOutputStream(BoatDatabaseFile.BOAT_RECORD_SIZE);
+        DataOutputStream encoder = new DataOutputStream(encoded);
+        int first = firstRecords[index];
+        for (int record = first; record < first + recordCounts[index];
+                record++) {
+            Boat boat = MappedBoatFile.getDecoded(decoded, record);
+            if (boat == null) {
+                records.copyRecord(record, bytes);
+                out.write(bytes);
+            } else {
+                writeBoat(boat, out, encoded, encoder);
+            }
+        }
+        for (Boat boat : boats[index]) {
+            writeBoat(boat, out, encoded, encoder);
+        }
+    }
+
+    /**
+     * Get the charges of one of an owner's boats at the current rates,
+     * with the values the boat had when the snapshot was taken. May be
+     * called on any thread; like writeBoats, it looks for kept values
+     * again after reading a boat in case the boat began changing.
+     *
+     * @param index   Position of the owner
+     * @param boat    Position of the boat among the owner's boats
+     * @param charges Array filled with the storage charge, insurance
+     *                levy and type specific charge, in that order
+     * @return true for a sail boat, false for any other boat
+     * @throws IOException If the kept values of the boat cannot be read
+     */
+    boolean getCharges(int index, int boat, double[] charges)
+            throws IOException {
+        Boat value;
+        if (boat < recordCounts[index]) {
+            int record = firstRecords[index] + boat;
+            value = MappedBoatFile.getDecoded(decoded, record);
+            if (value == null) {
+                return records.getRecordCharges(record, charges);
+            }
+        } else {
+            value = boats[index][boat - recordCounts[index]];
+        }
+        byte[] kept = keptValue(value);
+        if (kept == null) {
+            calculateCharges(value, charges);
+            kept = keptValue(value);
+            if (kept == null) {
+                return value instanceof SailBoat;
+            }
+        }
+        Boat old = BoatDatabaseFile.readBoat(
+            new DataInputStream(new ByteArrayInputStream(kept))
+        );
+        calculateCharges(old, charges);
+        return old instanceof SailBoat;
+    }
+
+    /**
+     * Keep the current values of a boat before it changes, unless they
+     * are already kept. Called by the storage on the event thread.
+     *
+     * @param boat The boat about to change
+     */
+    synchronized void boatChanging(Boat boat) {
+        if (keptValues.containsKey(boat)) {
+            return;
+        }
+        ByteArrayOutputStream bytes =
+            new ByteArrayOutputStream(BoatDatabaseFile.BOAT_RECORD_SIZE);
+        try {
+            BoatDatabaseFile.writeBoat(new DataOutputStream(bytes), boat);
+        } catch (IOException ex) {
+            // A boat with no record type cannot be written at all, and
+            // writeBoats fails on it the same way without a kept record
+            return;
+        }
+        keptValues.put(boat, bytes.toByteArray());
+    }
+
+    /**
+     * Record in a journal every change made to the storage since the
+     * snapshot was taken, so that the journal brings a database written
+     * from the snapshot up to date with the storage. Called on the event
+     * thread once the snapshot has been written.
+     *
+     * @param journal The journal of the database written from the
+     *                snapshot
+     */
+    void recordChanges(BoatJournal journal) {
+        int ownerCount = storage.getOwnerCount();
+        for (int i = 0; i < ownerCount; i++) {
+            Owner owner = storage.getOwnerAt(i);
+            if (i >= idNumbers.length) {
+                journal.ownerAdded(owner);
+            } else if (!Objects.equals(idNumbers[i], owner.getIdNumber())
+                       || !Objects.equals(names[i], owner.getName())
+                       || !Objects.equals(addresses[i],
+                                          owner.getAddress())) {
+                journal.ownerChanged(owner);
+            }
+        }
+        for (int i = 0; i < ownerCount; i++) {
+            Owner owner = storage.getOwnerAt(i);
+            List<Boat> ownerBoats = owner.getBoats();
+            int from = i < idNumbers.length ? getBoatCount(i) : 0;
+            for (int j = from; j < ownerBoats.size(); j++) {
+                journal.boatAdded(owner, ownerBoats.get(j));
+            }
+        }
+        synchronized (this) {
+            for (Boat boat : keptValues.keySet()) {
+                Owner owner = storage.getOwnerOf(boat);
+                int position = owner.getPosition();
+                // Boats added since the snapshot were recorded above
+                if (position < idNumbers.length
+                        && boat.getPosition() < getBoatCount(position)) {
+                    journal.boatChanged(owner, boat);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop keeping old values of boats that change. The snapshot cannot
+     * be written after it has been released.
+     */
+    public void release() {
+        storage.snapshotReleased(this);
+        synchronized (this) {
+            keptValues.clear();
+        }
+    }
+
+    /**
+     * Write a boat with the values it had when the snapshot was taken.
+     * The boat is encoded without the lock and its kept values looked up
+     * again afterwards: the event thread keeps the old values before it
+     * changes a field, so if the boat began changing while it was being
+     * encoded the kept values are found and written instead.
+     *
+     * @param boat    The boat
+     * @param out     The stream to write to
+     * @param encoded Buffer to encode the boat into
+     * @param encoder Stream writing to encoded
+     * @throws IOException If the stream cannot be written or the boat
+     *                     type has no record type
+     */
+    private void writeBoat(Boat boat, DataOutputStream out,
+                           ByteArrayOutputStream encoded,
+                           DataOutputStream encoder) throws IOException {
+        byte[] kept = keptValue(boat);
+        if (kept == null) {
+            encoded.reset();
+            BoatDatabaseFile.writeBoat(encoder, boat);
+            kept = keptValue(boat);
+            if (kept == null) {
+                encoded.writeTo(out);
+                return;
+            }
+        }
+        out.write(kept);
+    }
+
+    /**
+     * Calculate the charges of a boat as its charge methods do, without
+     * reading or filling its charge cache, which belongs to the event
+     * thread.
+     *
+     * @param boat    The boat
+     * @param charges Array filled with the storage charge, insurance
+     *                levy and type specific charge, in that order
+     */
+    private static void calculateCharges(Boat boat, double[] charges) {
+        charges[0] = boat.volume() * Boat.getChargeRate();
+        charges[1] = boat.getBoatValue() * Boat.getLevyRate();
+        charges[2] = boat.calculateTypeCharge();
+    }
+
+    /**
+     * Get the values kept for a boat.
+     *
+     * @param boat The boat
+     * @return The record of the boat's old values, or null if the boat
+     *         has not changed since the snapshot was taken
+     */
+    private synchronized byte[] keptValue(Boat boat) {
+        return keptValues.get(boat);
+    }
+}
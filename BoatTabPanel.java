@@ -31,7 +31,7 @@ public class BoatTabPanel extends JPanel {
         this.boatStorage = boatStorage;
         setLayout(new BorderLayout());
 
-        boatTableModel = new BoatTableModel(boatStorage.getOwners());
+        boatTableModel = new BoatTableModel(boatStorage);
         boatTable = new JTable(boatTableModel);
         boatTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         JScrollPane scrollPane = new JScrollPane(boatTable);
@@ -69,10 +69,12 @@ public class BoatTabPanel extends JPanel {
 
     /**
      * Refreshes the boat table with the latest data from boatStorage.
+     * The model updates its rows as the storage changes, so this only
+     * rebuilds them if they were changed without the model hearing.
      * Call this after any change to the boats or owners.
      */
     public void refreshTable() {
-        boatTableModel.setOwners(boatStorage.getOwners());
+        boatTableModel.refresh();
     }
 
     /**
@@ -82,7 +84,8 @@ public class BoatTabPanel extends JPanel {
      */
     public void setBoatStorage(BoatStorage boatStorage) {
         this.boatStorage = boatStorage;
-        boatTableModel = new BoatTableModel(boatStorage.getOwners());
+        boatTableModel.detach();
+        boatTableModel = new BoatTableModel(boatStorage);
         boatTable.setModel(boatTableModel);
     }
 
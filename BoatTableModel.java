@@ -2,21 +2,46 @@ package assignment1;
 
 import javax.swing.table.AbstractTableModel; 
 import java.util.ArrayList;  
+import java.util.Arrays;
 
 /**
  * Table model for displaying all boats in a flat table,
  * showing owner and boat details.
+ * <p>
+ * The model is virtual: it holds no row objects, only the first row of
+ * each owner's boats (a prefix sum of the owners' boat counts). A row is
+ * mapped to its owner by binary search, and to its boat through the
+ * owner's boat list, only when the row is shown, so scrolling costs
+ * only the visible rows whatever the size of the fleet.
+ * <p>
+ * The model listens to its storage: owners and boats added move the
+ * first rows of the owners after them and are inserted as new rows, and
+ * an edit repaints only the rows it changed.
  */
-public class BoatTableModel extends AbstractTableModel {
+public class BoatTableModel extends AbstractTableModel
+        implements BoatStorageListener {
     /** Column names for the boat table */
     private static final String[] columns = {
         "Owner ID", "Owner Name", "Type", "Height", "Length", "Width",
         "Value", "Mast Height", "Sail Area", "Horse Power"
     };
-    /** List of all owners (each may own multiple boats) */
+    /** Storage holding the owners and boats shown */
+    private final BoatStorage boatStorage;
+    /** Owners in table order; each owner's boats are consecutive rows */
     private ArrayList<Owner> owners;
-    /** Flat list of (Owner, Boat) pairs, one per table row */
-    private ArrayList<BoatOwnerPair> boatPairs;
+    /**
+     * First row of each owner, followed by the number of rows; the array
+     * may be longer, to leave room for owners added later
+     */
+    private int[] firstRows;
+    /** Structure version of the storage when the rows were built */
+    private int rowsVersion;
+    /** Row last looked up, whose cells are usually asked for in turn */
+    private int lookedUpRow = -1;
+    /** Owner of the row last looked up */
+    private Owner lookedUpOwner;
+    /** Boat of the row last looked up */
+    private Boat lookedUpBoat;
 
     /**
      * Helper class to store a pair of Owner and Boat for each table row.
@@ -39,24 +64,107 @@ public class BoatTableModel extends AbstractTableModel {
     }
 
     /**
-     * Constructs the table model from a list of owners.
-     * @param owners the list of owners (each with their boats)
+     * Constructs the table model for the boats held in a storage.
+     * @param boatStorage the storage holding the owners and their boats
+     */
+    public BoatTableModel(BoatStorage boatStorage) {
+        this.boatStorage = boatStorage;
+        rebuildRows();
+        boatStorage.addStorageListener(this);
+    }
+
+    /**
+     * Stops listening to the storage. Call this once the model is no
+     * longer shown.
+     */
+    public void detach() {
+        boatStorage.removeStorageListener(this);
+    }
+
+    /**
+     * Rebuilds the row index: the first row of each owner's boats.
+     * Boats are only looked up when their row is shown, so boats of a
+     * database opened from a mapped file are not decoded here.
+     */
+    private void rebuildRows() {
+        owners = boatStorage.getOwners();
+        // The array is reused while it has room for the owners
+        if (firstRows == null || firstRows.length < owners.size() + 1) {
+            firstRows = new int[owners.size() + 1];
+        }
+        for (int i = 0; i < owners.size(); i++) {
+            firstRows[i + 1] = firstRows[i] + owners.get(i).getBoats().size();
+        }
+        rowsVersion = boatStorage.getStructureVersion();
+        forgetLookUp();
+    }
+
+    /**
+     * Forgets the row last looked up, once rows have moved.
+     */
+    private void forgetLookUp() {
+        lookedUpRow = -1;
+        lookedUpOwner = null;
+        lookedUpBoat = null;
+    }
+
+    /**
+     * Finds the position of an owner in the owner list.
+     * @param owner the owner
+     * @return the index of the owner, or -1 if it is not shown
+     */
+    private int indexOf(Owner owner) {
+        int index = owner.getPosition();
+        if (index >= 0 && index < owners.size()
+                && owners.get(index) == owner) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Rebuilds all rows, for a change the model cannot follow row by row.
      */
-    public BoatTableModel(ArrayList<Owner> owners) {
-        this.owners = owners;
-        refreshBoatPairs();
+    private void rebuildAll() {
+        rebuildRows();
+        fireTableDataChanged();
     }
 
     /**
-     * Rebuilds the flat list of (Owner, Boat) pairs for the table rows.
+     * Finds the position of the owner of a row: the last owner whose
+     * first row is not after it. Owners without boats share their first
+     * row with the next owner, so they are never found.
+     * @param row the row index
+     * @return the index of the owner in the owner list
      */
-    private void refreshBoatPairs() {
-        boatPairs = new ArrayList<>();
-        for (Owner owner : owners) {
-            for (Boat boat : owner.getBoats()) {
-                boatPairs.add(new BoatOwnerPair(owner, boat));
+    private int ownerIndex(int row) {
+        int low = 0;
+        int high = owners.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstRows[mid] <= row) {
+                low = mid;
+            } else {
+                high = mid - 1;
             }
         }
+        return low;
+    }
+
+    /**
+     * Looks up the owner and boat of a row, unless it is the row last
+     * looked up, whose cells the table asks for one after another.
+     * @param row the row index
+     */
+    private void lookUp(int row) {
+        if (row == lookedUpRow) {
+            return;
+        }
+        int index = ownerIndex(row);
+        Owner owner = owners.get(index);
+        lookedUpBoat = owner.getBoats().get(row - firstRows[index]);
+        lookedUpOwner = owner;
+        lookedUpRow = row;
     }
 
     /**
@@ -65,7 +173,8 @@ public class BoatTableModel extends AbstractTableModel {
      * @return the BoatOwnerPair for the row
      */
     public BoatOwnerPair getBoatOwnerPair(int row) {
-        return boatPairs.get(row);
+        lookUp(row);
+        return new BoatOwnerPair(lookedUpOwner, lookedUpBoat);
     }
 
     /**
@@ -83,7 +192,7 @@ public class BoatTableModel extends AbstractTableModel {
      */
     @Override
     public int getRowCount() {
-        return boatPairs.size();
+        return firstRows[owners.size()];
     }
 
     /**
@@ -94,12 +203,12 @@ public class BoatTableModel extends AbstractTableModel {
      */
     @Override
     public Object getValueAt(int row, int col) {
-        BoatOwnerPair pair = boatPairs.get(row);
-        Owner o = pair.owner;
-        Boat b = pair.boat;
+        lookUp(row);
+        Owner owner = lookedUpOwner;
+        Boat b = lookedUpBoat;
         switch (col) {
-            case 0: return o.getIdNumber();
-            case 1: return o.getName();
+            case 0: return owner.getIdNumber();
+            case 1: return owner.getName();
             case 2: return (b instanceof SailBoat)
                 ? "SailBoat" : "MotorBoat";
             case 3: return b.getHeight();
@@ -127,13 +236,101 @@ public class BoatTableModel extends AbstractTableModel {
     }
 
     /**
-     * Updates the owners list and rebuilds the flat pair list,
-     * then refreshes the table.
-     * @param owners the new list of owners
+     * Refreshes the table. Changes made through the storage have already
+     * updated the rows, so this does nothing unless owners or boats were
+     * added while the model was not listening, in which case the rows
+     * are rebuilt.
      */
-    public void setOwners(ArrayList<Owner> owners) {
-        this.owners = owners;
-        refreshBoatPairs();
-        fireTableDataChanged();
+    public void refresh() {
+        if (rowsVersion != boatStorage.getStructureVersion()) {
+            rebuildAll();
+        }
+    }
+
+    /**
+     * Appends the rows of owners added to the storage.
+     * @param fromIndex position of the first owner added
+     * @param toIndex position after the last owner added
+     */
+    @Override
+    public void ownersAdded(int fromIndex, int toIndex) {
+        if (fromIndex != owners.size()) {
+            rebuildAll();
+            return;
+        }
+        if (firstRows.length < toIndex + 1) {
+            firstRows = Arrays.copyOf(
+                firstRows, Math.max(toIndex + 1, firstRows.length * 2)
+            );
+        }
+        int firstRow = getRowCount();
+        for (int i = fromIndex; i < toIndex; i++) {
+            Owner owner = boatStorage.getOwnerAt(i);
+            owners.add(owner);
+            firstRows[i + 1] = firstRows[i] + owner.getBoats().size();
+        }
+        rowsVersion = boatStorage.getStructureVersion();
+        if (getRowCount() > firstRow) {
+            fireTableRowsInserted(firstRow, getRowCount() - 1);
+        }
+    }
+
+    /**
+     * Repaints the rows of an owner whose details changed.
+     * @param owner the owner that changed
+     */
+    @Override
+    public void ownerChanged(Owner owner) {
+        int index = indexOf(owner);
+        if (index >= 0 && firstRows[index + 1] > firstRows[index]) {
+            fireTableRowsUpdated(firstRows[index], firstRows[index + 1] - 1);
+        }
+    }
+
+    /**
+     * Inserts the rows of boats added to an owner, after the owner's
+     * other boats, moving the rows of the owners after it.
+     * @param owner the owner of the boats
+     * @param fromIndex position of the first boat added in the owner's list
+     * @param toIndex position after the last boat added
+     */
+    @Override
+    public void boatsAdded(Owner owner, int fromIndex, int toIndex) {
+        int index = indexOf(owner);
+        if (index < 0) {
+            rebuildAll();
+            return;
+        }
+        int count = toIndex - fromIndex;
+        int row = firstRows[index] + fromIndex;
+        for (int i = index + 1; i <= owners.size(); i++) {
+            firstRows[i] += count;
+        }
+        rowsVersion = boatStorage.getStructureVersion();
+        forgetLookUp();
+        fireTableRowsInserted(row, row + count - 1);
+    }
+
+    /**
+     * Repaints the row of a boat whose details changed.
+     * @param owner the owner of the boat
+     * @param boat the boat that changed
+     * @param position the position of the boat in the owner's list
+     */
+    @Override
+    public void boatChanged(Owner owner, Boat boat, int position) {
+        int index = indexOf(owner);
+        if (index >= 0) {
+            int row = firstRows[index] + position;
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * Rebuilds the rows after boats were added for many owners at once.
+     */
+    @Override
+    public void storageChanged() {
+        rebuildAll();
     }
 }
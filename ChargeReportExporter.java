@@ -0,0 +1,333 @@
+package assignment1;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.IntConsumer;
+
+/**
+ * Exports charge reports as CSV files, streaming each row straight to a
+ * buffered writer.
+ * <p>
+ * The owner charges export holds the breakdown shown by the Owner
+ * Charges report for every owner at once: one row per boat with its
+ * storage charge, insurance levy, sail drying or fire levy charge and
+ * total monthly charge, a TOTAL row after each owner's boats, added up
+ * as that report adds them, and a final row totalling the whole fleet
+ * as the Charges Summary does. The rows are written from a snapshot of
+ * the storage, so the export can run on a background thread while the
+ * storage goes on being edited. No rows are built in memory, so the
+ * memory used grows with the fleet only by the snapshot's references to
+ * the boats, and boats of a mapped database are read from their records
+ * without being decoded.
+ * <p>
+ * The fleet report export holds the Charges Summary and Boat Counts
+ * reports. Amounts are written with two decimals and a decimal point,
+ * whatever the locale.
+ */
+public class ChargeReportExporter {
+    /** Header row of the owner charges export */
+    private static final String OWNER_CHARGES_HEADER =
+        "Owner ID,Owner Name,Boat,Type,Storage Charge,Insurance Levy,"
+        + "Sail Drying Charge,Fire Levy Charge,Total Monthly Charge";
+
+    /** The stream the rows are written to */
+    private final Writer out;
+    /** Buffer amounts are formatted into before they are written */
+    private final char[] number = new char[32];
+
+    /**
+     * Constructs an exporter writing to a stream.
+     *
+     * @param out The stream to write to, which should be buffered
+     */
+    private ChargeReportExporter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Export the charges of every boat of every owner to a file. Called
+     * on the thread that edits the storage.
+     *
+     * @param storage The storage to export
+     * @param file    The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public static void exportOwnerCharges(BoatStorage storage, File file)
+            throws IOException {
+        BoatStorageSnapshot snapshot = storage.snapshot();
+        try {
+            exportOwnerCharges(snapshot, file, null);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Export the charges of every boat of every owner in a snapshot to a
+     * file. May be called on any thread.
+     *
+     * @param snapshot The owners and boats to export
+     * @param file     The file to write
+     * @param progress Told the percentage of boats written each time it
+     *                 grows, or null
+     * @throws IOException If the file cannot be written
+     */
+    public static void exportOwnerCharges(BoatStorageSnapshot snapshot,
+                                          File file, IntConsumer progress)
+            throws IOException {
+        try (Writer out = newWriter(file)) {
+            writeOwnerCharges(snapshot, out, progress);
+        }
+    }
+
+    /**
+     * Export the charges summary and boat counts to a file.
+     *
+     * @param summary Charge totals of the fleet
+     * @param file    The file to write
+     * @throws IOException If the file cannot be written
+     */
+    public static void exportFleetReport(ChargeSummary summary, File file)
+            throws IOException {
+        try (Writer out = newWriter(file)) {
+            writeFleetReport(summary, out);
+        }
+    }
+
+    /**
+     * Write the charges of every boat of every owner, in owner order,
+     * with a total after each owner's boats and a total for the fleet.
+     * Called on the thread that edits the storage.
+     *
+     * @param storage The storage to export
+     * @param out     The stream to write to, which should be buffered
+     * @throws IOException If the stream cannot be written
+     */
+    public static void writeOwnerCharges(BoatStorage storage, Writer out)
+            throws IOException {
+        BoatStorageSnapshot snapshot = storage.snapshot();
+        try {
+            writeOwnerCharges(snapshot, out, null);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Write the charges of every boat of every owner in a snapshot, in
+     * owner order, with a total after each owner's boats and a total for
+     * the fleet. May be called on any thread.
+     *
+     * @param snapshot The owners and boats to export
+     * @param out      The stream to write to, which should be buffered
+     * @param progress Told the percentage of boats written each time it
+     *                 grows, or null
+     * @throws IOException If the stream cannot be written
+     */
+    public static void writeOwnerCharges(BoatStorageSnapshot snapshot,
+                                         Writer out, IntConsumer progress)
+            throws IOException {
+        ChargeReportExporter exporter = new ChargeReportExporter(out);
+        out.write(OWNER_CHARGES_HEADER);
+        out.write('\n');
+        double[] charges = new double[3];
+        // Fleet totals add up the boats with compensated summation, as
+        // the Charges Summary does
+        CompensatedSum[] fleet = new CompensatedSum[5];
+        for (int k = 0; k < fleet.length; k++) {
+            fleet[k] = new CompensatedSum();
+        }
+        long boatCount = snapshot.getTotalBoatCount();
+        long boatsWritten = 0;
+        int percent = 0;
+        for (int i = 0; i < snapshot.getOwnerCount(); i++) {
+            double[] totals = new double[5];
+            int size = snapshot.getBoatCount(i);
+            for (int j = 0; j < size; j++) {
+                boolean sail = snapshot.getCharges(i, j, charges);
+                exporter.writeOwner(snapshot, i);
+                out.write(Integer.toString(j + 1));
+                out.write(sail ? ",SailBoat," : ",MotorBoat,");
+                double total = charges[0] + charges[1] + charges[2];
+                exporter.writeCharges(charges[0], charges[1],
+                                      sail ? charges[2] : Double.NaN,
+                                      sail ? Double.NaN : charges[2],
+                                      total);
+                totals[1] += charges[1];
+                totals[sail ? 2 : 3] += charges[2];
+                totals[4] += total;
+                fleet[0].add(charges[0]);
+                fleet[1].add(charges[1]);
+                fleet[sail ? 2 : 3].add(charges[2]);
+                fleet[4].add(total);
+            }
+            // The storage total is the owner's volume times the rate,
+            // as the owner list shows it
+            totals[0] = snapshot.getBoatVolume(i) * Boat.getChargeRate();
+            exporter.writeOwner(snapshot, i);
+            out.write("TOTAL,");
+            out.write(size + " boat(s),");
+            exporter.writeCharges(totals[0], totals[1], totals[2],
+                                  totals[3], totals[4]);
+            boatsWritten += size;
+            if (progress != null && boatCount > 0
+                    && boatsWritten * 100 / boatCount > percent) {
+                percent = (int) (boatsWritten * 100 / boatCount);
+                progress.accept(percent);
+            }
+        }
+        out.write(",ALL OWNERS,TOTAL,");
+        out.write(boatCount + " boat(s),");
+        exporter.writeCharges(fleet[0].value(), fleet[1].value(),
+                              fleet[2].value(), fleet[3].value(),
+                              fleet[4].value());
+        exporter.flush();
+    }
+
+    /**
+     * Write the charges summary and the boat counts.
+     *
+     * @param summary Charge totals of the fleet
+     * @param out     The stream to write to, which should be buffered
+     * @throws IOException If the stream cannot be written
+     */
+    public static void writeFleetReport(ChargeSummary summary, Writer out)
+            throws IOException {
+        ChargeReportExporter exporter = new ChargeReportExporter(out);
+        out.write("Report,Item,Value\n");
+        exporter.writeAmount("Storage Charges", summary.getStorageCharges());
+        exporter.writeAmount("Sail Drying Charges",
+                             summary.getSailDryingCharges());
+        exporter.writeAmount("Fire Levy Charges",
+                             summary.getFireLevyCharges());
+        exporter.writeAmount("Insurance Charges",
+                             summary.getInsuranceLevies());
+        exporter.writeAmount("TOTAL MONTHLY INCOME",
+                             summary.getTotalCharges());
+        out.write("Boat Counts,SailBoat," + summary.getSailBoatCount()
+                  + "\n");
+        out.write("Boat Counts,MotorBoat," + summary.getMotorBoatCount()
+                  + "\n");
+        out.write("Boat Counts,TOTAL BOATS," + summary.getTotalBoatCount()
+                  + "\n");
+        exporter.flush();
+    }
+
+    /**
+     * Open a file for writing through a buffer.
+     *
+     * @param file The file
+     * @return The buffered writer
+     * @throws IOException If the file cannot be opened
+     */
+    private static Writer newWriter(File file) throws IOException {
+        return new BufferedWriter(
+            Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8),
+            1 << 16
+        );
+    }
+
+    /**
+     * Write the owner ID and name fields that start a row.
+     *
+     * @param snapshot The snapshot holding the owner
+     * @param index    Position of the owner in the snapshot
+     * @throws IOException If the stream cannot be written
+     */
+    private void writeOwner(BoatStorageSnapshot snapshot, int index)
+            throws IOException {
+        writeField(snapshot.getIdNumber(index));
+        out.write(',');
+        writeField(snapshot.getName(index));
+        out.write(',');
+    }
+
+    /**
+     * Write the charge fields that end a row. NaN leaves a field empty.
+     *
+     * @param storage    Storage charge
+     * @param insurance  Insurance levy
+     * @param sailDrying Sail drying charge, or NaN
+     * @param fireLevy   Fire levy charge, or NaN
+     * @param total      Total monthly charge
+     * @throws IOException If the stream cannot be written
+     */
+    private void writeCharges(double storage, double insurance,
+                              double sailDrying, double fireLevy,
+                              double total) throws IOException {
+        writeNumber(storage);
+        out.write(',');
+        writeNumber(insurance);
+        out.write(',');
+        if (!Double.isNaN(sailDrying)) {
+            writeNumber(sailDrying);
+        }
+        out.write(',');
+        if (!Double.isNaN(fireLevy)) {
+            writeNumber(fireLevy);
+        }
+        out.write(',');
+        writeNumber(total);
+        out.write('\n');
+    }
+
+    /**
+     * Write a row of the charges summary.
+     *
+     * @param item   The charge type
+     * @param amount The amount
+     * @throws IOException If the stream cannot be written
+     */
+    private void writeAmount(String item, double amount) throws IOException {
+        out.write("Charges Summary,");
+        out.write(item);
+        out.write(',');
+        writeNumber(amount);
+        out.write('\n');
+    }
+
+    /**
+     * Write an amount with two decimals.
+     *
+     * @param amount The amount
+     * @throws IOException If the stream cannot be written
+     */
+    private void writeNumber(double amount) throws IOException {
+        int length = MoneyFormat.format(amount, number, 0);
+        out.write(number, 0, length);
+    }
+
+    /**
+     * Write a text field, quoting it if it holds a comma, quote or line
+     * break.
+     *
+     * @param text The text
+     * @throws IOException If the stream cannot be written
+     */
+    private void writeField(String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0
+                && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            out.write(text);
+            return;
+        }
+        out.write('"');
+        out.write(text.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * Flush the stream.
+     *
+     * @throws IOException If the stream cannot be written
+     */
+    private void flush() throws IOException {
+        out.flush();
+    }
+}
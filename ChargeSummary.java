@@ -0,0 +1,211 @@
+package assignment1;
+
+/**
+ * Immutable summary of the monthly charges and boat counts for a fleet.
+ * Produced by BoatStorage and used to feed the summary and count reports
+ * from a single result.
+ */
+public class ChargeSummary {
+    /** Total storage charges */
+    private final double storageCharges;
+    /** Total insurance levies */
+    private final double insuranceLevies;
+    /** Total sail drying charges */
+    private final double sailDryingCharges;
+    /** Total fire levy charges */
+    private final double fireLevyCharges;
+    /** Number of sail boats */
+    private final int sailBoatCount;
+    /** Number of motor boats */
+    private final int motorBoatCount;
+
+    /**
+     * Constructor with arguments to initialize a ChargeSummary object.
+     *
+     * @param storageCharges    Total storage charges
+     * @param insuranceLevies   Total insurance levies
+     * @param sailDryingCharges Total sail drying charges
+     * @param fireLevyCharges   Total fire levy charges
+     * @param sailBoatCount     Number of sail boats
+     * @param motorBoatCount    Number of motor boats
+     */
+    public ChargeSummary(double storageCharges, double insuranceLevies,
+                         double sailDryingCharges, double fireLevyCharges,
+                         int sailBoatCount, int motorBoatCount) {
+        this.storageCharges = storageCharges;
+        this.insuranceLevies = insuranceLevies;
+        this.sailDryingCharges = sailDryingCharges;
+        this.fireLevyCharges = fireLevyCharges;
+        this.sailBoatCount = sailBoatCount;
+        this.motorBoatCount = motorBoatCount;
+    }
+
+    /**
+     * Get the total storage charges.
+     *
+     * @return Total storage charges
+     */
+    public double getStorageCharges() {
+        return storageCharges;
+    }
+
+    /**
+     * Get the total insurance levies.
+     *
+     * @return Total insurance levies
+     */
+    public double getInsuranceLevies() {
+        return insuranceLevies;
+    }
+
+    /**
+     * Get the total sail drying charges.
+     *
+     * @return Total sail drying charges
+     */
+    public double getSailDryingCharges() {
+        return sailDryingCharges;
+    }
+
+    /**
+     * Get the total fire levy charges.
+     *
+     * @return Total fire levy charges
+     */
+    public double getFireLevyCharges() {
+        return fireLevyCharges;
+    }
+
+    /**
+     * Get the total monthly income over all charge types.
+     *
+     * @return Total monthly income
+     */
+    public double getTotalCharges() {
+        return storageCharges + sailDryingCharges + fireLevyCharges
+               + insuranceLevies;
+    }
+
+    /**
+     * Get the number of sail boats.
+     *
+     * @return Number of sail boats
+     */
+    public int getSailBoatCount() {
+        return sailBoatCount;
+    }
+
+    /**
+     * Get the number of motor boats.
+     *
+     * @return Number of motor boats
+     */
+    public int getMotorBoatCount() {
+        return motorBoatCount;
+    }
+
+    /**
+     * Get the total number of boats.
+     *
+     * @return Total number of boats
+     */
+    public int getTotalBoatCount() {
+        return sailBoatCount + motorBoatCount;
+    }
+
+    /**
+     * Mutable accumulator that builds a ChargeSummary in one pass over
+     * a set of boats. Accumulators for separate parts of a fleet can be
+     * merged, which is how the parallel computation combines its work.
+     * Charges are added with compensated summation so that the merged
+     * totals depend only on the order of the merges, not on rounding
+     * luck of how the work was scheduled.
+     */
+    static class Accumulator {
+        /** Running storage charges */
+        private final CompensatedSum storage = new CompensatedSum();
+        /** Running insurance levies */
+        private final CompensatedSum insurance = new CompensatedSum();
+        /** Running sail drying charges */
+        private final CompensatedSum sailDrying = new CompensatedSum();
+        /** Running fire levy charges */
+        private final CompensatedSum fireLevy = new CompensatedSum();
+        /** Running sail boat count */
+        private int sailBoats;
+        /** Running motor boat count */
+        private int motorBoats;
+
+        /**
+         * Add the charges of one boat.
+         *
+         * @param boat The boat to add
+         */
+        void add(Boat boat) {
+            if (boat instanceof SailBoat) {
+                addSailBoat(boat.storageCharge(), boat.insuranceLevy(),
+                            ((SailBoat) boat).sailDryingCharge());
+            } else if (boat instanceof MotorBoat) {
+                addMotorBoat(boat.storageCharge(), boat.insuranceLevy(),
+                             ((MotorBoat) boat).fireLevyCharge());
+            } else {
+                storage.add(boat.storageCharge());
+                insurance.add(boat.insuranceLevy());
+            }
+        }
+
+        /**
+         * Add the charges of one sail boat.
+         *
+         * @param storageCharge    Storage charge of the boat
+         * @param insuranceLevy    Insurance levy of the boat
+         * @param sailDryingCharge Sail drying charge of the boat
+         */
+        void addSailBoat(double storageCharge, double insuranceLevy,
+                         double sailDryingCharge) {
+            storage.add(storageCharge);
+            insurance.add(insuranceLevy);
+            sailDrying.add(sailDryingCharge);
+            sailBoats++;
+        }
+
+        /**
+         * Add the charges of one motor boat.
+         *
+         * @param storageCharge  Storage charge of the boat
+         * @param insuranceLevy  Insurance levy of the boat
+         * @param fireLevyCharge Fire levy charge of the boat
+         */
+        void addMotorBoat(double storageCharge, double insuranceLevy,
+                          double fireLevyCharge) {
+            storage.add(storageCharge);
+            insurance.add(insuranceLevy);
+            fireLevy.add(fireLevyCharge);
+            motorBoats++;
+        }
+
+        /**
+         * Add the totals of another accumulator to this one.
+         *
+         * @param other The accumulator to merge in
+         */
+        void merge(Accumulator other) {
+            storage.merge(other.storage);
+            insurance.merge(other.insurance);
+            sailDrying.merge(other.sailDrying);
+            fireLevy.merge(other.fireLevy);
+            sailBoats += other.sailBoats;
+            motorBoats += other.motorBoats;
+        }
+
+        /**
+         * Create the summary of everything accumulated so far.
+         *
+         * @return The charge summary
+         */
+        ChargeSummary toSummary() {
+            return new ChargeSummary(storage.value(), insurance.value(),
+                                     sailDrying.value(), fireLevy.value(),
+                                     sailBoats, motorBoats);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package assignment1;
+
+/**
+ * Running sum of double values using Neumaier's compensated summation.
+ * The rounding error lost by each addition is collected separately and
+ * added back when the value is read, so long runs of additions and
+ * removals do not drift the way a plain double total would.
+ */
+public class CompensatedSum {
+    /** Running total */
+    private double sum;
+    /** Accumulated rounding error of the running total */
+    private double compensation;
+
+    /**
+     * Add a value to the sum.
+     *
+     * @param value The value to add
+     */
+    public void add(double value) {
+        double total = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - total) + value;
+        } else {
+            compensation += (value - total) + sum;
+        }
+        sum = total;
+    }
+
+    /**
+     * Add the running total and rounding error of another sum to this one.
+     * Merging partial sums in a fixed order gives the same result no matter
+     * which threads produced them.
+     *
+     * @param other The sum to merge in
+     */
+    public void merge(CompensatedSum other) {
+        add(other.sum);
+        compensation += other.compensation;
+    }
+
+    /**
+     * Get the compensated value of the sum.
+     *
+     * @return Value of the sum
+     */
+    public double value() {
+        return sum + compensation;
+    }
+}
@@ -0,0 +1,108 @@
+package assignment1;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block codec using the Deflate algorithm of java.util.zip, at a chosen
+ * compression level. Blocks carry the zlib checksum, so a damaged block
+ * is detected when it is decompressed. The level only affects
+ * compression; any level decompresses any Deflate block.
+ */
+public class DeflateCodec implements BlockCodec {
+    /** Codec ID of Deflate compressed files */
+    static final byte ID = 1;
+
+    /** Deflater compression level, 1 (fastest) to 9 (smallest) */
+    private final int level;
+
+    /**
+     * Constructs a Deflate codec.
+     *
+     * @param level Compression level, 1 (fastest) to 9 (smallest), or
+     *              Deflater.DEFAULT_COMPRESSION
+     */
+    public DeflateCodec(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Get the compression level.
+     *
+     * @return Deflater compression level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the codec ID of Deflate compressed files.
+     *
+     * @return Codec ID
+     */
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    /**
+     * Compress a block with Deflate.
+     *
+     * @param data The block
+     * @return The compressed block
+     */
+    @Override
+    public byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] out = new byte[data.length / 2 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompress a Deflate block, checking its checksum.
+     *
+     * @param data The compressed block
+     * @param out  Array to decompress into, exactly as long as the block
+     * @throws IOException If the block is damaged or of another length
+     */
+    @Override
+    public void decompress(byte[] data, byte[] out) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            int length = 0;
+            while (length < out.length) {
+                int n = inflater.inflate(out, length, out.length - length);
+                if (n == 0 && (inflater.finished() || inflater.needsInput()
+                               || inflater.needsDictionary())) {
+                    throw new IOException("Compressed block is too short");
+                }
+                length += n;
+            }
+            // Reading on checks the trailer and that nothing is left over
+            if (inflater.inflate(new byte[1]) != 0 || !inflater.finished()) {
+                throw new IOException("Compressed block is too long");
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Damaged compressed block", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+}
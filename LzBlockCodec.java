@@ -0,0 +1,226 @@
+package assignment1;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Fast block codec in the style of LZ4, written in plain Java. A block is
+ * compressed into a series of sequences, each a run of literal bytes
+ * followed by a match: a copy of at least MIN_MATCH earlier bytes, found
+ * through a hash table of the 4-byte values seen so far. It compresses
+ * less than Deflate but runs several times faster in both directions,
+ * which suits the repeated fields of boat records.
+ * <p>
+ * Each sequence starts with a token byte whose high four bits hold the
+ * literal length and low four bits the match length less MIN_MATCH;
+ * a value of 15 is continued in following bytes, each added to it until
+ * one is below 255. The literals follow, then the match offset as two
+ * little-endian bytes and any continued match length. The last sequence
+ * has literals only, and is followed by the CRC-32C of the decompressed
+ * block as four big-endian bytes, so that damage is caught as it is with
+ * Deflate's checksum.
+ */
+public class LzBlockCodec implements BlockCodec {
+    /** Codec ID of LZ compressed files */
+    static final byte ID = 2;
+    /** Shortest match that is encoded */
+    private static final int MIN_MATCH = 4;
+    /** Longest distance back a match can copy from */
+    private static final int MAX_OFFSET = 65535;
+    /** Number of bits in a hash table index */
+    private static final int HASH_BITS = 14;
+    /** Length value in a token nibble that is continued in more bytes */
+    private static final int RUN_MASK = 15;
+    /** Length of the checksum after the last sequence */
+    private static final int CHECKSUM_LENGTH = 4;
+
+    /**
+     * Get the codec ID of LZ compressed files.
+     *
+     * @return Codec ID
+     */
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    /**
+     * Compress a block.
+     *
+     * @param data The block
+     * @return The compressed block
+     */
+    @Override
+    public byte[] compress(byte[] data) {
+        int length = data.length;
+        byte[] out =
+            new byte[length + length / 255 + 16 + CHECKSUM_LENGTH];
+        // Position + 1 of the last place each hashed value was seen
+        int[] table = new int[1 << HASH_BITS];
+        int op = 0;
+        int anchor = 0;
+        int i = 0;
+        while (i <= length - MIN_MATCH) {
+            int value = readInt(data, i);
+            int hash = (value * -1640531535) >>> (32 - HASH_BITS);
+            int ref = table[hash] - 1;
+            table[hash] = i + 1;
+            if (ref < 0 || i - ref > MAX_OFFSET
+                    || readInt(data, ref) != value) {
+                // Step faster through data that does not compress
+                i += 1 + ((i - anchor) >>> 6);
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while (i + matchLength < length
+                    && data[ref + matchLength] == data[i + matchLength]) {
+                matchLength++;
+            }
+            int literalLength = i - anchor;
+            int extra = matchLength - MIN_MATCH;
+            out[op++] = (byte) ((Math.min(literalLength, RUN_MASK) << 4)
+                                | Math.min(extra, RUN_MASK));
+            op = writeLength(literalLength, out, op);
+            System.arraycopy(data, anchor, out, op, literalLength);
+            op += literalLength;
+            out[op++] = (byte) (i - ref);
+            out[op++] = (byte) ((i - ref) >>> 8);
+            op = writeLength(extra, out, op);
+            i += matchLength;
+            anchor = i;
+        }
+        int literalLength = length - anchor;
+        out[op++] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+        op = writeLength(literalLength, out, op);
+        System.arraycopy(data, anchor, out, op, literalLength);
+        op += literalLength;
+        int checksum = checksum(data);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            out[op++] = (byte) (checksum >>> shift);
+        }
+        return Arrays.copyOf(out, op);
+    }
+
+    /**
+     * Decompress a block.
+     *
+     * @param data The compressed block
+     * @param out  Array to decompress into, exactly as long as the block
+     * @throws IOException If the data is not an LZ block of that length
+     */
+    @Override
+    public void decompress(byte[] data, byte[] out) throws IOException {
+        int end = data.length - CHECKSUM_LENGTH;
+        int ip = 0;
+        int op = 0;
+        while (true) {
+            if (ip >= end) {
+                throw new IOException("Compressed block is too short");
+            }
+            int token = data[ip++] & 0xFF;
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK) {
+                int b;
+                do {
+                    if (ip >= end) {
+                        throw new IOException("Compressed block is too short");
+                    }
+                    b = data[ip++] & 0xFF;
+                    literalLength += b;
+                } while (b == 255);
+            }
+            if (literalLength > end - ip
+                    || literalLength > out.length - op) {
+                throw new IOException("Damaged compressed block");
+            }
+            System.arraycopy(data, ip, out, op, literalLength);
+            ip += literalLength;
+            op += literalLength;
+            if (ip == end) {
+                break;
+            }
+            if (ip + 2 > end) {
+                throw new IOException("Compressed block is too short");
+            }
+            int offset = (data[ip] & 0xFF) | (data[ip + 1] & 0xFF) << 8;
+            ip += 2;
+            int matchLength = (token & RUN_MASK);
+            if (matchLength == RUN_MASK) {
+                int b;
+                do {
+                    if (ip >= end) {
+                        throw new IOException("Compressed block is too short");
+                    }
+                    b = data[ip++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            if (offset == 0 || offset > op
+                    || matchLength > out.length - op) {
+                throw new IOException("Damaged compressed block");
+            }
+            // Byte by byte, since a match may overlap the bytes it makes
+            for (int k = 0; k < matchLength; k++, op++) {
+                out[op] = out[op - offset];
+            }
+        }
+        if (op != out.length) {
+            throw new IOException("Compressed block is too short");
+        }
+        int checksum = 0;
+        for (int i = end; i < data.length; i++) {
+            checksum = checksum << 8 | (data[i] & 0xFF);
+        }
+        if (checksum != checksum(out)) {
+            throw new IOException("Damaged compressed block");
+        }
+    }
+
+    /**
+     * Calculate the checksum stored after a block's sequences.
+     *
+     * @param block The decompressed block
+     * @return CRC-32C of the block
+     */
+    private static int checksum(byte[] block) {
+        CRC32C crc = new CRC32C();
+        crc.update(block, 0, block.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Write the continuation bytes of a length that does not fit in its
+     * token nibble.
+     *
+     * @param length The length
+     * @param out    The array to write to
+     * @param op     Position to write at
+     * @return Position after the bytes written
+     */
+    private static int writeLength(int length, byte[] out, int op) {
+        if (length < RUN_MASK) {
+            return op;
+        }
+        length -= RUN_MASK;
+        while (length >= 255) {
+            out[op++] = (byte) 255;
+            length -= 255;
+        }
+        out[op++] = (byte) length;
+        return op;
+    }
+
+    /**
+     * Read four bytes as a little-endian int.
+     *
+     * @param data The array
+     * @param i    Position of the first byte
+     * @return The value
+     */
+    private static int readInt(byte[] data, int i) {
+        return (data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8
+               | (data[i + 2] & 0xFF) << 16 | (data[i + 3] & 0xFF) << 24;
+    }
+}
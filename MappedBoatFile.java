@@ -0,0 +1,728 @@
+package assignment1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The boat records of a binary database file, mapped into memory and
+ * decoded into Boat objects only when they are used. Each record is
+ * decoded at most once; the Boat it produces is kept and returned for
+ * every later use, so edits made through it are never lost and the
+ * record is not read again. Records that were never decoded are read
+ * straight from the mapping, which the operating system pages in and
+ * out of its file cache as needed.
+ * <p>
+ * Records are numbered from 0 in file order, which groups them by owner
+ * in owner table order. The mapping is read-only; changes reach the file
+ * when the database is saved.
+ * <p>
+ * The records of a compressed file are mapped in their compressed
+ * blocks, and a block is decompressed the first time one of its records
+ * is read. Decompressed blocks are held through soft references, so the
+ * garbage collector can drop blocks that are not in use and they are
+ * decompressed again when needed. A scan decompresses the blocks of its
+ * run in parallel before reading them.
+ */
+public class MappedBoatFile {
+    /** Records per mapped buffer, a power of two kept well below 2 GB */
+    private static final int BUFFER_SHIFT = 22;
+    /** Largest number of compressed bytes mapped in one buffer */
+    private static final int MAX_COMPRESSED_BUFFER = 1 << 30;
+    /** Blocks decompressed in parallel at a time by a scan */
+    private static final int PREFETCH_BLOCKS = 64;
+    /** Decoded boats are kept in blocks of this many records */
+    private static final int CACHE_SHIFT = 12;
+    /** Mask giving the record number within its cache block */
+    private static final int CACHE_MASK = (1 << CACHE_SHIFT) - 1;
+    /** Offset of the height within a record */
+    private static final int HEIGHT = 1;
+    /** Offset of the length within a record */
+    private static final int LENGTH = 9;
+    /** Offset of the width within a record */
+    private static final int WIDTH = 17;
+    /** Offset of the value within a record */
+    private static final int VALUE = 25;
+    /** Offset of the mast height within a record */
+    private static final int MAST_HEIGHT = 33;
+    /** Offset of the sail area within a record */
+    private static final int SAIL_AREA = 41;
+    /** Offset of the horse power within a record */
+    private static final int HORSE_POWER = 49;
+
+    /** Records per buffer or block is 1 << recordShift */
+    private final int recordShift;
+    /** Mask giving the record number within its buffer or block */
+    private final int recordMask;
+    /** Mapped records, or null if compressed */
+    private final ByteBuffer[] buffers;
+    /** Codec of the compressed blocks, or null if not compressed */
+    private final BlockCodec codec;
+    /** Mapped compressed blocks, several blocks per buffer */
+    private final ByteBuffer[] compressed;
+    /** Buffer in compressed holding each block */
+    private final int[] blockBuffers;
+    /** Position of each block within its compressed buffer */
+    private final int[] blockPositions;
+    /** Compressed length of each block */
+    private final int[] blockLengths;
+    /** Decompressed blocks, held softly */
+    private final AtomicReferenceArray<SoftReference<ByteBuffer>> blocks;
+    /** Number of records */
+    private final int size;
+    /** Owners of the records, in owner table order */
+    private final Owner[] owners;
+    /** First record of each owner, followed by the number of records */
+    private final int[] firstRecords;
+    /** Boats decoded so far, in blocks allocated on first use */
+    private final Boat[][] decoded;
+    /** Storage told about each boat as it is decoded */
+    private BoatStorage storage;
+
+    /**
+     * What a storage needs to know about the records of a run of owners,
+     * gathered by scan without decoding them.
+     */
+    public static class Scan {
+        /** First owner of the run */
+        final int fromOwner;
+        /** Owner after the last one of the run */
+        final int toOwner;
+        /** Sail boat records of the run, in file order */
+        final int[] sailRecords;
+        /** Motor boat records of the run, in file order */
+        final int[] motorRecords;
+        /** Whether the first record of the run is a sail boat */
+        final boolean sailFirst;
+        /** Sum of the volumes of the run's boats */
+        final CompensatedSum volume;
+        /** Sum of the values of the run's boats */
+        final CompensatedSum boatValue;
+
+        /**
+         * Constructs the result of a scan.
+         *
+         * @param fromOwner    First owner of the run
+         * @param toOwner      Owner after the last one of the run
+         * @param sailRecords  Sail boat records of the run
+         * @param motorRecords Motor boat records of the run
+         * @param sailFirst    Whether the first record is a sail boat
+         * @param volume       Sum of the volumes of the boats
+         * @param boatValue    Sum of the values of the boats
+         */
+        Scan(int fromOwner, int toOwner, int[] sailRecords,
+             int[] motorRecords, boolean sailFirst, CompensatedSum volume,
+             CompensatedSum boatValue) {
+            this.fromOwner = fromOwner;
+            this.toOwner = toOwner;
+            this.sailRecords = sailRecords;
+            this.motorRecords = motorRecords;
+            this.sailFirst = sailFirst;
+            this.volume = volume;
+            this.boatValue = boatValue;
+        }
+    }
+
+    /**
+     * Maps the boat records of a database file and gives every owner its
+     * list of boats over its records. The owners, whose volumes the
+     * owner table holds, then need no scan to be listed with their boat
+     * counts and storage charges. The channel may be closed once this
+     * returns; the mapping stays valid.
+     *
+     * @param channel      Channel of the database file
+     * @param offset       Position of the first boat record in the file
+     * @param owners       Owners in owner table order
+     * @param firstRecords First record of each owner, followed by the
+     *                     total number of records
+     * @param codec        Codec the records are compressed with, or null
+     * @param blockRecords Records per compressed block, a power of two
+     * @throws IOException If the records cannot be mapped, or the file
+     *                     ends before the last compressed block
+     */
+    MappedBoatFile(FileChannel channel, long offset, Owner[] owners,
+                   int[] firstRecords, BlockCodec codec, int blockRecords)
+            throws IOException {
+        this.owners = owners;
+        this.firstRecords = firstRecords;
+        this.codec = codec;
+        size = firstRecords[owners.length];
+        recordShift = codec == null ? BUFFER_SHIFT
+                      : Integer.numberOfTrailingZeros(blockRecords);
+        recordMask = (1 << recordShift) - 1;
+        int count = (int) (((long) size + recordMask) >>> recordShift);
+        if (codec == null) {
+            buffers = map(channel, offset, count);
+            compressed = null;
+            blockBuffers = null;
+            blockPositions = null;
+            blockLengths = null;
+            blocks = null;
+        } else {
+            buffers = null;
+            blockBuffers = new int[count];
+            blockPositions = new int[count];
+            blockLengths = new int[count];
+            compressed = mapBlocks(channel, offset, count);
+            blocks = new AtomicReferenceArray<>(count);
+        }
+        decoded = new Boat[(size + CACHE_MASK) >>> CACHE_SHIFT][];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i].setBoats(new MappedBoatList(
+                this, firstRecords[i], getRecordCount(i)
+            ));
+        }
+    }
+
+    /**
+     * Map uncompressed records, 1 << BUFFER_SHIFT records per buffer.
+     *
+     * @param channel Channel of the database file
+     * @param offset  Position of the first record in the file
+     * @param count   Number of buffers
+     * @return The mapped buffers
+     * @throws IOException If the records cannot be mapped
+     */
+    private ByteBuffer[] map(FileChannel channel, long offset, int count)
+            throws IOException {
+        ByteBuffer[] mapped = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long first = (long) i << BUFFER_SHIFT;
+            long records = Math.min(size - first, 1L << BUFFER_SHIFT);
+            mapped[i] = channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                offset + first * BoatDatabaseFile.BOAT_RECORD_SIZE,
+                records * BoatDatabaseFile.BOAT_RECORD_SIZE
+            );
+        }
+        return mapped;
+    }
+
+    /**
+     * Find the compressed blocks by following their length prefixes,
+     * and map them in buffers of whole blocks.
+     *
+     * @param channel Channel of the database file
+     * @param offset  Position of the first block in the file
+     * @param count   Number of blocks
+     * @return The mapped buffers
+     * @throws IOException If the blocks cannot be mapped, or the file
+     *                     ends before the last block
+     */
+    private ByteBuffer[] mapBlocks(FileChannel channel, long offset,
+                                   int count) throws IOException {
+        int maxLength = BoatDatabaseFile.maxCompressedLength(
+            BoatDatabaseFile.BOAT_RECORD_SIZE << recordShift
+        );
+        long fileSize = channel.size();
+        ByteBuffer prefix = ByteBuffer.allocate(Integer.BYTES);
+        List<ByteBuffer> mapped = new ArrayList<>();
+        long start = offset;
+        long position = offset;
+        for (int i = 0; i < count; i++) {
+            prefix.clear();
+            while (prefix.hasRemaining()) {
+                if (channel.read(prefix, position + prefix.position()) < 0) {
+                    throw new IOException("Database file is incomplete");
+                }
+            }
+            int length = prefix.getInt(0);
+            if (length <= 0 || length > maxLength) {
+                throw new IOException("Corrupt compressed block");
+            }
+            long end = position + Integer.BYTES + length;
+            if (end > fileSize) {
+                throw new IOException("Database file is incomplete");
+            }
+            if (end - start > MAX_COMPRESSED_BUFFER) {
+                mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                       position - start));
+                start = position;
+            }
+            blockBuffers[i] = mapped.size();
+            blockPositions[i] = (int) (position + Integer.BYTES - start);
+            blockLengths[i] = length;
+            position = end;
+        }
+        if (position > start) {
+            mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                   position - start));
+        }
+        return mapped.toArray(new ByteBuffer[0]);
+    }
+
+    /**
+     * Get the number of records.
+     *
+     * @return Number of boats in the file
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of owners in the owner table.
+     *
+     * @return Number of owners
+     */
+    int getOwnerCount() {
+        return owners.length;
+    }
+
+    /**
+     * Get an owner from the owner table.
+     *
+     * @param index Position of the owner in the owner table
+     * @return The owner
+     */
+    Owner getOwner(int index) {
+        return owners[index];
+    }
+
+    /**
+     * Get the first record of an owner's boats.
+     *
+     * @param index Position of the owner in the owner table
+     * @return Record number of the owner's first boat
+     */
+    int getFirstRecord(int index) {
+        return firstRecords[index];
+    }
+
+    /**
+     * Get the number of boats an owner has in the file.
+     *
+     * @param index Position of the owner in the owner table
+     * @return Number of records of the owner
+     */
+    int getRecordCount(int index) {
+        return firstRecords[index + 1] - firstRecords[index];
+    }
+
+    /**
+     * Scan the records of a run of owners without decoding them. Records
+     * are read as they are in the file, never through boats decoded from
+     * them, which lets the scan run on a background thread even while the
+     * owners are shown and their boats decoded.
+     *
+     * @param fromOwner First owner of the run
+     * @param toOwner   Owner after the last one of the run
+     * @return Record numbers by type and totals of the run
+     * @throws IOException If a record has an unknown type
+     */
+    Scan scan(int fromOwner, int toOwner) throws IOException {
+        if (codec != null && firstRecords[fromOwner] < firstRecords[toOwner]) {
+            prefetch(firstRecords[fromOwner] >>> recordShift,
+                     (firstRecords[toOwner] - 1) >>> recordShift);
+        }
+        int[] sailRecords = new int[16];
+        int[] motorRecords = new int[16];
+        int sailCount = 0;
+        int motorCount = 0;
+        CompensatedSum volumes = new CompensatedSum();
+        CompensatedSum values = new CompensatedSum();
+        for (int i = fromOwner; i < toOwner; i++) {
+            for (int record = firstRecords[i];
+                    record < firstRecords[i + 1]; record++) {
+                ByteBuffer buffer = buffer(record);
+                int position = position(record);
+                byte type = buffer.get(position);
+                if (type == BoatDatabaseFile.SAIL_BOAT_RECORD) {
+                    if (sailCount == sailRecords.length) {
+                        sailRecords =
+                            Arrays.copyOf(sailRecords, sailCount * 2);
+                    }
+                    sailRecords[sailCount++] = record;
+                } else if (type == BoatDatabaseFile.MOTOR_BOAT_RECORD) {
+                    if (motorCount == motorRecords.length) {
+                        motorRecords =
+                            Arrays.copyOf(motorRecords, motorCount * 2);
+                    }
+                    motorRecords[motorCount++] = record;
+                } else {
+                    throw new IOException("Unknown boat record type " + type);
+                }
+                double volume = buffer.getDouble(position + HEIGHT)
+                                * buffer.getDouble(position + LENGTH)
+                                * buffer.getDouble(position + WIDTH);
+                volumes.add(volume);
+                values.add(buffer.getDouble(position + VALUE));
+            }
+        }
+        int first = firstRecords[fromOwner];
+        boolean sailFirst = first < firstRecords[toOwner]
+            && getType(first) == BoatDatabaseFile.SAIL_BOAT_RECORD;
+        return new Scan(fromOwner, toOwner,
+                        Arrays.copyOf(sailRecords, sailCount),
+                        Arrays.copyOf(motorRecords, motorCount),
+                        sailFirst, volumes, values);
+    }
+
+    /**
+     * Set the storage that is told about each boat as it is decoded.
+     *
+     * @param storage The storage holding these records
+     */
+    void setStorage(BoatStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Get the boat of a record, decoding it the first time.
+     *
+     * @param record The record number
+     * @return The boat of the record
+     */
+    Boat get(int record) {
+        Boat[] block = decoded[record >>> CACHE_SHIFT];
+        if (block == null) {
+            block = new Boat[1 << CACHE_SHIFT];
+            decoded[record >>> CACHE_SHIFT] = block;
+        }
+        Boat boat = block[record & CACHE_MASK];
+        if (boat == null) {
+            boat = decode(record);
+            block[record & CACHE_MASK] = boat;
+            if (storage != null) {
+                int owner = ownerIndexOf(record);
+                storage.boatDecoded(boat, owners[owner],
+                                    record - firstRecords[owner]);
+            }
+        }
+        return boat;
+    }
+
+    /**
+     * Get the boat of a record if it has been decoded.
+     *
+     * @param record The record number
+     * @return The decoded boat, or null if the record has not been used
+     */
+    Boat getDecoded(int record) {
+        Boat[] block = decoded[record >>> CACHE_SHIFT];
+        return block == null ? null : block[record & CACHE_MASK];
+    }
+
+    /**
+     * Copy the table of boats decoded so far. Boats decoded later are
+     * not added to the copy, which a snapshot uses to tell the boats
+     * that existed when it was taken from records it can copy as they
+     * are.
+     *
+     * @return Copy of the decoded boats, read with getDecoded(Boat[][],
+     *         int)
+     */
+    Boat[][] copyDecoded() {
+        Boat[][] copy = decoded.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] != null) {
+                copy[i] = copy[i].clone();
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Get the boat of a record from a copy of the decoded boats.
+     *
+     * @param copy   A copy made by copyDecoded
+     * @param record The record number
+     * @return The decoded boat, or null if the record had not been used
+     *         when the copy was made
+     */
+    static Boat getDecoded(Boat[][] copy, int record) {
+        Boat[] block = copy[record >>> CACHE_SHIFT];
+        return block == null ? null : block[record & CACHE_MASK];
+    }
+
+    /**
+     * Copy a record as it is in the file, whether or not it has been
+     * decoded.
+     *
+     * @param record The record number
+     * @param bytes  Array of BoatDatabaseFile.BOAT_RECORD_SIZE bytes to
+     *               copy the record into
+     */
+    void copyRecord(int record, byte[] bytes) {
+        ByteBuffer view = buffer(record).duplicate();
+        view.position(position(record));
+        view.get(bytes);
+    }
+
+    /**
+     * Get the record type of a record.
+     *
+     * @param record The record number
+     * @return BoatDatabaseFile.SAIL_BOAT_RECORD or MOTOR_BOAT_RECORD
+     */
+    byte getType(int record) {
+        return buffer(record).get(position(record));
+    }
+
+    /**
+     * Get the volume of a record's boat, as Boat.volume would.
+     *
+     * @param record The record number
+     * @return Current volume of the boat
+     */
+    double volume(int record) {
+        Boat boat = getDecoded(record);
+        if (boat != null) {
+            return boat.volume();
+        }
+        ByteBuffer buffer = buffer(record);
+        int position = position(record);
+        return buffer.getDouble(position + HEIGHT)
+               * buffer.getDouble(position + LENGTH)
+               * buffer.getDouble(position + WIDTH);
+    }
+
+    /**
+     * Get the value of a record's boat.
+     *
+     * @param record The record number
+     * @return Current value of the boat
+     */
+    double boatValue(int record) {
+        Boat boat = getDecoded(record);
+        if (boat != null) {
+            return boat.getBoatValue();
+        }
+        return buffer(record).getDouble(position(record) + VALUE);
+    }
+
+    /**
+     * Get the type specific charge of a record's boat at current rates,
+     * as Boat.typeCharge would.
+     *
+     * @param record The record number
+     * @return Current type specific charge of the boat
+     */
+    double typeCharge(int record) {
+        Boat boat = getDecoded(record);
+        if (boat != null) {
+            return boat.typeCharge();
+        }
+        ByteBuffer buffer = buffer(record);
+        int position = position(record);
+        if (buffer.get(position) == BoatDatabaseFile.SAIL_BOAT_RECORD) {
+            return buffer.getDouble(position + SAIL_AREA)
+                   * SailBoat.getSailRate();
+        }
+        return buffer.getInt(position + HORSE_POWER)
+               * MotorBoat.getFireRate();
+    }
+
+    /**
+     * Add the charges of a record's boat to a summary, with the same
+     * arithmetic as the Boat charge methods. Decoded boats are added
+     * through their objects, which hold any edits.
+     *
+     * @param record The record number
+     * @param acc    The accumulator to add to
+     */
+    void addTo(int record, ChargeSummary.Accumulator acc) {
+        Boat boat = getDecoded(record);
+        if (boat != null) {
+            acc.add(boat);
+            return;
+        }
+        ByteBuffer buffer = buffer(record);
+        int position = position(record);
+        double storageCharge = buffer.getDouble(position + HEIGHT)
+                               * buffer.getDouble(position + LENGTH)
+                               * buffer.getDouble(position + WIDTH)
+                               * Boat.getChargeRate();
+        double insuranceLevy = buffer.getDouble(position + VALUE)
+                               * Boat.getLevyRate();
+        if (buffer.get(position) == BoatDatabaseFile.SAIL_BOAT_RECORD) {
+            acc.addSailBoat(storageCharge, insuranceLevy,
+                            buffer.getDouble(position + SAIL_AREA)
+                            * SailBoat.getSailRate());
+        } else {
+            acc.addMotorBoat(storageCharge, insuranceLevy,
+                             buffer.getInt(position + HORSE_POWER)
+                             * MotorBoat.getFireRate());
+        }
+    }
+
+    /**
+     * Get the charges of a record's boat as it is in the file, whether or
+     * not it has been decoded, with the same arithmetic as the Boat charge
+     * methods. May be called on any thread.
+     *
+     * @param record  The record number
+     * @param charges Array filled with the storage charge, insurance
+     *                levy and type specific charge, in that order
+     * @return true for a sail boat, false for a motor boat
+     */
+    boolean getRecordCharges(int record, double[] charges) {
+        ByteBuffer buffer = buffer(record);
+        int position = position(record);
+        charges[0] = buffer.getDouble(position + HEIGHT)
+                     * buffer.getDouble(position + LENGTH)
+                     * buffer.getDouble(position + WIDTH)
+                     * Boat.getChargeRate();
+        charges[1] = buffer.getDouble(position + VALUE) * Boat.getLevyRate();
+        if (buffer.get(position) == BoatDatabaseFile.SAIL_BOAT_RECORD) {
+            charges[2] = buffer.getDouble(position + SAIL_AREA)
+                         * SailBoat.getSailRate();
+            return true;
+        }
+        charges[2] = buffer.getInt(position + HORSE_POWER)
+                     * MotorBoat.getFireRate();
+        return false;
+    }
+
+    /**
+     * Decode a record into a new Boat.
+     *
+     * @param record The record number
+     * @return The boat
+     */
+    private Boat decode(int record) {
+        ByteBuffer buffer = buffer(record);
+        int position = position(record);
+        double height = buffer.getDouble(position + HEIGHT);
+        double length = buffer.getDouble(position + LENGTH);
+        double width = buffer.getDouble(position + WIDTH);
+        double value = buffer.getDouble(position + VALUE);
+        if (buffer.get(position) == BoatDatabaseFile.SAIL_BOAT_RECORD) {
+            return new SailBoat(height, length, width, value,
+                                buffer.getDouble(position + MAST_HEIGHT),
+                                buffer.getDouble(position + SAIL_AREA));
+        }
+        return new MotorBoat(height, length, width, value,
+                             buffer.getInt(position + HORSE_POWER));
+    }
+
+    /**
+     * Find the owner of a record.
+     *
+     * @param record The record number
+     * @return Position of the owner whose boats include the record
+     */
+    private int ownerIndexOf(int record) {
+        // Last owner starting at or before the record; owners without
+        // boats start where the next owner does and are passed over
+        int low = 0;
+        int high = owners.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstRecords[mid] <= record) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Get the buffer holding a record, decompressing its block if it is
+     * not held.
+     *
+     * @param record The record number
+     * @return The mapped buffer or decompressed block
+     * @throws UncheckedIOException If the block cannot be decompressed
+     */
+    private ByteBuffer buffer(int record) {
+        int index = record >>> recordShift;
+        if (codec == null) {
+            return buffers[index];
+        }
+        SoftReference<ByteBuffer> held = blocks.get(index);
+        ByteBuffer block = held == null ? null : held.get();
+        if (block == null) {
+            try {
+                block = ByteBuffer.wrap(decompress(
+                    new byte[][] {readBlock(index)}, new int[] {index}
+                )[0]);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            blocks.set(index, new SoftReference<>(block));
+        }
+        return block;
+    }
+
+    /**
+     * Decompress in parallel the blocks in a range that are not held.
+     *
+     * @param fromBlock First block (inclusive)
+     * @param toBlock   Last block (inclusive)
+     * @throws IOException If a block cannot be decompressed
+     */
+    private void prefetch(int fromBlock, int toBlock) throws IOException {
+        int[] missing = new int[PREFETCH_BLOCKS];
+        int count = 0;
+        for (int i = fromBlock; i <= toBlock; i++) {
+            SoftReference<ByteBuffer> held = blocks.get(i);
+            if (held == null || held.get() == null) {
+                missing[count++] = i;
+            }
+            if (count == missing.length || i == toBlock && count > 0) {
+                int[] indexes = Arrays.copyOf(missing, count);
+                byte[][] data = new byte[count][];
+                for (int j = 0; j < count; j++) {
+                    data[j] = readBlock(indexes[j]);
+                }
+                byte[][] out = decompress(data, indexes);
+                for (int j = 0; j < count; j++) {
+                    blocks.set(missing[j],
+                               new SoftReference<>(ByteBuffer.wrap(out[j])));
+                }
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Decompress blocks in parallel.
+     *
+     * @param data    The compressed blocks
+     * @param indexes Block number of each block
+     * @return The decompressed blocks
+     * @throws IOException If a block cannot be decompressed
+     */
+    private byte[][] decompress(byte[][] data, int[] indexes)
+            throws IOException {
+        int[] lengths = new int[data.length];
+        for (int i = 0; i < data.length; i++) {
+            long first = (long) indexes[i] << recordShift;
+            lengths[i] = (int) Math.min(size - first, 1L << recordShift)
+                         * BoatDatabaseFile.BOAT_RECORD_SIZE;
+        }
+        return codec.decompressAll(data, lengths);
+    }
+
+    /**
+     * Copy a compressed block out of its mapped buffer.
+     *
+     * @param index The block number
+     * @return The compressed bytes
+     */
+    private byte[] readBlock(int index) {
+        ByteBuffer view = compressed[blockBuffers[index]].duplicate();
+        view.position(blockPositions[index]);
+        byte[] data = new byte[blockLengths[index]];
+        view.get(data);
+        return data;
+    }
+
+    /**
+     * Get the position of a record within its buffer or block.
+     *
+     * @param record The record number
+     * @return Byte position of the record
+     */
+    private int position(int record) {
+        return (record & recordMask) * BoatDatabaseFile.BOAT_RECORD_SIZE;
+    }
+}
@@ -0,0 +1,166 @@
+package assignment1;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * List of boats made of a run of records in a MappedBoatFile followed by
+ * any boats added since the file was opened. Records are decoded only
+ * when their element is read. Boats can be appended but not removed,
+ * like the boat lists kept by Owner and BoatStorage.
+ */
+public class MappedBoatList extends AbstractList<Boat>
+        implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 1L;
+    /** The mapped records */
+    private final transient MappedBoatFile records;
+    /** First record of the list */
+    private final int firstRecord;
+    /** Number of records in the list */
+    private final int recordCount;
+    /** Boats added after the records */
+    private final ArrayList<Boat> added = new ArrayList<>();
+
+    /**
+     * Constructs a list over a run of records.
+     *
+     * @param records     The mapped records
+     * @param firstRecord First record of the list
+     * @param recordCount Number of records in the list
+     */
+    MappedBoatList(MappedBoatFile records, int firstRecord,
+                   int recordCount) {
+        this.records = records;
+        this.firstRecord = firstRecord;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Get a boat, decoding its record the first time.
+     *
+     * @param index Position of the boat in the list
+     * @return The boat
+     */
+    @Override
+    public Boat get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(
+                "Index: " + index + ", Size: " + size()
+            );
+        }
+        if (index < recordCount) {
+            return records.get(firstRecord + index);
+        }
+        return added.get(index - recordCount);
+    }
+
+    /**
+     * Get the number of boats.
+     *
+     * @return Number of boats in the list
+     */
+    @Override
+    public int size() {
+        return recordCount + added.size();
+    }
+
+    /**
+     * Append a boat to the list.
+     *
+     * @param boat The boat to add
+     * @return true
+     */
+    @Override
+    public boolean add(Boat boat) {
+        added.add(boat);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Find a boat in the list by identity. A boat read from the list has
+     * been decoded, so records that were never decoded are skipped
+     * without decoding them.
+     *
+     * @param o The boat to find
+     * @return Position of the boat, or -1 if it is not in the list
+     */
+    @Override
+    public int indexOf(Object o) {
+        for (int i = 0; i < recordCount; i++) {
+            if (records.getDecoded(firstRecord + i) == o) {
+                return i;
+            }
+        }
+        int index = added.indexOf(o);
+        return index < 0 ? -1 : recordCount + index;
+    }
+
+    /**
+     * Get the mapped records the list starts with.
+     *
+     * @return The mapped file
+     */
+    MappedBoatFile getRecords() {
+        return records;
+    }
+
+    /**
+     * Get the first record of the list.
+     *
+     * @return Record number of the first boat
+     */
+    int getFirstRecord() {
+        return firstRecord;
+    }
+
+    /**
+     * Get the number of records the list starts with.
+     *
+     * @return Number of boats held in the mapped file
+     */
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Copy the boats added after the records.
+     *
+     * @return The added boats, in the order they were added
+     */
+    Boat[] copyAdded() {
+        return added.toArray(new Boat[0]);
+    }
+
+    /**
+     * Summarise the charges of the boats in [from, to) without decoding
+     * the records that have not been used.
+     *
+     * @param from First index (inclusive)
+     * @param to   Last index (exclusive)
+     * @return Accumulated charges and counts of the boats
+     */
+    ChargeSummary.Accumulator summarize(int from, int to) {
+        ChargeSummary.Accumulator acc = new ChargeSummary.Accumulator();
+        for (int i = from; i < to; i++) {
+            if (i < recordCount) {
+                records.addTo(firstRecord + i, acc);
+            } else {
+                acc.add(added.get(i - recordCount));
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Serialize the list as a plain ArrayList holding every boat, since
+     * the mapping itself cannot be serialized.
+     *
+     * @return An ArrayList with the same boats
+     */
+    private Object writeReplace() {
+        return new ArrayList<>(this);
+    }
+}
@@ -0,0 +1,117 @@
+package assignment1;
+
+import java.util.Locale;
+
+/**
+ * Formats amounts of money with two decimals and a decimal point, giving
+ * the same text as String.format with "%.2f" in the root locale, without
+ * parsing a format string or creating a Formatter for each amount.
+ * <p>
+ * An amount is rounded half up from its shortest decimal form, as
+ * Formatter rounds it: 1.005, whose double is a little below 1.005, is
+ * written as 1.01. Amounts of a trillion or more, infinities and NaN are
+ * left to Formatter. Digits are written into a character buffer; each
+ * thread reuses its own buffer, so formatting to a String allocates only
+ * the String.
+ */
+public class MoneyFormat {
+    /** Amounts below this are formatted without Formatter */
+    private static final double FAST_LIMIT = 1e12;
+    /** Longest text of an amount below FAST_LIMIT, with a dollar sign */
+    private static final int MAX_LENGTH = 24;
+    /** Buffer of each thread formatting to a String */
+    private static final ThreadLocal<char[]> BUFFERS =
+        ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
+
+    /**
+     * Not constructed; the methods are static.
+     */
+    private MoneyFormat() {
+    }
+
+    /**
+     * Format an amount with two decimals.
+     *
+     * @param amount The amount
+     * @return The amount, such as "1234.50" or "-0.25"
+     */
+    public static String format(double amount) {
+        if (!isFast(amount)) {
+            return String.format(Locale.ROOT, "%.2f", amount);
+        }
+        char[] buffer = BUFFERS.get();
+        return new String(buffer, 0, format(amount, buffer, 0));
+    }
+
+    /**
+     * Format an amount with a dollar sign and two decimals.
+     *
+     * @param amount The amount
+     * @return The amount, such as "$1234.50" or "$-0.25"
+     */
+    public static String formatDollars(double amount) {
+        if (!isFast(amount)) {
+            return String.format(Locale.ROOT, "$%.2f", amount);
+        }
+        char[] buffer = BUFFERS.get();
+        buffer[0] = '$';
+        return new String(buffer, 0, format(amount, buffer, 1));
+    }
+
+    /**
+     * Format an amount with two decimals into a buffer.
+     *
+     * @param amount The amount
+     * @param buffer The buffer, with room for the text of the amount; an
+     *               amount below a trillion needs at most 17 characters
+     * @param offset Where the text starts in the buffer
+     * @return The end of the text in the buffer
+     */
+    public static int format(double amount, char[] buffer, int offset) {
+        if (!isFast(amount)) {
+            String text = String.format(Locale.ROOT, "%.2f", amount);
+            text.getChars(0, text.length(), buffer, offset);
+            return offset + text.length();
+        }
+        // Negative amounts and -0.0 keep their sign, even as -0.00
+        boolean negative = Double.doubleToRawLongBits(amount) < 0;
+        double magnitude = Math.abs(amount);
+        long cents = (long) (magnitude * 100);
+        // The product may be rounded across the half cent, so the
+        // amount itself is compared with the double nearest the half
+        // cent. If they are equal the amount's shortest decimal form
+        // ends in that 5, which rounds up.
+        if (magnitude >= (cents + 0.5) / 100) {
+            cents++;
+        }
+        int end = offset;
+        if (negative) {
+            buffer[end++] = '-';
+        }
+        long whole = cents / 100;
+        int digits = 1;
+        for (long rest = whole / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        end += digits;
+        for (int i = end - 1; i >= end - digits; i--) {
+            buffer[i] = (char) ('0' + whole % 10);
+            whole /= 10;
+        }
+        int fraction = (int) (cents % 100);
+        buffer[end++] = '.';
+        buffer[end++] = (char) ('0' + fraction / 10);
+        buffer[end++] = (char) ('0' + fraction % 10);
+        return end;
+    }
+
+    /**
+     * Tell whether an amount is formatted without Formatter.
+     *
+     * @param amount The amount
+     * @return True for finite amounts below a trillion in size
+     */
+    private static boolean isFast(double amount) {
+        return Math.abs(amount) < FAST_LIMIT;
+    }
+}
@@ -6,6 +6,8 @@ package assignment1;
  *  and methods.
  */
 public class MotorBoat extends Boat {
+    /** Serial version matching databases saved by earlier versions */
+    private static final long serialVersionUID = -568551304963427659L;
     /** Horsepower of the motorboat */
     private int horsePower;
     /** Rate for fire levy charge */
@@ -49,7 +51,9 @@ public class MotorBoat extends Boat {
      * @param horsePower Horsepower of the motorboat
      */
     public void setHorsePower(int horsePower) {
+        beforeChange();
         this.horsePower = horsePower;
+        afterChange();
     }
 
     /**
@@ -68,28 +72,28 @@ public class MotorBoat extends Boat {
      */
     public static void setFireRate(double fireRate) {
         MotorBoat.fireRate = fireRate;
+        typeRatesChanged(MotorBoat.class);
     }
 
     /**
-     * Calculate fire levy charge (10% of horse power).
+     * Get the fire levy charge (10% of horse power).
      * 
      * @return Fire levy charge
      */
     public double fireLevyCharge() {
-        return horsePower * fireRate;
+        return typeCharge();
     }
 
     /**
      * Implementation of abstract method from Boat.
-     * Calculate total monthly charge.
+     * Calculate the fire levy charge, which the total monthly charge
+     * adds to the storage charge and insurance levy.
      * 
-     * @return Total monthly charge
+     * @return Fire levy charge
      */
     @Override
-    public double totalMonthlyCharge() {
-        /*Total charge includes storage charge, insurance charge,
-        and fire levy charge*/
-        return storageCharge() + insuranceLevy() + fireLevyCharge();
+    protected double calculateTypeCharge() {
+        return horsePower * fireRate;
     }
 
     /**
@@ -1,12 +1,18 @@
 package assignment1;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.text.CollationKey;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Owner class represents a boat owner with attributes for the
  *  owner's details and a list of boats owned by the owner
  */
 public class Owner implements Serializable{
+    /** Serial version matching databases saved by earlier versions */
+    private static final long serialVersionUID = 7603264083989048601L;
     /** Unique identifier for the owner */
     private String idNumber;
     /** Name of the owner */
@@ -14,7 +20,15 @@ public class Owner implements Serializable{
     /** Address of the owner */
     private String address;
     /** List of boats owned by the owner */
-    private ArrayList<Boat> boats;
+    private List<Boat> boats;
+    /** Storage holding this owner, notified when the ID number changes */
+    private transient BoatStorage storage;
+    /** Position of this owner in the storage's original order */
+    private transient int position;
+    /** Total volume of this owner's boats, kept up to date by the storage */
+    private transient CompensatedSum boatVolume = new CompensatedSum();
+    /** Collation key of the name, used by the storage's name index */
+    private transient CollationKey nameKey;
 
     /**
      * No-argument constructor.
@@ -33,7 +47,7 @@ public class Owner implements Serializable{
      * @param boats    List of boats owned by the owner
      */
     public Owner(String idNumber, String name, String address,
-                 ArrayList<Boat> boats) {
+                 List<Boat> boats) {
         setIdNumber(idNumber);
         setName(name);
         setAddress(address);
@@ -55,7 +69,11 @@ public class Owner implements Serializable{
      * @param idNumber ID number of the owner
      */
     public void setIdNumber(String idNumber) {
+        String oldIdNumber = this.idNumber;
         this.idNumber = idNumber;
+        if (storage != null) {
+            storage.ownerIdChanged(this, oldIdNumber);
+        }
     }
 
     /**
@@ -73,7 +91,9 @@ public class Owner implements Serializable{
      * @param name Name of the owner
      */
     public void setName(String name) {
+        beforeChange();
         this.name = name;
+        afterChange();
     }
 
     /**
@@ -91,7 +111,9 @@ public class Owner implements Serializable{
      * @param address Address of the owner
      */
     public void setAddress(String address) {
+        beforeChange();
         this.address = address;
+        afterChange();
     }
 
     /**
@@ -99,7 +121,7 @@ public class Owner implements Serializable{
      * 
      * @param boats List of boats owned by the owner
      */
-    public void setBoats(ArrayList<Boat> boats) {
+    public void setBoats(List<Boat> boats) {
         this.boats = boats;
     }
 
@@ -108,7 +130,7 @@ public class Owner implements Serializable{
      * 
      * @return List of boats owned by the owner
      */
-    public ArrayList<Boat> getBoats() {
+    public List<Boat> getBoats() {
         return boats;
     }
 
@@ -121,6 +143,101 @@ public class Owner implements Serializable{
         boats.add(boat);
     }
 
+    /**
+     * Link this owner to the storage that holds it.
+     * 
+     * @param storage The storage holding this owner
+     */
+    void setStorage(BoatStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Get the storage that holds this owner.
+     * 
+     * @return The storage holding this owner, or null if none
+     */
+    BoatStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Let the storage take this owner out of its name index.
+     * Setters call this before changing a field.
+     */
+    private void beforeChange() {
+        if (storage != null) {
+            storage.ownerChanging(this);
+        }
+    }
+
+    /**
+     * Let the storage index this owner under its new details.
+     * Setters call this after changing a field.
+     */
+    private void afterChange() {
+        if (storage != null) {
+            storage.ownerChanged(this);
+        }
+    }
+
+    /**
+     * Get the position of this owner in the storage's original order.
+     * 
+     * @return Position of the owner
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Set the position of this owner in the storage's original order.
+     * 
+     * @param position Position of the owner
+     */
+    void setPosition(int position) {
+        this.position = position;
+    }
+
+    /**
+     * Get the total volume of this owner's boats as last recorded by
+     * the storage. Storage charges are proportional to it.
+     * 
+     * @return Total boat volume
+     */
+    double getBoatVolume() {
+        return boatVolume.value();
+    }
+
+    /**
+     * Get the collation key of the owner's name.
+     * 
+     * @return Collation key of the name
+     */
+    CollationKey getNameKey() {
+        return nameKey;
+    }
+
+    /**
+     * Set the collation key of the owner's name.
+     * 
+     * @param nameKey Collation key of the name
+     */
+    void setNameKey(CollationKey nameKey) {
+        this.nameKey = nameKey;
+    }
+
+    /**
+     * Adjust the recorded total volume of this owner's boats. The total
+     * is kept with compensated summation, so a boat that grows and
+     * shrinks back by a large amount leaves no residue behind.
+     * 
+     * @param change Volume to add (negative to remove)
+     */
+    void addBoatVolume(double change) {
+        boatVolume.add(change);
+    }
+
     /**
      * Calculate total charges for all boats owned by this owner.
      * 
@@ -135,16 +252,39 @@ public class Owner implements Serializable{
 
     /**
      * Calculate total storage charges for all boats owned by this owner.
+     * For an owner held in a storage this is the storage rate times the
+     * total boat volume the storage keeps for the owner, so no boat has
+     * to be read, or decoded from a database file, to list the owner.
+     * It may differ in the last place from adding up the storage charges
+     * of the boats one by one; the Owner Charges export totals each
+     * owner's storage charges the same way, so the two agree.
      * 
      * @return Total storage charges for all boats
      */
     public double totalStorageCharge() {
+        if (storage != null) {
+            return boatVolume.value() * Boat.getChargeRate();
+        }
         return boats.stream() // Create a stream from the boats list
                     // Map each boat to its storage charge
                     .mapToDouble(Boat::storageCharge) 
                     .sum(); // Sum all the storage charges
     }
 
+    /**
+     * Read the owner from a serialized stream and start its recorded
+     * boat volume, which is not saved, at zero.
+     * 
+     * @param in The stream to read from
+     * @throws IOException            If the stream cannot be read
+     * @throws ClassNotFoundException If a saved class cannot be found
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        boatVolume = new CompensatedSum();
+    }
+
     /**
      * Return a string representation of the owner.
      * 
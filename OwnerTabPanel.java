@@ -1,6 +1,8 @@
 package assignment1;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.util.ArrayList;
 
@@ -16,6 +18,75 @@ public class OwnerTabPanel extends JPanel {
     private JTable ownerTable;
     /** Reference to the main BoatStorage data */
     private BoatStorage boatStorage;
+    /** Field for searching owners by the start of their name */
+    private JTextField searchField;
+    /** Whether the table lists all owners in storage order */
+    private boolean inStorageOrder;
+    /** Whether a change may have left the table out of search or order */
+    private boolean stale;
+    /** Updates the rows of owners added or changed in the storage */
+    private final BoatStorageListener storageListener =
+        new BoatStorageListener() {
+            /**
+             * Appends owners added, or marks a searched or sorted table
+             * stale, since the new owners may belong anywhere in it.
+             * @param fromIndex position of the first owner added
+             * @param toIndex position after the last owner added
+             */
+            @Override
+            public void ownersAdded(int fromIndex, int toIndex) {
+                if (inStorageOrder
+                        && fromIndex == ownerTableModel.getRowCount()) {
+                    ArrayList<Owner> added = new ArrayList<>();
+                    for (int i = fromIndex; i < toIndex; i++) {
+                        added.add(boatStorage.getOwnerAt(i));
+                    }
+                    ownerTableModel.addOwners(added);
+                } else {
+                    stale = true;
+                }
+            }
+
+            /**
+             * Repaints the row of an owner whose details changed.
+             * @param owner the owner that changed
+             */
+            @Override
+            public void ownerChanged(Owner owner) {
+                ownerUpdated(owner);
+            }
+
+            /**
+             * Repaints the row of an owner whose boats were added to.
+             * @param owner the owner of the boats
+             * @param fromIndex position of the first boat added
+             * @param toIndex position after the last boat added
+             */
+            @Override
+            public void boatsAdded(Owner owner, int fromIndex, int toIndex) {
+                ownerUpdated(owner);
+            }
+
+            /**
+             * Repaints the row of an owner whose boat changed.
+             * @param owner the owner of the boat
+             * @param boat the boat that changed
+             * @param index the position of the boat in the owner's list
+             */
+            @Override
+            public void boatChanged(Owner owner, Boat boat, int index) {
+                ownerUpdated(owner);
+            }
+
+            /**
+             * Repaints every row after boats were added for many owners.
+             */
+            @Override
+            public void storageChanged() {
+                ownerTableModel.updateAll();
+                stale |= !inStorageOrder;
+            }
+        };
 
     /**
      * Constructs the owner tab panel with buttons and table.
@@ -32,12 +103,37 @@ public class OwnerTabPanel extends JPanel {
             Runnable showOwnerSortDialog
     ) {
         this.boatStorage = boatStorage;
+        boatStorage.addStorageListener(storageListener);
         setLayout(new BorderLayout());
 
         ownerTableModel = new OwnerTableModel(boatStorage.getOwners());
         ownerTable = new JTable(ownerTableModel);
         JScrollPane scrollPane = new JScrollPane(ownerTable);
 
+        // Search panel: filters the table as the user types a name
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchField = new JTextField(20);
+        searchField.getDocument().addDocumentListener(
+            new DocumentListener() {
+                @Override
+                public void insertUpdate(DocumentEvent e) {
+                    showOwners();
+                }
+
+                @Override
+                public void removeUpdate(DocumentEvent e) {
+                    showOwners();
+                }
+
+                @Override
+                public void changedUpdate(DocumentEvent e) {
+                    showOwners();
+                }
+            }
+        );
+        searchPanel.add(new JLabel("Search by name:"));
+        searchPanel.add(searchField);
+
         JPanel btnPanel = new JPanel();
         JButton addBtn = new JButton("Add Owner");
         JButton editBtn = new JButton("Edit Owner");
@@ -62,18 +158,49 @@ public class OwnerTabPanel extends JPanel {
         btnPanel.add(editBtn);
         btnPanel.add(sortBtn);
 
+        add(searchPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
         add(btnPanel, BorderLayout.SOUTH);
 
-        refreshTable();
+        showOwners();
     }
 
     /**
      * Refreshes the owner table with the latest data from boatStorage.
+     * Rows of owners added or changed are updated as the storage
+     * changes, so this does nothing unless a change may have left a
+     * searched or sorted table out of date; the table then lists the
+     * owners again as showOwners does.
      * Call this after any change to the owners or their boats.
      */
     public void refreshTable() {
-        ownerTableModel.setOwners(boatStorage.getOwners());
+        if (stale) {
+            showOwners();
+        }
+    }
+
+    /**
+     * Lists the owners from boatStorage in storage order. When a name is
+     * typed in the search field, only owners whose name starts with it
+     * are shown.
+     */
+    private void showOwners() {
+        String prefix = searchField.getText().trim();
+        ownerTableModel.setOwners(prefix.isEmpty()
+            ? boatStorage.getOwners()
+            : boatStorage.findOwnersByNamePrefix(prefix));
+        inStorageOrder = prefix.isEmpty();
+        stale = false;
+    }
+
+    /**
+     * Repaints the row of an owner that changed. A searched or sorted
+     * table is marked stale, since the owner may have moved in it.
+     * @param owner the owner that changed
+     */
+    private void ownerUpdated(Owner owner) {
+        ownerTableModel.updateOwner(owner);
+        stale |= !inStorageOrder;
     }
 
     /**
@@ -82,6 +209,8 @@ public class OwnerTabPanel extends JPanel {
      */
     public void setTableData(ArrayList<Owner> owners) {
         ownerTableModel.setOwners(owners);
+        inStorageOrder = false;
+        stale = false;
     }
 
     /**
@@ -106,8 +235,12 @@ public class OwnerTabPanel extends JPanel {
      * @param boatStorage the new BoatStorage to use
      */
     public void setBoatStorage(BoatStorage boatStorage) {
+        this.boatStorage.removeStorageListener(storageListener);
         this.boatStorage = boatStorage;
+        boatStorage.addStorageListener(storageListener);
         ownerTableModel = new OwnerTableModel(boatStorage.getOwners());
         ownerTable.setModel(ownerTableModel);
+        inStorageOrder = true;
+        stale = !searchField.getText().trim().isEmpty();
     }
 }
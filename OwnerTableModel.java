@@ -2,6 +2,7 @@ package assignment1;
 
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Table model for displaying a list of owners and their summary
@@ -65,9 +66,7 @@ public class OwnerTableModel extends AbstractTableModel {
             case 1: return o.getName();
             case 2: return o.getAddress();
             case 3: return o.getBoats().size();
-            case 4: return String.format(
-                "%.2f", o.totalStorageCharge()
-            );
+            case 4: return MoneyFormat.format(o.totalStorageCharge());
             default: return "";
         }
     }
@@ -90,4 +89,48 @@ public class OwnerTableModel extends AbstractTableModel {
         this.owners = owners;
         fireTableDataChanged();
     }
+
+    /**
+     * Appends owners to the end of the table.
+     * @param added the owners to append
+     */
+    public void addOwners(List<Owner> added) {
+        int firstRow = owners.size();
+        owners.addAll(added);
+        if (owners.size() > firstRow) {
+            fireTableRowsInserted(firstRow, owners.size() - 1);
+        }
+    }
+
+    /**
+     * Repaints the row of an owner whose details, boats or charges
+     * changed. An owner is looked for at its position in the storage
+     * first, where it is found at once when the table lists the owners
+     * in storage order.
+     * @param owner the owner that changed
+     */
+    public void updateOwner(Owner owner) {
+        int row = owner.getPosition();
+        if (row < 0 || row >= owners.size() || owners.get(row) != owner) {
+            row = -1;
+            for (int i = 0; i < owners.size(); i++) {
+                if (owners.get(i) == owner) {
+                    row = i;
+                    break;
+                }
+            }
+        }
+        if (row >= 0) {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * Repaints every row, after the charges of many owners changed.
+     */
+    public void updateAll() {
+        if (!owners.isEmpty()) {
+            fireTableRowsUpdated(0, owners.size() - 1);
+        }
+    }
 }
@@ -5,7 +5,8 @@ import javax.swing.table.AbstractTableModel;
 /**
  * Table model for displaying the count of sail boats, motor boats, and total boats.
  */
-public class ReportCountsTableModel extends AbstractTableModel {
+public class ReportCountsTableModel extends AbstractTableModel
+        implements ReportTableModel {
     /** Column names for the counts table */
     private final String[] columns = {"Boat Type", "Count"};
     /** Table data: boat type and count */
@@ -13,15 +14,13 @@ public class ReportCountsTableModel extends AbstractTableModel {
 
     /**
      * Constructs the counts table model.
-     * @param sail number of sail boats
-     * @param motor number of motor boats
-     * @param total total number of boats
+     * @param summary charge summary holding the boat counts
      */
-    public ReportCountsTableModel(int sail, int motor, int total) {
+    public ReportCountsTableModel(ChargeSummary summary) {
         data = new Object[][] {
-            {"Sail Boats", sail},
-            {"Motor Boats", motor},
-            {"TOTAL BOATS", total}
+            {"Sail Boats", summary.getSailBoatCount()},
+            {"Motor Boats", summary.getMotorBoatCount()},
+            {"TOTAL BOATS", summary.getTotalBoatCount()}
         };
     }
 
@@ -63,4 +62,25 @@ public class ReportCountsTableModel extends AbstractTableModel {
     public String getColumnName(int col) {
         return columns[col];
     }
+
+    /**
+     * Returns the group of a row; the rows of this report are not
+     * grouped.
+     * @param row the row index
+     * @return -1, for no group
+     */
+    @Override
+    public int getGroupIndex(int row) {
+        return -1;
+    }
+
+    /**
+     * Returns the kind of a row: the last row is the total.
+     * @param row the row index
+     * @return TOTAL for the last row, ITEM for the others
+     */
+    @Override
+    public RowKind getRowKind(int row) {
+        return row == data.length - 1 ? RowKind.TOTAL : RowKind.ITEM;
+    }
 }
@@ -1,89 +1,167 @@
 package assignment1;
 
 import javax.swing.table.AbstractTableModel;
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Table model for displaying all charges for each boat owned by a specific owner.
+ * The rows of each boat form a group, numbered from 0 in boat order.
+ * <p>
+ * Each boat has a row for its storage charge, one for its insurance
+ * levy, one for its sail drying or fire levy charge and one for its
+ * total, and the last row totals all the boats. The model holds only
+ * the boats and the first row of each; cells are formatted when the
+ * table asks for them, so opening the report for a large fleet costs
+ * only the rows shown.
  */
-public class ReportOwnerChargesTableModel extends AbstractTableModel {
+public class ReportOwnerChargesTableModel extends AbstractTableModel
+        implements ReportTableModel {
+    /** Rows of a boat with a type specific charge */
+    private static final int ROWS_PER_BOAT = 4;
     /** Column names for the owner charges table */
     private final String[] columns = {
         "Boat Details", "Charge Type", "Amount ($)"
     };
-    /** Table data: boat details, charge type, and amount */
-    private final ArrayList<Object[]> data;
+    /** The owner's boats, in the order they are listed */
+    private final Boat[] boats;
+    /** First row of each boat, followed by the row of the total */
+    private final int[] firstRows;
+    /** Total monthly charge of all the boats */
+    private final double totalCharge;
+    /** Row whose cells were last formatted */
+    private int cachedRow = -1;
+    /** Cells of the row last formatted */
+    private Object[] cachedCells;
 
     /**
      * Constructs the owner charges table model for a specific owner.
      * @param owner the owner whose boat charges are to be displayed
      */
     public ReportOwnerChargesTableModel(Owner owner) {
-        data = new ArrayList<>();
-        double totalCharge = 0.0;
-        int boatCount = 1;
-        for (Boat boat : owner.getBoats()) {
+        List<Boat> list = owner.getBoats();
+        boats = list.toArray(new Boat[list.size()]);
+        firstRows = new int[boats.length + 1];
+        double total = 0.0;
+        for (int i = 0; i < boats.length; i++) {
+            Boat boat = boats[i];
+            boolean typed = boat instanceof SailBoat
+                || boat instanceof MotorBoat;
+            firstRows[i + 1] = firstRows[i]
+                + (typed ? ROWS_PER_BOAT : ROWS_PER_BOAT - 1);
+            total += boat.totalMonthlyCharge();
+        }
+        totalCharge = total;
+    }
+
+    /**
+     * Finds the boat of a row. Every boat is normally a sail boat or a
+     * motor boat with four rows, so the boat is found by division; the
+     * first rows are searched only when a boat has fewer rows.
+     * @param row the row index, before the total row
+     * @return the position of the boat
+     */
+    private int boatIndex(int row) {
+        int guess = row / ROWS_PER_BOAT;
+        if (guess < boats.length && firstRows[guess] <= row
+                && row < firstRows[guess + 1]) {
+            return guess;
+        }
+        int low = 0;
+        int high = boats.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstRows[mid] <= row) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Formats the cells of a row.
+     * @param row the row index
+     * @return the boat details, charge type and amount of the row
+     */
+    private Object[] formatRow(int row) {
+        if (row == firstRows[boats.length]) {
+            return new Object[]{
+                "TOTAL",
+                "TOTAL MONTHLY CHARGE FOR ALL BOATS",
+                MoneyFormat.formatDollars(totalCharge)
+            };
+        }
+        int index = boatIndex(row);
+        Boat boat = boats[index];
+        int offset = row - firstRows[index];
+        if (offset == 0) {
             String boatType = (boat instanceof SailBoat)
                 ? "SailBoat" : "MotorBoat";
-            String boatAttributes = "";
-            if (boat instanceof SailBoat) {
-                SailBoat sb = (SailBoat) boat;
-                boatAttributes = String.format(
-                    "[height=%.1f, length=%.1f, width=%.1f, value=%.1f, " +
-                    "mastHeight=%.1f, sailArea=%.1f]",
-                    sb.getHeight(), sb.getLength(), sb.getWidth(),
-                    sb.getBoatValue(), sb.getMastHeight(),
-                    sb.getSailArea()
-                );
-            } else if (boat instanceof MotorBoat) {
-                MotorBoat mb = (MotorBoat) boat;
-                boatAttributes = String.format(
-                    "[height=%.1f, length=%.1f, width=%.1f, value=%.1f, " +
-                    "horsePower=%d]",
-                    mb.getHeight(), mb.getLength(), mb.getWidth(),
-                    mb.getBoatValue(), mb.getHorsePower()
-                );
-            }
-            data.add(new Object[]{
-                "Boat " + boatCount + ": " + boatType,
+            return new Object[]{
+                "Boat " + (index + 1) + ": " + boatType,
                 "Storage charge",
-                String.format("$%.2f", boat.storageCharge())
-            });
-            data.add(new Object[]{
-                boatAttributes,
+                MoneyFormat.formatDollars(boat.storageCharge())
+            };
+        }
+        if (offset == 1) {
+            return new Object[]{
+                attributes(boat),
                 "Insurance charge",
-                String.format("$%.2f", boat.insuranceLevy())
-            });
-            if (boat instanceof SailBoat) {
-                data.add(new Object[]{
-                    "",
-                    "Sail drying charge",
-                    String.format(
-                        "$%.2f", ((SailBoat) boat).sailDryingCharge()
-                    )
-                });
-            } else if (boat instanceof MotorBoat) {
-                data.add(new Object[]{
-                    "",
-                    "Fire levy charge",
-                    String.format(
-                        "$%.2f", ((MotorBoat) boat).fireLevyCharge()
-                    )
-                });
-            }
-            data.add(new Object[]{
+                MoneyFormat.formatDollars(boat.insuranceLevy())
+            };
+        }
+        if (row == firstRows[index + 1] - 1) {
+            return new Object[]{
                 "",
                 "Total monthly charge",
-                String.format("$%.2f", boat.totalMonthlyCharge())
-            });
-            totalCharge += boat.totalMonthlyCharge();
-            boatCount++;
+                MoneyFormat.formatDollars(boat.totalMonthlyCharge())
+            };
+        }
+        if (boat instanceof SailBoat) {
+            return new Object[]{
+                "",
+                "Sail drying charge",
+                MoneyFormat.formatDollars(
+                    ((SailBoat) boat).sailDryingCharge()
+                )
+            };
         }
-        data.add(new Object[]{
-            "TOTAL",
-            "TOTAL MONTHLY CHARGE FOR ALL BOATS",
-            String.format("$%.2f", totalCharge)
-        });
+        return new Object[]{
+            "",
+            "Fire levy charge",
+            MoneyFormat.formatDollars(
+                ((MotorBoat) boat).fireLevyCharge()
+            )
+        };
+    }
+
+    /**
+     * Formats the attributes of a boat shown under its name.
+     * @param boat the boat
+     * @return the attributes in brackets, or an empty string for a boat
+     *         that is neither a sail boat nor a motor boat
+     */
+    private static String attributes(Boat boat) {
+        if (boat instanceof SailBoat) {
+            SailBoat sb = (SailBoat) boat;
+            return String.format(
+                "[height=%.1f, length=%.1f, width=%.1f, value=%.1f, " +
+                "mastHeight=%.1f, sailArea=%.1f]",
+                sb.getHeight(), sb.getLength(), sb.getWidth(),
+                sb.getBoatValue(), sb.getMastHeight(),
+                sb.getSailArea()
+            );
+        } else if (boat instanceof MotorBoat) {
+            MotorBoat mb = (MotorBoat) boat;
+            return String.format(
+                "[height=%.1f, length=%.1f, width=%.1f, value=%.1f, " +
+                "horsePower=%d]",
+                mb.getHeight(), mb.getLength(), mb.getWidth(),
+                mb.getBoatValue(), mb.getHorsePower()
+            );
+        }
+        return "";
     }
 
     /**
@@ -92,7 +170,7 @@ public class ReportOwnerChargesTableModel extends AbstractTableModel {
      */
     @Override
     public int getRowCount() {
-        return data.size();
+        return firstRows[boats.length] + 1;
     }
 
     /**
@@ -105,14 +183,20 @@ public class ReportOwnerChargesTableModel extends AbstractTableModel {
     }
 
     /**
-     * Returns the value at the specified row and column.
+     * Returns the value at the specified row and column. The cells of a
+     * row are formatted together and kept until another row is asked
+     * for, since the table asks for them one after another.
      * @param row the row index
      * @param col the column index
      * @return the value for the cell
      */
     @Override
     public Object getValueAt(int row, int col) {
-        return data.get(row)[col];
+        if (row != cachedRow) {
+            cachedCells = formatRow(row);
+            cachedRow = row;
+        }
+        return cachedCells[col];
     }
 
     /**
@@ -124,4 +208,29 @@ public class ReportOwnerChargesTableModel extends AbstractTableModel {
     public String getColumnName(int col) {
         return columns[col];
     }
+
+    /**
+     * Returns the group of a row: the position of its boat.
+     * @param row the row index
+     * @return the boat position, or -1 for the total row
+     */
+    @Override
+    public int getGroupIndex(int row) {
+        return row == firstRows[boats.length] ? -1 : boatIndex(row);
+    }
+
+    /**
+     * Returns the kind of a row: the first row of a boat starts its
+     * group, and the last row is the total.
+     * @param row the row index
+     * @return the kind of the row
+     */
+    @Override
+    public RowKind getRowKind(int row) {
+        if (row == firstRows[boats.length]) {
+            return RowKind.TOTAL;
+        }
+        return row == firstRows[boatIndex(row)]
+            ? RowKind.GROUP_START : RowKind.GROUP_DETAIL;
+    }
 }
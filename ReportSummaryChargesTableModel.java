@@ -6,7 +6,8 @@ import javax.swing.table.AbstractTableModel;
  * Table model for displaying a summary of all charge 
  * and total monthly income.
  */
-public class ReportSummaryChargesTableModel extends AbstractTableModel {
+public class ReportSummaryChargesTableModel extends AbstractTableModel
+        implements ReportTableModel {
     /** Column names for the summary table */
     private final String[] columns = {"Charge Type", "Amount ($)"};
     /** Table data: charge type and amount */
@@ -14,20 +15,20 @@ public class ReportSummaryChargesTableModel extends AbstractTableModel {
 
     /**
      * Constructs the summary charges table model.
-     * @param storage total storage charges
-     * @param sailDrying total sail drying charges
-     * @param fireLevy total fire levy charges
-     * @param insurance total insurance charges
+     * @param summary charge totals of the fleet
      */
-    public ReportSummaryChargesTableModel(double storage,
-                double sailDrying, double fireLevy, double insurance) {
-        double total = storage + sailDrying + fireLevy + insurance;
+    public ReportSummaryChargesTableModel(ChargeSummary summary) {
         data = new Object[][] {
-            {"Storage Charges", String.format("%.2f", storage)},
-            {"Sail Drying Charges", String.format("%.2f", sailDrying)},
-            {"Fire Levy Charges", String.format("%.2f", fireLevy)},
-            {"Insurance Charges", String.format("%.2f", insurance)},
-            {"TOTAL MONTHLY INCOME", String.format("%.2f", total)}
+            {"Storage Charges",
+                MoneyFormat.format(summary.getStorageCharges())},
+            {"Sail Drying Charges",
+                MoneyFormat.format(summary.getSailDryingCharges())},
+            {"Fire Levy Charges",
+                MoneyFormat.format(summary.getFireLevyCharges())},
+            {"Insurance Charges",
+                MoneyFormat.format(summary.getInsuranceLevies())},
+            {"TOTAL MONTHLY INCOME",
+                MoneyFormat.format(summary.getTotalCharges())}
         };
     }
 
@@ -69,4 +70,25 @@ public class ReportSummaryChargesTableModel extends AbstractTableModel {
     public String getColumnName(int col) {
         return columns[col];
     }
+
+    /**
+     * Returns the group of a row; the rows of this report are not
+     * grouped.
+     * @param row the row index
+     * @return -1, for no group
+     */
+    @Override
+    public int getGroupIndex(int row) {
+        return -1;
+    }
+
+    /**
+     * Returns the kind of a row: the last row is the total.
+     * @param row the row index
+     * @return TOTAL for the last row, ITEM for the others
+     */
+    @Override
+    public RowKind getRowKind(int row) {
+        return row == data.length - 1 ? RowKind.TOTAL : RowKind.ITEM;
+    }
 }
@@ -3,12 +3,20 @@ package assignment1;
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
 
 /**
  * Panel for displaying various reports (summary, counts, owner charges) in a table.
  */
 public class ReportTabPanel extends JPanel {
     private static final long serialVersionUID = 1L;
+    /** Background of the rows of the first, third, ... boat */
+    private static final Color ODD_GROUP_COLOR = new Color(173, 216, 230);
+    /** Background of the other rows, except totals */
+    private static final Color ROW_COLOR = new Color(255, 223, 186);
+    /** Background of total rows */
+    private static final Color TOTAL_COLOR = new Color(255, 255, 180);
 
     /** Holds the current BoatStorage instance for reports */
     private BoatStorage boatStorage;
@@ -16,14 +24,74 @@ public class ReportTabPanel extends JPanel {
     private JLabel reportTitle;
     /** JTable displaying the report data */
     private JTable reportTable;
+    /** Whether the storage changed since the summary was last shown */
+    private boolean stale;
+    /** Marks the report stale whenever the storage changes */
+    private final BoatStorageListener storageListener =
+        new BoatStorageListener() {
+            /**
+             * Marks the report stale after owners were added.
+             * @param fromIndex position of the first owner added
+             * @param toIndex position after the last owner added
+             */
+            @Override
+            public void ownersAdded(int fromIndex, int toIndex) {
+                stale = true;
+            }
+
+            /**
+             * Marks the report stale after an owner changed.
+             * @param owner the owner that changed
+             */
+            @Override
+            public void ownerChanged(Owner owner) {
+                stale = true;
+            }
+
+            /**
+             * Marks the report stale after boats were added.
+             * @param owner the owner of the boats
+             * @param fromIndex position of the first boat added
+             * @param toIndex position after the last boat added
+             */
+            @Override
+            public void boatsAdded(Owner owner, int fromIndex, int toIndex) {
+                stale = true;
+            }
+
+            /**
+             * Marks the report stale after a boat changed.
+             * @param owner the owner of the boat
+             * @param boat the boat that changed
+             * @param index the position of the boat in the owner's list
+             */
+            @Override
+            public void boatChanged(Owner owner, Boat boat, int index) {
+                stale = true;
+            }
+
+            /**
+             * Marks the report stale after boats were added in bulk.
+             */
+            @Override
+            public void storageChanged() {
+                stale = true;
+            }
+        };
 
     /**
      * Constructs the report tab panel, sets up the default summary report and buttons.
      * Handles switching between summary, counts, and owner charges reports.
      * @param boatStorage the main data model
+     * @param exportOwnerCharges callback to export the owner charges,
+     *        which may take a while for a large fleet
      */
-    public ReportTabPanel(BoatStorage boatStorage) {
+    public ReportTabPanel(
+            BoatStorage boatStorage,
+            Runnable exportOwnerCharges
+    ) {
         this.boatStorage = boatStorage; 
+        boatStorage.addStorageListener(storageListener);
         setLayout(new BorderLayout());
 
         // Create and style the title label
@@ -36,10 +104,7 @@ public class ReportTabPanel extends JPanel {
         // By default, show the summary charges report when the tab is opened
         ReportSummaryChargesTableModel summaryModel =
             new ReportSummaryChargesTableModel(
-                boatStorage.getTotalStorageCharges(),
-                boatStorage.getTotalSailDryingCharges(),
-                boatStorage.getTotalFireLevyCharges(),
-                boatStorage.getTotalInsuranceLevies()
+                boatStorage.getChargeSummary()
             );
         reportTable = new JTable(summaryModel) {
             @Override
@@ -67,9 +132,16 @@ public class ReportTabPanel extends JPanel {
         reportTable.setDefaultRenderer(
             Object.class,
             new DefaultTableCellRenderer() {
+                /** Table font the bold font was derived from */
+                private Font plainFont;
+                /** Bold version of the table font */
+                private Font boldFont;
+
                 /**
                  * Customizes the appearance of each cell in the report table.
-                 * Applies background color and font style based on row/column content.
+                 * Applies background color and font style from the kind and
+                 * group of the row, which the report model knows, so no
+                 * other row is read.
                  */
                 @Override
                 public Component getTableCellRendererComponent(
@@ -79,67 +151,35 @@ public class ReportTabPanel extends JPanel {
                     Component c = super.getTableCellRendererComponent(
                         table, value, isSelected, hasFocus, row, column
                     );
-                    String boatDetails = (String) table.getValueAt(row, 0);
-
-                    if (table.getColumnCount() == 2 &&
-                        !table.getColumnName(0).equals("ID")) {
-                        if (row == table.getRowCount() - 1) {
-                            c.setBackground(new Color(255, 255, 180));
-                            c.setFont(c.getFont().deriveFont(Font.BOLD));
-                        } else {
-                            c.setBackground(new Color(255, 223, 186));
-                            c.setFont(c.getFont().deriveFont(Font.PLAIN));
-                        }
+                    if (!(table.getModel() instanceof ReportTableModel)) {
                         return c;
                     }
-
-                    if (boatDetails != null &&
-                        boatDetails.startsWith("Boat")) {
-                        int boatIdx = 0;
-                        for (int i = 0; i <= row; i++) {
-                            String bd = (String) table.getValueAt(i, 0);
-                            if (bd != null && bd.startsWith("Boat"))
-                                boatIdx++;
-                        }
-                        Color boatColor = (boatIdx % 2 == 1)
-                            ? new Color(173, 216, 230)
-                            : new Color(255, 223, 186);
-                        c.setBackground(boatColor);
-                        if (column == 0) {
-                            c.setFont(c.getFont().deriveFont(Font.BOLD));
-                        } else {
-                            c.setFont(c.getFont().deriveFont(Font.PLAIN));
-                        }
-                    } else if (boatDetails != null && 
-                        (boatDetails.equals("TOTAL") || 
-                         boatDetails.equals("TOTAL MONTHLY INCOME") || 
-                         boatDetails.equals("TOTAL BOATS") ||
-                         (row == table.getRowCount() - 1))) {
-                        c.setBackground(new Color(255, 255, 180));
-                        c.setFont(c.getFont().deriveFont(Font.BOLD));
-                    } else {
-                        int boatRow = row;
-                        while (boatRow > 0 &&
-                            !((String) table.getValueAt(boatRow, 0))
-                                .startsWith("Boat")) {
-                            boatRow--;
-                        }
-                        String bd = (String) table.getValueAt(boatRow, 0);
-                        if (bd != null && bd.startsWith("Boat")) {
-                            int boatIdx = 0;
-                            for (int i = 0; i <= boatRow; i++) {
-                                String b = (String) table.getValueAt(i, 0);
-                                if (b != null && b.startsWith("Boat"))
-                                    boatIdx++;
-                            }
-                            c.setBackground(
-                                (boatIdx % 2 == 1)
-                                    ? new Color(173, 216, 230)
-                                    : new Color(255, 223, 186)
-                            );
-                            c.setFont(c.getFont().deriveFont(Font.PLAIN));
-                        }
+                    ReportTableModel model =
+                        (ReportTableModel) table.getModel();
+                    if (table.getFont() != plainFont) {
+                        plainFont = table.getFont();
+                        boldFont = plainFont.deriveFont(Font.BOLD);
                     }
+                    ReportTableModel.RowKind kind = model.getRowKind(row);
+                    boolean bold;
+                    switch (kind) {
+                        case TOTAL:
+                            c.setBackground(TOTAL_COLOR);
+                            bold = true;
+                            break;
+                        case GROUP_START:
+                        case GROUP_DETAIL:
+                            // Boats are shaded alternately, from the first
+                            c.setBackground(model.getGroupIndex(row) % 2 == 0
+                                ? ODD_GROUP_COLOR : ROW_COLOR);
+                            bold = kind == ReportTableModel.RowKind.GROUP_START
+                                && column == 0;
+                            break;
+                        default:
+                            c.setBackground(ROW_COLOR);
+                            bold = false;
+                    }
+                    c.setFont(bold ? boldFont : plainFont);
                     return c;
                 }
             }
@@ -157,6 +197,8 @@ public class ReportTabPanel extends JPanel {
         JButton summaryBtn = new JButton("Show Charges Summary");
         JButton countsBtn = new JButton("Show Boat Counts");
         JButton ownerChargesBtn = new JButton("Show Owner Charges");
+        JButton exportChargesBtn = new JButton("Export Owner Charges...");
+        JButton exportReportBtn = new JButton("Export Fleet Report...");
 
         // Button: Show Charges Summary
         summaryBtn.addActionListener(e -> {
@@ -165,10 +207,7 @@ public class ReportTabPanel extends JPanel {
             // Set the table model to the summary charges report
             reportTable.setModel(
                 new ReportSummaryChargesTableModel(
-                    this.boatStorage.getTotalStorageCharges(),
-                    this.boatStorage.getTotalSailDryingCharges(),
-                    this.boatStorage.getTotalFireLevyCharges(),
-                    this.boatStorage.getTotalInsuranceLevies()
+                    this.boatStorage.getChargeSummary()
                 )
             );
         });
@@ -180,9 +219,7 @@ public class ReportTabPanel extends JPanel {
             // Set the table model to the boat counts report
             reportTable.setModel(
                 new ReportCountsTableModel(
-                    this.boatStorage.countSailBoats(),
-                    this.boatStorage.countMotorBoats(),
-                    this.boatStorage.getTotalBoatCount()
+                    this.boatStorage.getChargeSummary()
                 )
             );
         });
@@ -212,10 +249,33 @@ public class ReportTabPanel extends JPanel {
             );
         });
 
+        // Button: Export Owner Charges
+        exportChargesBtn.addActionListener(e -> exportOwnerCharges.run());
+
+        // Button: Export Fleet Report
+        exportReportBtn.addActionListener(e -> {
+            File file = chooseExportFile("fleet-report.csv");
+            if (file == null) return;
+            try {
+                ChargeReportExporter.exportFleetReport(
+                    this.boatStorage.getChargeSummary(), file
+                );
+                JOptionPane.showMessageDialog(
+                    this, "Fleet report exported to " + file.getName()
+                );
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(
+                    this, "Error exporting: " + ex.getMessage()
+                );
+            }
+        });
+
         // Add buttons to the button panel
         btnPanel.add(summaryBtn);
         btnPanel.add(countsBtn);
         btnPanel.add(ownerChargesBtn);
+        btnPanel.add(exportChargesBtn);
+        btnPanel.add(exportReportBtn);
 
         // Layout: title label at top, table in center, buttons at bottom
         JPanel topPanel = new JPanel(new BorderLayout());
@@ -226,19 +286,39 @@ public class ReportTabPanel extends JPanel {
         add(btnPanel, BorderLayout.SOUTH);
     }
 
+    /**
+     * Asks the user where to save an exported report.
+     * @param defaultName the file name suggested
+     * @return the file chosen, or null if the user cancelled
+     */
+    private File chooseExportFile(String defaultName) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File(defaultName));
+        if (
+            fileChooser.showSaveDialog(this)
+            != JFileChooser.APPROVE_OPTION
+        ) {
+            return null;
+        }
+        return fileChooser.getSelectedFile();
+    }
+
     /**
      * Refreshes the report table to show the latest summary charges.
+     * Does nothing if the storage has not changed since the summary was
+     * last shown, so the report being viewed stays on screen.
      * Call this after any change to the boats or owners.
      */
     public void refreshTable() {
+        if (!stale) {
+            return;
+        }
+        stale = false;
         reportTitle.setText("Charges Summary");
         reportTitle.setVisible(true);
         reportTable.setModel(
             new ReportSummaryChargesTableModel(
-                this.boatStorage.getTotalStorageCharges(),
-                this.boatStorage.getTotalSailDryingCharges(),
-                this.boatStorage.getTotalFireLevyCharges(),
-                this.boatStorage.getTotalInsuranceLevies()
+                this.boatStorage.getChargeSummary()
             )
         );
     }
@@ -249,7 +329,10 @@ public class ReportTabPanel extends JPanel {
      * @param boatStorage the new BoatStorage to use
      */
     public void setBoatStorage(BoatStorage boatStorage) {
+        this.boatStorage.removeStorageListener(storageListener);
         this.boatStorage = boatStorage;
+        boatStorage.addStorageListener(storageListener);
+        stale = true;
         refreshTable();
     }
 }
@@ -0,0 +1,52 @@
+package assignment1;
+
+import javax.swing.table.TableModel;
+
+/**
+ * A table model of a report, which tells the report table how each row
+ * is to be styled without the table reading or searching other rows.
+ * Rows may be gathered in groups, such as the rows of one boat in the
+ * owner charges report, which the table shades alternately.
+ */
+public interface ReportTableModel extends TableModel {
+    /**
+     * Kinds of row in a report.
+     */
+    enum RowKind {
+        /** A row of the report not in any group */
+        ITEM,
+        /** The first row of a group, which names the group */
+        GROUP_START,
+        /** A row of a group after its first row */
+        GROUP_DETAIL,
+        /** A row totalling the rows before it */
+        TOTAL
+    }
+
+    /**
+     * Get the group a row belongs to.
+     *
+     * @param row The row index
+     * @return Index of the group, counting from 0, or -1 if the row is
+     *         not in a group
+     */
+    int getGroupIndex(int row);
+
+    /**
+     * Get the kind of a row.
+     *
+     * @param row The row index
+     * @return Kind of the row
+     */
+    RowKind getRowKind(int row);
+
+    /**
+     * Tell whether a row is a total row.
+     *
+     * @param row The row index
+     * @return True if the row totals the rows before it
+     */
+    default boolean isTotalRow(int row) {
+        return getRowKind(row) == RowKind.TOTAL;
+    }
+}
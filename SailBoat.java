@@ -6,6 +6,8 @@ package assignment1;
  *  and methods.
  */
 public class SailBoat extends Boat {
+    /** Serial version matching databases saved by earlier versions */
+    private static final long serialVersionUID = -2332387259567239630L;
     /** Height of the mast */
     private double mastHeight;
     /** Area of the sail */
@@ -53,7 +55,9 @@ public class SailBoat extends Boat {
      * @param mastHeight Height of the mast
      */
     public void setMastHeight(double mastHeight) {
+        beforeChange();
         this.mastHeight = mastHeight;
+        afterChange();
     }
 
     /**
@@ -71,7 +75,9 @@ public class SailBoat extends Boat {
      * @param sailArea Area of the sail
      */
     public void setSailArea(double sailArea) {
+        beforeChange();
         this.sailArea = sailArea;
+        afterChange();
     }
 
     /**
@@ -90,28 +96,28 @@ public class SailBoat extends Boat {
      */
     public static void setSailRate(double sailRate) {
         SailBoat.sailRate = sailRate;
+        typeRatesChanged(SailBoat.class);
     }
 
     /**
-     * Calculate sail drying charge (10% of sail area).
+     * Get the sail drying charge (10% of sail area).
      * 
      * @return Sail drying charge
      */
     public double sailDryingCharge() {
-        return sailArea * sailRate;
+        return typeCharge();
     }
 
     /**
-     * Implementation of abstract method from Boat
-     * Calculate total monthly charge.
+     * Implementation of abstract method from Boat.
+     * Calculate the sail drying charge, which the total monthly charge
+     * adds to the storage charge and insurance levy.
      * 
-     * @return Total monthly charge
+     * @return Sail drying charge
      */
     @Override
-    public double totalMonthlyCharge() {
-        /*Total charge includes storage charge, insurance levy,
-         and sail drying charge*/
-        return storageCharge() + insuranceLevy() + sailDryingCharge();
+    protected double calculateTypeCharge() {
+        return sailArea * sailRate;
     }
 
     /**
@@ -0,0 +1,670 @@
+package assignment1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A database kept in a directory as several shard files and a manifest,
+ * so that it can be saved and loaded on several cores at once and a save
+ * only rewrites the shards that changed.
+ * <p>
+ * Each owner, with all of their boats, belongs to the shard given by the
+ * hash of their ID number. A shard file is an ordinary binary database
+ * (see BoatDatabaseFile) holding the owners of that shard in storage
+ * order, compressed with the codec chosen when it was written. The
+ * manifest holds, in order:
+ * <ul>
+ * <li>magic number, format version, shard count, next owner ID counter
+ *     and generation;</li>
+ * <li>for each shard: the name of its current file and its owner and
+ *     boat counts;</li>
+ * <li>the owner count and the shard of each owner in storage order, one
+ *     byte each, from which the storage order is put back together.</li>
+ * </ul>
+ * <p>
+ * The storage marks the shard of an owner dirty whenever the owner, or
+ * one of their boats, is added or changed; an owner whose ID changes
+ * marks both the old and the new shard. A save takes a snapshot on the
+ * event thread, writes the dirty shards in parallel to new files named
+ * after the next generation, then replaces the manifest in one atomic
+ * move. Until that move the old manifest and the files it names are left
+ * alone, so a save that fails or is interrupted leaves the previous
+ * database intact. Files no manifest refers to are deleted afterwards.
+ * <p>
+ * Loading reads every shard in parallel, then adds the owners to a new
+ * storage on one thread in the order the manifest gives. A sharded
+ * database has no journal: changes are written by the next save.
+ */
+public class ShardedDatabase {
+    /** Name of the manifest file in the database directory */
+    static final String MANIFEST = "manifest";
+    /** Magic number at the start of the manifest ("BSMF") */
+    static final int MAGIC = 0x42534D46;
+    /** Current manifest format version */
+    static final short VERSION = 1;
+    /** Most shards a database can have, so a shard fits in a byte */
+    public static final int MAX_SHARDS = 256;
+    /** Shards given to a new database, enough to keep every core busy */
+    public static final int DEFAULT_SHARDS = Math.min(
+        MAX_SHARDS, Math.max(4, 2 * Runtime.getRuntime().availableProcessors())
+    );
+    /** Start of the name of every shard file */
+    private static final String SHARD_PREFIX = "shard-";
+    /** End of the name of every shard file */
+    private static final String SHARD_SUFFIX = ".dat";
+    /** Size of the manifest read and write buffers */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The database directory */
+    private final File directory;
+    /** Number of shards */
+    private final int shardCount;
+    /** Current file of each shard, or null if never written */
+    private String[] fileNames;
+    /** Generation of the current manifest */
+    private long generation;
+    /** Number of owners in the current file of each shard */
+    private int[] shardOwnerCounts;
+    /** Number of boats in the current file of each shard */
+    private int[] shardBoatCounts;
+    /** Shards changed since they were last written */
+    private final BitSet dirty = new BitSet();
+    /** The storage held in the database */
+    private final BoatStorage storage;
+    /** Owner ID counter the database was loaded with, 0 if new */
+    private final int ownerIdCounter;
+
+    /**
+     * Constructs a database over a storage and attaches it to the
+     * storage, so the storage marks the shards it changes.
+     *
+     * @param directory      The database directory
+     * @param shardCount     Number of shards
+     * @param fileNames      Current file of each shard
+     * @param generation     Generation of the current manifest
+     * @param ownerCounts    Number of owners in each shard's file
+     * @param boatCounts     Number of boats in each shard's file
+     * @param storage        The storage held in the database
+     * @param ownerIdCounter Owner ID counter the database was loaded
+     *                       with, 0 if new
+     */
+    private ShardedDatabase(File directory, int shardCount,
+                            String[] fileNames, long generation,
+                            int[] ownerCounts, int[] boatCounts,
+                            BoatStorage storage, int ownerIdCounter) {
+        this.directory = directory;
+        this.shardCount = shardCount;
+        this.fileNames = fileNames;
+        this.generation = generation;
+        this.shardOwnerCounts = ownerCounts;
+        this.shardBoatCounts = boatCounts;
+        this.storage = storage;
+        this.ownerIdCounter = ownerIdCounter;
+        storage.setShardedDatabase(this);
+    }
+
+    /**
+     * Start a new sharded database in a directory for a storage, with
+     * every shard dirty so that the first save writes them all. A
+     * database already in the directory is replaced by that save.
+     *
+     * @param directory  The database directory, created if need be
+     * @param shardCount Number of shards, from 1 to MAX_SHARDS
+     * @param storage    The storage to hold in the database
+     * @return The database
+     * @throws IOException If the directory cannot be created
+     */
+    public static ShardedDatabase create(File directory, int shardCount,
+                                         BoatStorage storage)
+            throws IOException {
+        if (shardCount < 1 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException(
+                "Shard count must be from 1 to " + MAX_SHARDS
+            );
+        }
+        Files.createDirectories(directory.toPath());
+        // Name the new files after a generation the old manifest never
+        // used, so that they cannot overwrite files it still refers to
+        long generation = 0;
+        if (isDatabase(directory)) {
+            try {
+                generation = readManifest(directory).generation;
+            } catch (IOException ex) {
+                generation = System.currentTimeMillis();
+            }
+        }
+        ShardedDatabase database = new ShardedDatabase(
+            directory, shardCount, new String[shardCount], generation,
+            new int[shardCount], new int[shardCount], storage, 0
+        );
+        database.dirty.set(0, shardCount);
+        return database;
+    }
+
+    /**
+     * Check whether a directory holds a sharded database.
+     *
+     * @param directory The directory
+     * @return true if the directory holds a manifest
+     */
+    public static boolean isDatabase(File directory) {
+        return new File(directory, MANIFEST).isFile();
+    }
+
+    /**
+     * Find the sharded database a chosen file belongs to: the file
+     * itself if it is a database directory, or its directory if it is a
+     * manifest.
+     *
+     * @param file The chosen file or directory
+     * @return The database directory, or null if the file is not part of
+     *         a sharded database
+     */
+    public static File databaseDirectory(File file) {
+        if (file.isDirectory()) {
+            return isDatabase(file) ? file : null;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (MANIFEST.equals(file.getName()) && parent != null
+                && isDatabase(parent)) {
+            return parent;
+        }
+        return null;
+    }
+
+    /**
+     * Load a sharded database, reading its shards in parallel. May be
+     * called on a background thread; the storage is not shown anywhere
+     * until the load has finished.
+     *
+     * @param directory The database directory
+     * @param progress  Told the percentage of shards read each time it
+     *                  grows, or null
+     * @return The database, holding a new storage with every owner and
+     *         boat
+     * @throws IOException If the manifest or a shard cannot be read, or
+     *                     they do not agree
+     */
+    public static ShardedDatabase load(File directory, IntConsumer progress)
+            throws IOException {
+        Manifest manifest = readManifest(directory);
+        int shardCount = manifest.fileNames.length;
+        BoatDatabaseFile.Table[] tables =
+            new BoatDatabaseFile.Table[shardCount];
+        AtomicInteger read = new AtomicInteger();
+        try {
+            IntStream.range(0, shardCount).parallel().forEach(k -> {
+                try {
+                    tables[k] = BoatDatabaseFile.readTable(
+                        new File(directory, manifest.fileNames[k])
+                    );
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                int done = read.incrementAndGet();
+                if (progress != null) {
+                    progress.accept(done * 100 / shardCount);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        for (int k = 0; k < shardCount; k++) {
+            if (tables[k].owners.size() != manifest.ownerCounts[k]
+                    || tables[k].header.boatCount != manifest.boatCounts[k]) {
+                throw new IOException(
+                    "Shard " + manifest.fileNames[k]
+                    + " does not match the manifest"
+                );
+            }
+        }
+        BoatStorage storage = new BoatStorage();
+        int[] next = new int[shardCount];
+        for (byte shard : manifest.ownerShards) {
+            int k = shard & 0xFF;
+            if (k >= shardCount || next[k] == tables[k].owners.size()) {
+                throw new IOException("Manifest owner table is corrupt");
+            }
+            Owner owner = tables[k].owners.get(next[k]);
+            storage.addOwner(owner);
+            storage.addBoats(owner, tables[k].boats.get(next[k]));
+            next[k]++;
+        }
+        return new ShardedDatabase(
+            directory, shardCount, manifest.fileNames, manifest.generation,
+            manifest.ownerCounts, manifest.boatCounts, storage,
+            manifest.ownerIdCounter
+        );
+    }
+
+    /**
+     * Get the database directory.
+     *
+     * @return The directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the storage held in the database.
+     *
+     * @return The storage
+     */
+    public BoatStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Get the owner ID counter the database was loaded with.
+     *
+     * @return Next owner ID to hand out, or 0 for a new database
+     */
+    public int getOwnerIdCounter() {
+        return ownerIdCounter;
+    }
+
+    /**
+     * Get the number of shards.
+     *
+     * @return Number of shards
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Get the number of shards changed since they were last written.
+     *
+     * @return Number of dirty shards
+     */
+    public int getDirtyShardCount() {
+        return dirty.cardinality();
+    }
+
+    /**
+     * Get the shard an owner ID belongs to.
+     *
+     * @param idNumber The owner ID number
+     * @return The shard, from 0 to the shard count - 1
+     */
+    int shardOf(String idNumber) {
+        return Math.floorMod(
+            idNumber == null ? 0 : idNumber.hashCode(), shardCount
+        );
+    }
+
+    /**
+     * Mark the shard of an owner ID dirty. Called by the storage when an
+     * owner, or one of their boats, is added or changed.
+     *
+     * @param idNumber ID number of the owner
+     */
+    void markDirty(String idNumber) {
+        dirty.set(shardOf(idNumber));
+    }
+
+    /**
+     * Stop the storage marking shards of this database, once it is no
+     * longer saved here. A database created for the storage since then
+     * stays attached.
+     */
+    public void detach() {
+        storage.detachShardedDatabase(this);
+    }
+
+    /**
+     * Start saving the dirty shards. Called on the thread that edits the
+     * storage: the dirty shards are taken and a snapshot of the storage
+     * is taken for Save.write to write on another thread.
+     *
+     * @param ownerIdCounter Next owner ID to hand out
+     * @return The save, which must be finished whatever happens
+     */
+    public Save startSave(int ownerIdCounter) {
+        BoatStorageSnapshot snapshot = storage.snapshot();
+        BitSet rewrite = (BitSet) dirty.clone();
+        dirty.clear();
+        return new Save(snapshot, ownerIdCounter, rewrite);
+    }
+
+    /**
+     * A save of the dirty shards of the database from a snapshot.
+     */
+    public class Save {
+        /** The owners and boats to save */
+        private final BoatStorageSnapshot snapshot;
+        /** Next owner ID to hand out */
+        private final int ownerIdCounter;
+        /** Shards to rewrite */
+        private final BitSet rewrite;
+        /** Generation of the manifest written by the save */
+        private final long newGeneration = generation + 1;
+        /** File of each shard once the save is done */
+        private final String[] newFileNames = fileNames.clone();
+        /** Number of owners in each shard's file before the save */
+        private final int[] oldOwnerCounts = shardOwnerCounts;
+        /** Number of boats in each shard's file before the save */
+        private final int[] oldBoatCounts = shardBoatCounts;
+        /** Number of owners in each shard once the save is done */
+        private int[] newOwnerCounts;
+        /** Number of boats in each shard once the save is done */
+        private int[] newBoatCounts;
+
+        /**
+         * Constructs a save.
+         *
+         * @param snapshot       The owners and boats to save
+         * @param ownerIdCounter Next owner ID to hand out
+         * @param rewrite        Shards to rewrite
+         */
+        private Save(BoatStorageSnapshot snapshot, int ownerIdCounter,
+                     BitSet rewrite) {
+            this.snapshot = snapshot;
+            this.ownerIdCounter = ownerIdCounter;
+            this.rewrite = rewrite;
+        }
+
+        /**
+         * Get the number of shards the save rewrites.
+         *
+         * @return Number of shards written
+         */
+        public int getShardsWritten() {
+            return rewrite.cardinality();
+        }
+
+        /**
+         * Write the dirty shards in parallel, then the manifest, and
+         * delete the files the old manifest referred to. Each step is
+         * forced to disk before the next begins, so a crash leaves either
+         * the old generation or the new one complete. May be called on a
+         * background thread.
+         *
+         * @param codec    Codec to compress the shards with, or null to
+         *                 leave them uncompressed
+         * @param progress Told the percentage of dirty shards written
+         *                 each time it grows, or null
+         * @return The generation of the database written
+         * @throws IOException If a shard or the manifest cannot be
+         *                     written, or a shard the save does not
+         *                     rewrite no longer holds the owners and
+         *                     boats its file holds; such shards are
+         *                     rewritten by the next save
+         */
+        public long write(BlockCodec codec, IntConsumer progress)
+                throws IOException {
+            int ownerCount = snapshot.getOwnerCount();
+            byte[] ownerShards = new byte[ownerCount];
+            int[] ownerCounts = new int[shardCount];
+            int[] boatCounts = new int[shardCount];
+            for (int i = 0; i < ownerCount; i++) {
+                int k = shardOf(snapshot.getIdNumber(i));
+                ownerShards[i] = (byte) k;
+                ownerCounts[k]++;
+                boatCounts[k] += snapshot.getBoatCount(i);
+            }
+            int[][] shardOwners = new int[shardCount][];
+            for (int k = 0; k < shardCount; k++) {
+                shardOwners[k] = new int[ownerCounts[k]];
+            }
+            int[] next = new int[shardCount];
+            for (int i = 0; i < ownerCount; i++) {
+                int k = ownerShards[i] & 0xFF;
+                shardOwners[k][next[k]++] = i;
+            }
+            // A shard changed without being marked dirty would be left
+            // disagreeing with the manifest, which could not be loaded
+            BitSet unmarked = new BitSet();
+            for (int k = 0; k < shardCount; k++) {
+                if (!rewrite.get(k) && (newFileNames[k] == null
+                        || ownerCounts[k] != oldOwnerCounts[k]
+                        || boatCounts[k] != oldBoatCounts[k])) {
+                    unmarked.set(k);
+                }
+            }
+            if (!unmarked.isEmpty()) {
+                rewrite.or(unmarked);
+                throw new IOException(
+                    "Shards " + unmarked + " changed without being marked"
+                    + " dirty; saving again rewrites them"
+                );
+            }
+            newOwnerCounts = ownerCounts;
+            newBoatCounts = boatCounts;
+            int[] shards = rewrite.stream().toArray();
+            for (int k : shards) {
+                newFileNames[k] = SHARD_PREFIX + k + "-" + newGeneration
+                                  + SHARD_SUFFIX;
+            }
+            AtomicInteger written = new AtomicInteger();
+            try {
+                Arrays.stream(shards).parallel().forEach(k -> {
+                    try {
+                        BoatDatabaseFile.write(
+                            new File(directory, newFileNames[k]), snapshot,
+                            shardOwners[k], ownerIdCounter, codec, null
+                        );
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    int done = written.incrementAndGet();
+                    if (progress != null) {
+                        progress.accept(done * 100 / shards.length);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            writeManifest(new Manifest(
+                newFileNames, ownerCounts, boatCounts, ownerShards,
+                ownerIdCounter, newGeneration
+            ));
+            deleteUnreferenced();
+            return newGeneration;
+        }
+
+        /**
+         * Finish the save on the thread that edits the storage. A save
+         * that was written makes its files current; otherwise the shards
+         * it was to write are marked dirty again.
+         *
+         * @param written Whether write returned normally
+         */
+        public void finish(boolean written) {
+            snapshot.release();
+            if (written) {
+                fileNames = newFileNames;
+                generation = newGeneration;
+                shardOwnerCounts = newOwnerCounts;
+                shardBoatCounts = newBoatCounts;
+            } else {
+                dirty.or(rewrite);
+            }
+        }
+
+        /**
+         * Write the manifest to a temporary file, force it to disk and
+         * move it over the current one, forcing the directory after the
+         * move.
+         *
+         * @param manifest The manifest to write
+         * @throws IOException If the manifest cannot be written
+         */
+        private void writeManifest(Manifest manifest) throws IOException {
+            Path target = new File(directory, MANIFEST).toPath();
+            Path temp = target.resolveSibling(MANIFEST + ".tmp");
+            boolean done = false;
+            try (
+                FileChannel channel = FileChannel.open(
+                    temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE
+                )
+            ) {
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                        Channels.newOutputStream(channel), BUFFER_SIZE
+                    )
+                );
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeInt(shardCount);
+                out.writeInt(manifest.ownerIdCounter);
+                out.writeLong(manifest.generation);
+                for (int k = 0; k < shardCount; k++) {
+                    out.writeUTF(manifest.fileNames[k]);
+                    out.writeInt(manifest.ownerCounts[k]);
+                    out.writeInt(manifest.boatCounts[k]);
+                }
+                out.writeInt(manifest.ownerShards.length);
+                out.write(manifest.ownerShards);
+                out.flush();
+                // write has forced the new shards and their directory
+                // entries to disk; force the manifest too before it
+                // replaces the one naming the old shards
+                channel.force(true);
+                done = true;
+            } finally {
+                if (!done) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            // The old shards are deleted only once the new manifest is
+            // durable, so a crash leaves one complete generation on disk
+            BoatDatabaseFile.replace(temp, target);
+        }
+
+        /**
+         * Delete the shard files the new manifest does not refer to:
+         * those replaced by this save, and any left by a failed one.
+         * A file that cannot be deleted is left for the next save.
+         */
+        private void deleteUnreferenced() {
+            Set<String> current = new HashSet<>(Arrays.asList(newFileNames));
+            File[] files = directory.listFiles();
+            if (files == null) {
+                return;
+            }
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(SHARD_PREFIX)
+                        && (name.endsWith(SHARD_SUFFIX)
+                            || name.endsWith(SHARD_SUFFIX + ".tmp"))
+                        && !current.contains(name)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * The contents of a manifest.
+     */
+    private static class Manifest {
+        /** File of each shard */
+        final String[] fileNames;
+        /** Number of owners in each shard */
+        final int[] ownerCounts;
+        /** Number of boats in each shard */
+        final int[] boatCounts;
+        /** Shard of each owner, in storage order */
+        final byte[] ownerShards;
+        /** Next owner ID to hand out */
+        final int ownerIdCounter;
+        /** Generation of the manifest */
+        final long generation;
+
+        /**
+         * Constructs a manifest.
+         *
+         * @param fileNames      File of each shard
+         * @param ownerCounts    Number of owners in each shard
+         * @param boatCounts     Number of boats in each shard
+         * @param ownerShards    Shard of each owner, in storage order
+         * @param ownerIdCounter Next owner ID to hand out
+         * @param generation     Generation of the manifest
+         */
+        Manifest(String[] fileNames, int[] ownerCounts, int[] boatCounts,
+                 byte[] ownerShards, int ownerIdCounter, long generation) {
+            this.fileNames = fileNames;
+            this.ownerCounts = ownerCounts;
+            this.boatCounts = boatCounts;
+            this.ownerShards = ownerShards;
+            this.ownerIdCounter = ownerIdCounter;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Read the manifest of a sharded database.
+     *
+     * @param directory The database directory
+     * @return The manifest
+     * @throws IOException If the manifest cannot be read or is not valid
+     */
+    private static Manifest readManifest(File directory) throws IOException {
+        try (
+            InputStream in = new BufferedInputStream(
+                Files.newInputStream(new File(directory, MANIFEST).toPath()),
+                BUFFER_SIZE
+            )
+        ) {
+            DataInputStream data = new DataInputStream(in);
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not a sharded boat storage database");
+            }
+            short version = data.readShort();
+            if (version != VERSION) {
+                throw new IOException(
+                    "Unsupported manifest version " + version
+                );
+            }
+            int shardCount = data.readInt();
+            if (shardCount < 1 || shardCount > MAX_SHARDS) {
+                throw new IOException("Unsupported shard count "
+                                      + shardCount);
+            }
+            int ownerIdCounter = data.readInt();
+            long generation = data.readLong();
+            String[] fileNames = new String[shardCount];
+            int[] ownerCounts = new int[shardCount];
+            int[] boatCounts = new int[shardCount];
+            for (int k = 0; k < shardCount; k++) {
+                fileNames[k] = data.readUTF();
+                if (fileNames[k].indexOf('/') >= 0
+                        || fileNames[k].indexOf('\\') >= 0) {
+                    throw new IOException("Manifest shard name is corrupt");
+                }
+                ownerCounts[k] = data.readInt();
+                boatCounts[k] = data.readInt();
+            }
+            int ownerCount = data.readInt();
+            if (ownerCount < 0) {
+                throw new IOException("Manifest owner table is corrupt");
+            }
+            byte[] ownerShards = new byte[ownerCount];
+            data.readFully(ownerShards);
+            return new Manifest(fileNames, ownerCounts, boatCounts,
+                                ownerShards, ownerIdCounter, generation);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package assignment1;
+
+/**
+ * Measures BoatStorage.computeChargeSummary over the Boat objects and
+ * over the columnar store (BoatColumns), sequential and parallel, and
+ * checks that all four give the same summary bit for bit.
+ * <p>
+ * Arguments: the fleet sizes in boats (default 1000000). The fleets
+ * have full-precision random values, half sail boats and half motor
+ * boats, and one owner per 50 boats; ten million boats need a heap of
+ * about 4 GB. Each time is the best of six runs.
+ */
+public class BoatColumnsBenchmark {
+    /** Runs of each measurement, of which the fastest is kept */
+    private static final int RUNS = 6;
+
+    /**
+     * Not constructed; run main.
+     */
+    private BoatColumnsBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Fleet sizes in boats, optional
+     */
+    public static void main(String[] args) {
+        String[] sizes = args.length > 0 ? args : new String[] {"1000000"};
+        System.out.println(Runtime.getRuntime().availableProcessors()
+                           + " CPU(s)");
+        System.out.println("boats      store    sequential  parallel");
+        for (String size : sizes) {
+            int boats = Integer.parseInt(size);
+            BoatStorage storage =
+                FleetGenerator.random(Math.max(1, boats / 50), boats, 3);
+            String expected =
+                describe(storage.computeChargeSummary(false));
+            for (boolean columnar : new boolean[] {false, true}) {
+                storage.setColumnarStore(columnar);
+                double sequential = best(storage, false, expected);
+                double parallel = best(storage, true, expected);
+                System.out.printf("%-10d %-8s %8.1f ms %7.1f ms%n", boats,
+                                  columnar ? "columns" : "objects",
+                                  sequential, parallel);
+            }
+            storage.setColumnarStore(false);
+        }
+    }
+
+    /**
+     * Time the fastest of several charge summaries, checking each one.
+     *
+     * @param storage  The storage
+     * @param parallel Whether to compute the summaries in parallel
+     * @param expected Description of the summary over the Boat objects
+     * @return The fastest time in milliseconds
+     */
+    private static double best(BoatStorage storage, boolean parallel,
+                               String expected) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            ChargeSummary summary = storage.computeChargeSummary(parallel);
+            best = Math.min(best, System.nanoTime() - start);
+            String actual = describe(summary);
+            if (!actual.equals(expected)) {
+                throw new IllegalStateException(
+                    "Summary " + actual + " instead of " + expected
+                );
+            }
+        }
+        return best / 1e6;
+    }
+
+    /**
+     * Describe a charge summary exactly, to compare summaries bit for
+     * bit.
+     *
+     * @param summary The summary
+     * @return Boat counts and the bits of each charge total
+     */
+    private static String describe(ChargeSummary summary) {
+        return summary.getSailBoatCount() + " "
+            + summary.getMotorBoatCount() + " "
+            + Double.doubleToLongBits(summary.getStorageCharges()) + " "
+            + Double.doubleToLongBits(summary.getInsuranceLevies()) + " "
+            + Double.doubleToLongBits(summary.getSailDryingCharges()) + " "
+            + Double.doubleToLongBits(summary.getFireLevyCharges());
+    }
+}
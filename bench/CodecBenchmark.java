@@ -0,0 +1,177 @@
+package assignment1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures each compression codec of saved databases, trading speed
+ * against the size of the file: the compression ratio of the boat
+ * records, the throughput of compressing and decompressing their
+ * blocks on one thread, and the time to save, read and open a whole
+ * database file.
+ * <p>
+ * Arguments, all optional: the number of boats (default 1000000),
+ * "random" to use a fleet of full-precision random values instead of a
+ * realistic one, and the file to save to (default a temporary file).
+ * Each time is the best of three runs.
+ */
+public class CodecBenchmark {
+    /** Runs of each measurement, of which the fastest is kept */
+    private static final int RUNS = 3;
+
+    /**
+     * Not constructed; run main.
+     */
+    private CodecBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Number of boats, "random" and the file, all optional
+     * @throws IOException If the database file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int boats = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        boolean random = args.length > 1 && args[1].equals("random");
+        File file = args.length > 2 ? new File(args[2])
+            : File.createTempFile("codec", ".db");
+        file.deleteOnExit();
+        int owners = Math.max(1, boats / 50);
+        BoatStorage storage = random
+            ? FleetGenerator.random(owners, boats, 3)
+            : FleetGenerator.realistic(owners, boats, 3);
+        byte[][] blocks = recordBlocks(storage);
+        long recordBytes = (long) boats * BoatDatabaseFile.BOAT_RECORD_SIZE;
+
+        BlockCodec[] codecs = {
+            null, new LzBlockCodec(), new DeflateCodec(1),
+            new DeflateCodec(6), new DeflateCodec(9)
+        };
+        System.out.println(boats + " boats, " + (random ? "random"
+                           : "realistic") + " values, "
+                           + Runtime.getRuntime().availableProcessors()
+                           + " CPU(s)");
+        System.out.println("codec     ratio  compress  decompress"
+                           + "   file    save    read  open");
+        System.out.println("                   MB/s      MB/s"
+                           + "        MB      ms      ms    ms");
+        for (BlockCodec codec : codecs) {
+            long compressed = recordBytes;
+            String compressRate = "-";
+            String decompressRate = "-";
+            if (codec != null) {
+                long compressTime = Long.MAX_VALUE;
+                long decompressTime = Long.MAX_VALUE;
+                byte[][] packed = new byte[blocks.length][];
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < blocks.length; i++) {
+                        packed[i] = codec.compress(blocks[i]);
+                    }
+                    long middle = System.nanoTime();
+                    for (int i = 0; i < blocks.length; i++) {
+                        byte[] out = new byte[blocks[i].length];
+                        codec.decompress(packed[i], out);
+                        if (run == 0 && !Arrays.equals(out, blocks[i])) {
+                            throw new IOException(
+                                name(codec) + " changed block " + i
+                            );
+                        }
+                    }
+                    long end = System.nanoTime();
+                    compressTime = Math.min(compressTime, middle - start);
+                    decompressTime = Math.min(decompressTime, end - middle);
+                }
+                compressed = 0;
+                for (byte[] block : packed) {
+                    compressed += block.length;
+                }
+                compressRate = String.format(
+                    "%.1f", recordBytes * 1e3 / compressTime
+                );
+                decompressRate = String.format(
+                    "%.1f", recordBytes * 1e3 / decompressTime
+                );
+            }
+            long save = Long.MAX_VALUE;
+            long read = Long.MAX_VALUE;
+            long open = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                BoatStorageSnapshot snapshot = storage.snapshot();
+                try {
+                    BoatDatabaseFile.write(file, snapshot, owners + 1,
+                                           codec, null);
+                } finally {
+                    snapshot.release();
+                }
+                long saved = System.nanoTime();
+                BoatDatabaseFile.read(file);
+                long readDone = System.nanoTime();
+                BoatDatabaseFile.open(file).storage.getChargeSummary();
+                long opened = System.nanoTime();
+                save = Math.min(save, saved - start);
+                read = Math.min(read, readDone - saved);
+                open = Math.min(open, opened - readDone);
+            }
+            System.out.printf("%-9s %5.2f %9s %11s %7.1f %7d %7d %5d%n",
+                              name(codec),
+                              (double) recordBytes / compressed,
+                              compressRate, decompressRate,
+                              file.length() / 1e6, save / 1000000,
+                              read / 1000000, open / 1000000);
+        }
+    }
+
+    /**
+     * Encode the boats of a storage as the blocks of records a
+     * compressed database file holds.
+     *
+     * @param storage The storage
+     * @return Blocks of BoatDatabaseFile.BLOCK_RECORDS records, the last
+     *         one possibly shorter
+     * @throws IOException If a boat has no record type
+     */
+    private static byte[][] recordBlocks(BoatStorage storage)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < storage.getOwnerCount(); i++) {
+            for (Boat boat : storage.getOwnerAt(i).getBoats()) {
+                BoatDatabaseFile.writeBoat(out, boat);
+            }
+        }
+        byte[] records = bytes.toByteArray();
+        int blockSize = BoatDatabaseFile.BLOCK_RECORDS
+            * BoatDatabaseFile.BOAT_RECORD_SIZE;
+        byte[][] blocks =
+            new byte[(records.length + blockSize - 1) / blockSize][];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = Arrays.copyOfRange(
+                records, i * blockSize,
+                Math.min(records.length, (i + 1) * blockSize)
+            );
+        }
+        return blocks;
+    }
+
+    /**
+     * Name a codec as the results table does.
+     *
+     * @param codec The codec, or null for none
+     * @return Name such as "lz" or "deflate6"
+     */
+    private static String name(BlockCodec codec) {
+        if (codec == null) {
+            return "none";
+        }
+        if (codec instanceof DeflateCodec) {
+            return "deflate" + ((DeflateCodec) codec).getLevel();
+        }
+        return "lz";
+    }
+}
@@ -0,0 +1,158 @@
+package assignment1;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+/**
+ * Compares the binary database format of BoatDatabaseFile with the Java
+ * serialization format earlier versions saved: the time to save a
+ * fleet, to read it back in full, and, for the binary format, to open
+ * it with its boat records mapped and summarise its charges; and the
+ * size of each file. Every file read back is checked to hold the same
+ * owners, boats and charges as the fleet saved.
+ * <p>
+ * Arguments: the fleet sizes in boats (default 10000 and 1000000), each
+ * with one owner per 50 boats. Each time is the best of three runs.
+ */
+public class DatabaseFileBenchmark {
+    /** Runs of each measurement, of which the fastest is kept */
+    private static final int RUNS = 3;
+
+    /**
+     * Not constructed; run main.
+     */
+    private DatabaseFileBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Fleet sizes in boats, optional
+     * @throws IOException If a file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        String[] sizes = args.length > 0 ? args
+            : new String[] {"10000", "1000000"};
+        File binary = File.createTempFile("fleet", ".db");
+        File serialized = File.createTempFile("fleet", ".ser");
+        binary.deleteOnExit();
+        serialized.deleteOnExit();
+        System.out.println("boats     format      size   save   read  open");
+        System.out.println("                        MB     ms     ms    ms");
+        for (String size : sizes) {
+            int boats = Integer.parseInt(size);
+            int owners = Math.max(1, boats / 50);
+            BoatStorage storage =
+                FleetGenerator.realistic(owners, boats, 3);
+            String expected = describe(storage);
+
+            long save = Long.MAX_VALUE;
+            long read = Long.MAX_VALUE;
+            long open = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                BoatDatabaseFile.write(binary, storage, owners + 1);
+                long saved = System.nanoTime();
+                BoatStorage loaded = BoatDatabaseFile.read(binary).storage;
+                long readDone = System.nanoTime();
+                BoatStorage mapped = BoatDatabaseFile.open(binary).storage;
+                mapped.getChargeSummary();
+                long opened = System.nanoTime();
+                check(loaded, expected, "binary read");
+                check(mapped, expected, "binary open");
+                save = Math.min(save, saved - start);
+                read = Math.min(read, readDone - saved);
+                open = Math.min(open, opened - readDone);
+            }
+            print(boats, "binary", binary, save, read, open);
+
+            save = Long.MAX_VALUE;
+            read = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                writeSerialized(serialized, storage, owners + 1);
+                long saved = System.nanoTime();
+                BoatStorage loaded =
+                    BoatDatabaseFile.read(serialized).storage;
+                long readDone = System.nanoTime();
+                check(loaded, expected, "serialized read");
+                save = Math.min(save, saved - start);
+                read = Math.min(read, readDone - saved);
+            }
+            print(boats, "serialized", serialized, save, read, -1);
+        }
+    }
+
+    /**
+     * Save a storage with Java serialization, as earlier versions did.
+     *
+     * @param file           The file to write
+     * @param storage        The storage
+     * @param ownerIdCounter Next owner ID to hand out
+     * @throws IOException If the file cannot be written
+     */
+    private static void writeSerialized(File file, BoatStorage storage,
+                                        int ownerIdCounter)
+            throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(storage);
+            out.writeInt(ownerIdCounter);
+        }
+    }
+
+    /**
+     * Describe the owners, boats and charges of a storage, to tell
+     * whether a file was read back as it was saved.
+     *
+     * @param storage The storage
+     * @return Owner count, boat counts and charge totals
+     */
+    private static String describe(BoatStorage storage) {
+        ChargeSummary summary = storage.computeChargeSummary(false);
+        return storage.getOwnerCount() + " " + summary.getSailBoatCount()
+            + " " + summary.getMotorBoatCount() + " "
+            + summary.getStorageCharges() + " "
+            + summary.getInsuranceLevies() + " "
+            + summary.getSailDryingCharges() + " "
+            + summary.getFireLevyCharges();
+    }
+
+    /**
+     * Check that a storage read back holds what was saved.
+     *
+     * @param storage  The storage read back
+     * @param expected Description of the storage saved
+     * @param what     How the storage was read
+     * @throws IOException If the storage differs
+     */
+    private static void check(BoatStorage storage, String expected,
+                              String what) throws IOException {
+        String actual = describe(storage);
+        if (!actual.equals(expected)) {
+            throw new IOException(what + " gave " + actual
+                                  + " instead of " + expected);
+        }
+    }
+
+    /**
+     * Print a row of results.
+     *
+     * @param boats  Number of boats
+     * @param format Name of the format
+     * @param file   The file written
+     * @param save   Save time in nanoseconds
+     * @param read   Read time in nanoseconds
+     * @param open   Open time in nanoseconds, or -1 if not measured
+     */
+    private static void print(int boats, String format, File file,
+                              long save, long read, long open) {
+        System.out.printf("%-9d %-10s %6.2f %6d %6d %5s%n", boats, format,
+                          file.length() / 1e6, save / 1000000,
+                          read / 1000000,
+                          open < 0 ? "-" : String.valueOf(open / 1000000));
+    }
+}
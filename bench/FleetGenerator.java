@@ -0,0 +1,148 @@
+package assignment1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates fleets of owners and boats for the benchmarks, and can save
+ * one as a database file to open in the application.
+ * <p>
+ * A realistic fleet has values like those typed in by hand: dimensions
+ * to a tenth of a metre, boat values in whole hundreds, sail areas in
+ * whole square metres and common engine horse powers, with two boats in
+ * five being sail boats. A random fleet uses full-precision random
+ * doubles instead, which is the worst case for compression. Each boat
+ * goes to an owner chosen at random. The same seed always gives the
+ * same fleet.
+ */
+public class FleetGenerator {
+    /** Horse powers of common outboard and inboard engines */
+    private static final int[] HORSE_POWERS = {
+        5, 10, 15, 25, 40, 60, 90, 115, 150, 200, 250, 300, 350, 450
+    };
+
+    /**
+     * Not constructed; the methods are static.
+     */
+    private FleetGenerator() {
+    }
+
+    /**
+     * Generate a fleet with realistic values.
+     *
+     * @param owners Number of owners, at least 1
+     * @param boats  Number of boats
+     * @param seed   Seed of the random values
+     * @return A storage holding the fleet
+     */
+    public static BoatStorage realistic(int owners, int boats, long seed) {
+        Random random = new Random(seed);
+        BoatStorage storage = withOwners(owners, random);
+        for (int i = 0; i < boats; i++) {
+            Owner owner = storage.getOwnerAt(random.nextInt(owners));
+            double length = tenths(12 + random.nextGaussian() * 2);
+            double height = tenths(1 + random.nextDouble() * 4);
+            double width = tenths(length * (0.3 + random.nextDouble() * 0.1));
+            double value =
+                Math.round(50 + random.nextDouble() * 4000) * 100.0;
+            Boat boat;
+            if (random.nextInt(5) < 2) {
+                boat = new SailBoat(height, length, width, value,
+                                    tenths(length * 1.3),
+                                    Math.round(length * 2.5));
+            } else {
+                boat = new MotorBoat(
+                    height, length, width, value,
+                    HORSE_POWERS[random.nextInt(HORSE_POWERS.length)]
+                );
+            }
+            storage.addBoat(boat, owner);
+        }
+        return storage;
+    }
+
+    /**
+     * Generate a fleet with full-precision random values.
+     *
+     * @param owners Number of owners, at least 1
+     * @param boats  Number of boats
+     * @param seed   Seed of the random values
+     * @return A storage holding the fleet
+     */
+    public static BoatStorage random(int owners, int boats, long seed) {
+        Random random = new Random(seed);
+        BoatStorage storage = withOwners(owners, random);
+        for (int i = 0; i < boats; i++) {
+            Owner owner = storage.getOwnerAt(random.nextInt(owners));
+            double height = 1 + random.nextDouble() * 5;
+            double length = 3 + random.nextDouble() * 20;
+            double width = 1 + random.nextDouble() * 6;
+            double value = 1000 + random.nextDouble() * 1e6;
+            Boat boat;
+            if (random.nextBoolean()) {
+                boat = new SailBoat(height, length, width, value,
+                                    1 + random.nextDouble() * 30,
+                                    1 + random.nextDouble() * 100);
+            } else {
+                boat = new MotorBoat(height, length, width, value,
+                                     1 + random.nextInt(800));
+            }
+            storage.addBoat(boat, owner);
+        }
+        return storage;
+    }
+
+    /**
+     * Create a storage with owners numbered from 1 and no boats.
+     *
+     * @param owners Number of owners
+     * @param random Source of the owners' names
+     * @return The storage
+     */
+    private static BoatStorage withOwners(int owners, Random random) {
+        BoatStorage storage = new BoatStorage();
+        for (int i = 1; i <= owners; i++) {
+            storage.addOwner(new Owner(
+                String.valueOf(i), "Owner " + random.nextInt(100000),
+                i + " Marina Drive", new ArrayList<>()
+            ));
+        }
+        return storage;
+    }
+
+    /**
+     * Round a length to a tenth of a metre.
+     *
+     * @param length The length
+     * @return The rounded length
+     */
+    private static double tenths(double length) {
+        return Math.round(length * 10) / 10.0;
+    }
+
+    /**
+     * Save a realistic fleet as a database file. Arguments: the file,
+     * then optionally the number of owners (default 20000), the number
+     * of boats (default 1000000) and the seed (default 3).
+     *
+     * @param args The file, owners, boats and seed
+     * @throws IOException If the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println(
+                "Usage: FleetGenerator file [owners] [boats] [seed]"
+            );
+            return;
+        }
+        int owners = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int boats = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 3;
+        BoatStorage storage = realistic(owners, boats, seed);
+        BoatDatabaseFile.write(new File(args[0]), storage, owners + 1);
+        System.out.println(owners + " owners and " + boats
+                           + " boats written to " + args[0]);
+    }
+}
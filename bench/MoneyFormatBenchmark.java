@@ -0,0 +1,190 @@
+package assignment1;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks that MoneyFormat writes exactly what String.format writes, then
+ * measures the time and memory allocated per call of String.format with
+ * "%.2f", MoneyFormat.format and MoneyFormat.format into a buffer.
+ * <p>
+ * The check covers amounts near the half cent, every k/1000 up to 2000
+ * with the doubles either side and their negatives, random amounts of
+ * up to a trillion, random magnitudes from 1e-3 to 1e12 and random bit
+ * patterns. It exits with status 1 if any amount is written differently.
+ * Allocation is read from the HotSpot thread allocation counter, and is
+ * reported as unknown on JVMs without one.
+ */
+public class MoneyFormatBenchmark {
+    /** Most differing amounts printed */
+    private static final int MAX_PRINTED = 20;
+    /** Calls of each method per measurement */
+    private static final int CALLS = 2_000_000;
+    /** Measurements of each method, the first ones warming up */
+    private static final int ROUNDS = 4;
+    /** Counts the memory allocated by each thread, on HotSpot */
+    private static final ThreadMXBean THREADS =
+        ManagementFactory.getThreadMXBean();
+
+    /** Number of amounts checked */
+    private static long checked;
+    /** Number of amounts written differently */
+    private static long differing;
+
+    /**
+     * Not constructed; run main.
+     */
+    private MoneyFormatBenchmark() {
+    }
+
+    /**
+     * Runs the check and then the benchmark.
+     *
+     * @param args Not used
+     */
+    public static void main(String[] args) {
+        checkEquivalence();
+        System.out.println(checked + " amounts checked, " + differing
+                           + " written differently");
+        if (differing > 0) {
+            System.exit(1);
+        }
+        benchmark();
+    }
+
+    /**
+     * Compares MoneyFormat with String.format over the amounts checked.
+     */
+    private static void checkEquivalence() {
+        double[] special = {
+            0, -0.0, 0.005, -0.005, 0.015, 0.045, 0.125, -0.125, 1.005,
+            1.115, 2.675, 4.35, 0.994999999, 0.995, 9.995, 99.995,
+            123456789.125, 999999999999.99, 1e12, 1e-9, -1e-9,
+            Double.MIN_VALUE, Double.NaN, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY
+        };
+        for (double amount : special) {
+            check(amount);
+        }
+        for (long k = 0; k < 2_000_000; k++) {
+            double amount = k / 1000.0;
+            check(amount);
+            check(-amount);
+            check(Math.nextUp(amount));
+            check(Math.nextDown(amount));
+        }
+        Random random = new Random(1);
+        for (int k = 0; k < 2_000_000; k++) {
+            check((random.nextLong() % 100_000_000_000_000L) / 1000.0);
+        }
+        for (int k = 0; k < 2_000_000; k++) {
+            double amount = Math.pow(10, random.nextDouble() * 15 - 3);
+            if (random.nextBoolean()) {
+                amount = -amount;
+            }
+            check(amount);
+            check(Math.nextUp(amount));
+        }
+        for (int k = 0; k < 500_000; k++) {
+            check(Double.longBitsToDouble(random.nextLong()));
+        }
+    }
+
+    /**
+     * Compares both MoneyFormat methods with String.format for one
+     * amount, printing the first amounts written differently.
+     *
+     * @param amount The amount
+     */
+    private static void check(double amount) {
+        checked++;
+        String expected = String.format(Locale.ROOT, "%.2f", amount);
+        String expectedDollars =
+            String.format(Locale.ROOT, "$%.2f", amount);
+        String actual = MoneyFormat.format(amount);
+        String actualDollars = MoneyFormat.formatDollars(amount);
+        if (!expected.equals(actual)
+                || !expectedDollars.equals(actualDollars)) {
+            if (differing++ < MAX_PRINTED) {
+                System.out.println(amount + ": expected " + expected
+                                   + ", got " + actual);
+            }
+        }
+    }
+
+    /**
+     * Measures the three ways of formatting over amounts like those of
+     * the reports, printing the time and allocation per call of each
+     * round.
+     */
+    private static void benchmark() {
+        Random random = new Random(3);
+        double[] amounts = new double[1 << 16];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = random.nextInt(100_000_000) / 1000.0
+                + random.nextDouble() / 1000;
+        }
+        int mask = amounts.length - 1;
+        char[] buffer = new char[32];
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytes0 = allocatedBytes();
+            long time0 = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                sink += String.format("%.2f", amounts[i & mask]).length();
+            }
+            long time1 = System.nanoTime();
+            long bytes1 = allocatedBytes();
+            for (int i = 0; i < CALLS; i++) {
+                sink += MoneyFormat.format(amounts[i & mask]).length();
+            }
+            long time2 = System.nanoTime();
+            long bytes2 = allocatedBytes();
+            for (int i = 0; i < CALLS; i++) {
+                sink += MoneyFormat.format(amounts[i & mask], buffer, 0);
+            }
+            long time3 = System.nanoTime();
+            long bytes3 = allocatedBytes();
+            System.out.println("round " + (round + 1) + ": "
+                + perCall("String.format", time0, time1, bytes0, bytes1)
+                + ", " + perCall("format", time1, time2, bytes1, bytes2)
+                + ", " + perCall("buffer", time2, time3, bytes2, bytes3));
+        }
+        // Printed so the calls cannot be optimised away
+        System.out.println("(" + sink + ")");
+    }
+
+    /**
+     * Describes the time and allocation per call of one measurement.
+     *
+     * @param name   Name of the method measured
+     * @param time0  Time before the calls, in nanoseconds
+     * @param time1  Time after the calls, in nanoseconds
+     * @param bytes0 Bytes allocated before the calls, or -1 if unknown
+     * @param bytes1 Bytes allocated after the calls, or -1 if unknown
+     * @return Text such as "format 42 ns 24.0 B"
+     */
+    private static String perCall(String name, long time0, long time1,
+                                  long bytes0, long bytes1) {
+        String allocated = bytes0 < 0 || bytes1 < 0 ? "? B"
+            : String.format("%.1f B", (bytes1 - bytes0) / (double) CALLS);
+        return String.format("%s %.0f ns %s", name,
+                             (time1 - time0) / (double) CALLS, allocated);
+    }
+
+    /**
+     * Get the number of bytes the current thread has allocated.
+     *
+     * @return Bytes allocated so far, or -1 if the JVM does not count
+     *         them
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}